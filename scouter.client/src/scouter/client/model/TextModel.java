@@ -19,6 +19,7 @@ package scouter.client.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -64,21 +65,46 @@ public class TextModel {
 		return entries.get(id);
 	}
 
-	public boolean load(String date, Collection<Integer> hashs, int serverId) {
-		if (hashs == null || hashs.size() == 0)
-			return false;
-		MapPack param = new MapPack();
-		param.put("date", date);
-		param.put("type", type);
-		ListValue hashLv = param.newList("hash");
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * distinct hashes of the collection that are not loaded yet
+	 */
+	ListValue missing(Collection<Integer> hashs) {
+		ListValue hashLv = new ListValue();
+		if (hashs == null)
+			return hashLv;
+		HashSet<Integer> seen = new HashSet<Integer>();
 		Iterator<Integer> itr = hashs.iterator();
 		while (itr.hasNext()) {
 			int key = itr.next();
-			if (entries.containsKey(key) == false) {
+			if (key != 0 && entries.containsKey(key) == false && seen.add(key)) {
 				hashLv.add(key);
 			}
 		}
-		
+		return hashLv;
+	}
+
+	void cache(int hash, String value) {
+		if (StringUtil.isNotEmpty(value)) {
+			entries.put(hash, value);
+			if (entries.size() > limit) {
+				entries.removeFirst();
+			}
+		}
+	}
+
+	public boolean load(String date, Collection<Integer> hashs, int serverId) {
+		if (hashs == null || hashs.size() == 0)
+			return false;
+		MapPack param = new MapPack();
+		param.put("date", date);
+		param.put("type", type);
+		ListValue hashLv = missing(hashs);
+		param.put("hash", hashLv);
+
 		if (hashLv.size() == 0)
 			return false;
 		TcpProxy tcp = TcpProxy.getTcpProxy(serverId);
@@ -98,13 +124,7 @@ public class TextModel {
 			Iterator<String> en = re.keys();
 			while (en.hasNext()) {
 				String key = en.next();
-				String value = re.getText(key);
-				if (StringUtil.isNotEmpty(value)) {
-					entries.put((int) Hexa32.toLong32(key), value);
-					if (entries.size() > limit){
-						entries.removeFirst();
-					}
-				}
+				cache((int) Hexa32.toLong32(key), re.getText(key));
 			}
 		}
 
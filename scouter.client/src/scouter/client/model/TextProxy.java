@@ -17,10 +17,20 @@
  */
 package scouter.client.model;
 
+import scouter.client.net.TcpProxy;
 import scouter.lang.TextTypes;
+import scouter.lang.pack.MapPack;
+import scouter.lang.pack.Pack;
+import scouter.lang.value.ListValue;
+import scouter.net.RequestCmd;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class TextProxy {
 
@@ -47,6 +57,7 @@ public class TextProxy {
     final public static TextModel stackElement = new TextModel(TextTypes.STACK_ELEMENT, 8192);
 
 	private static Map<String, TextModel> textModelMap = new HashMap<String, TextModel>();
+	private static Set<Integer> noTextPack = Collections.synchronizedSet(new HashSet<Integer>());
 
 	static {
 		textModelMap.put(TextTypes.SERVICE, service);
@@ -71,4 +82,72 @@ public class TextProxy {
 	public static TextModel getTextModel(String textType) {
 		return textModelMap.get(textType);
 	}
+
+	/**
+	 * loads the missing texts of several types with one request.
+	 * A server that fails the request, e.g. an older one without GET_TEXT_PACK,
+	 * is asked type by type from then on.
+	 * @param hashs hashes keyed by text type
+	 */
+	public static void load(String date, Map<String, ? extends Collection<Integer>> hashs, int serverId) {
+		if (noTextPack.contains(serverId)) {
+			loadEach(date, hashs, serverId);
+			return;
+		}
+		MapPack param = new MapPack();
+		param.put("date", date);
+		ListValue typeLv = param.newList("type");
+		ListValue hashLv = param.newList("hash");
+		for (Map.Entry<String, ? extends Collection<Integer>> e : hashs.entrySet()) {
+			TextModel model = textModelMap.get(e.getKey());
+			if (model == null)
+				continue;
+			ListValue missing = model.missing(e.getValue());
+			if (missing.size() > 0) {
+				typeLv.add(e.getKey());
+				hashLv.add(missing);
+			}
+		}
+		if (typeLv.size() == 0)
+			return;
+		TcpProxy tcp = TcpProxy.getTcpProxy(serverId);
+		List<Pack> packList = null;
+		boolean failed = false;
+		try {
+			packList = tcp.process(RequestCmd.GET_TEXT_PACK, param);
+			// a server that does not know the command drops the connection
+			failed = tcp.getServer() != null && tcp.isValid() == false;
+		} catch (Exception e) {
+			e.printStackTrace();
+			failed = true;
+		} finally {
+			TcpProxy.putTcpProxy(tcp);
+		}
+		if (failed) {
+			noTextPack.add(serverId);
+			loadEach(date, hashs, serverId);
+			return;
+		}
+		if (packList == null)
+			return;
+		for (Pack pack : packList) {
+			MapPack re = (MapPack) pack;
+			TextModel model = textModelMap.get(re.getText("type"));
+			ListValue hash = re.getList("hash");
+			ListValue text = re.getList("text");
+			if (model == null || hash == null || text == null)
+				continue;
+			for (int i = 0; i < hash.size(); i++) {
+				model.cache(hash.getInt(i), text.getString(i));
+			}
+		}
+	}
+
+	private static void loadEach(String date, Map<String, ? extends Collection<Integer>> hashs, int serverId) {
+		for (Map.Entry<String, ? extends Collection<Integer>> e : hashs.entrySet()) {
+			TextModel model = textModelMap.get(e.getKey());
+			if (model != null)
+				model.load(date, e.getValue(), serverId);
+		}
+	}
 }
@@ -86,6 +86,7 @@ public class LoginMgr{
 				server.setEmail(email);
 				server.setTimezone(timezone);
 				server.setSoTimeOut(soTimeOut);
+				server.setMuxPort(out.getInt("mux_port"));
 				Value value = out.get("policy");
 				if (value != null) {
 					MapValue mv = (MapValue) value;
@@ -0,0 +1,245 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package scouter.client.net;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import scouter.client.server.Server;
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+import scouter.lang.pack.Pack;
+import scouter.lang.value.Value;
+import scouter.net.NetCafe;
+import scouter.util.FileUtil;
+
+/**
+ * One connection to the multiplexed service port of a server, shared by every view.
+ * <pre>
+ * request  : int length, int id, text cmd, long session, param
+ * response : int length, int id, byte last(0 more, 1 last, 2 failed), a slice of the response
+ * </pre>
+ * The server announces the port at login. Until it does, or while the port can not be reached,
+ * requests stay on the pooled ClientTCP connections.
+ */
+public class MuxClientTCP {
+	private final static byte LAST = 1;
+	private final static byte FAILED = 2;
+	private final static long RETRY_INTERVAL = 10000;
+
+	private final Server server;
+	private Socket socket;
+	private DataOutputX out;
+	private int nextId;
+	private long retryTime;
+	private final Map<Integer, FrameInputStream> waiting = new ConcurrentHashMap<Integer, FrameInputStream>();
+
+	public MuxClientTCP(Server server) {
+		this.server = server;
+	}
+
+	/**
+	 * sends a request and returns its response stream, null if the request has to go to the
+	 * pooled connections
+	 */
+	public DataInputX request(String cmd, long session, Object param) {
+		if (server.getMuxPort() <= 0) {
+			return null;
+		}
+		DataOutputX body = new DataOutputX();
+		FrameInputStream res = new FrameInputStream(server.getSoTimeOut());
+		synchronized (this) {
+			if (open() == false) {
+				return null;
+			}
+			int id = ++nextId;
+			try {
+				body.writeInt(id);
+				body.writeText(cmd);
+				body.writeLong(session);
+				if (param instanceof Value) {
+					body.writeValue((Value) param);
+				} else if (param instanceof Pack) {
+					body.writePack((Pack) param);
+				}
+				byte[] b = body.toByteArray();
+				waiting.put(id, res);
+				out.writeInt(b.length);
+				out.write(b);
+				out.flush();
+			} catch (Throwable t) {
+				waiting.remove(id);
+				close();
+				return null;
+			}
+		}
+		return new DataInputX(new DataInputStream(res));
+	}
+
+	private boolean open() {
+		if (socket != null) {
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		if (now < retryTime) {
+			return false;
+		}
+		Socket s = new Socket();
+		try {
+			s.setKeepAlive(true);
+			s.setTcpNoDelay(true);
+			s.connect(new InetSocketAddress(server.getIp(), server.getMuxPort()), 3000);
+			final DataInputX in = new DataInputX(new BufferedInputStream(s.getInputStream()));
+			out = new DataOutputX(new BufferedOutputStream(s.getOutputStream()));
+			out.writeInt(NetCafe.TCP_CLIENT_MUX);
+			out.flush();
+			socket = s;
+			Thread reader = new Thread("MuxClientTCP " + server.getIp() + ":" + server.getMuxPort()) {
+				public void run() {
+					receive(s, in);
+				}
+			};
+			reader.setDaemon(true);
+			reader.start();
+			return true;
+		} catch (Throwable t) {
+			System.out.println("mux " + server.getIp() + ":" + server.getMuxPort() + " " + t.getMessage());
+			FileUtil.close(s);
+			retryTime = now + RETRY_INTERVAL;
+			return false;
+		}
+	}
+
+	private void receive(Socket s, DataInputX in) {
+		try {
+			while (true) {
+				int len = in.readInt();
+				int id = in.readInt();
+				byte last = in.readByte();
+				byte[] b = in.read(len - 5);
+				FrameInputStream res = last == 0 ? waiting.get(id) : waiting.remove(id);
+				if (res != null) {
+					res.add(b, last);
+				}
+			}
+		} catch (Throwable t) {
+		} finally {
+			synchronized (this) {
+				if (socket == s) {
+					close();
+				}
+			}
+			FileUtil.close(s);
+		}
+	}
+
+	public synchronized void close() {
+		FileUtil.close(socket);
+		FileUtil.close(out);
+		socket = null;
+		out = null;
+		Iterator<FrameInputStream> itr = waiting.values().iterator();
+		while (itr.hasNext()) {
+			itr.next().add(null, FAILED);
+			itr.remove();
+		}
+	}
+
+	/**
+	 * the frames of one response as they arrive, a failed response ends with an IOException
+	 */
+	static class FrameInputStream extends InputStream {
+		private final static byte[] END = new byte[0];
+		private final static byte[] FAIL = new byte[0];
+
+		private final LinkedBlockingQueue<byte[]> frames = new LinkedBlockingQueue<byte[]>();
+		private final int timeout;
+		private byte[] buf = new byte[0];
+		private int pos;
+
+		FrameInputStream(int timeout) {
+			this.timeout = timeout;
+		}
+
+		void add(byte[] b, byte last) {
+			if (last == FAILED) {
+				frames.add(FAIL);
+				return;
+			}
+			if (b.length > 0) {
+				frames.add(b);
+			}
+			if (last == LAST) {
+				frames.add(END);
+			}
+		}
+
+		private boolean fill() throws IOException {
+			while (pos >= buf.length) {
+				if (buf == END) {
+					return false;
+				}
+				byte[] b;
+				try {
+					b = frames.poll(timeout, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					throw new IOException("interrupted");
+				}
+				if (b == null) {
+					throw new IOException("read timed out");
+				}
+				if (b == FAIL) {
+					throw new IOException("request failed");
+				}
+				buf = b;
+				pos = 0;
+			}
+			return true;
+		}
+
+		public int read() throws IOException {
+			if (fill() == false) {
+				return -1;
+			}
+			return buf[pos++] & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (fill() == false) {
+				return -1;
+			}
+			int n = Math.min(len, buf.length - pos);
+			System.arraycopy(buf, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+	}
+}
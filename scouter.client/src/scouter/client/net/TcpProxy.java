@@ -135,6 +135,16 @@ public class TcpProxy {
 	}
 
 	public synchronized void process(String cmd, Object param, INetReader recv) {
+		if (this.server != null && this.server.getSession() != 0) {
+			DataInputX in = this.server.getMux().request(cmd, this.server.getSession(), param);
+			if (in != null) {
+				try {
+					read(in, recv);
+				} catch (Throwable e) {
+				}
+				return;
+			}
+		}
 		open();
 		if (tcp.isSessionOk() == false) {
 			return;
@@ -154,12 +164,7 @@ public class TcpProxy {
 					out.writePack((Pack) param);
 				}
 				out.flush();
-				byte resFlag;
-				while ((resFlag = in.readByte()) == TcpFlag.HasNEXT) {
-					recv.process(in);
-				}
-				if (resFlag == TcpFlag.INVALID_SESSION) {
-					server.setSession(0); // SessionObserver will relogin
+				if (read(in, recv) == false) {
 					tcp.close();
 				}
 			} catch (Throwable e) {
@@ -168,6 +173,21 @@ public class TcpProxy {
 		}
 	}
 
+	/**
+	 * reads a response, false if the session turned out to be invalid
+	 */
+	private boolean read(DataInputX in, INetReader recv) throws IOException {
+		byte resFlag;
+		while ((resFlag = in.readByte()) == TcpFlag.HasNEXT) {
+			recv.process(in);
+		}
+		if (resFlag == TcpFlag.INVALID_SESSION) {
+			server.setSession(0); // SessionObserver will relogin
+			return false;
+		}
+		return true;
+	}
+
 	public synchronized void sendClose() {
 		if (tcp.isSessionOk() == false) {
 			return;
@@ -18,6 +18,7 @@
 package scouter.client.server;
 
 import scouter.client.net.ConnectionPool;
+import scouter.client.net.MuxClientTCP;
 import scouter.lang.counters.CounterEngine;
 import scouter.lang.value.MapValue;
 import scouter.util.HashUtil;
@@ -28,6 +29,8 @@ public class Server {
 	private String ip;
 	private int port;
 	private ConnectionPool connPool = new ConnectionPool();
+	private MuxClientTCP mux = new MuxClientTCP(this);
+	private int muxPort;
 	private boolean connected = false;
 	private long session;
 	private long delta;
@@ -79,8 +82,21 @@ public class Server {
 		return this.connPool;
 	}
 	
+	public MuxClientTCP getMux() {
+		return this.mux;
+	}
+
+	public int getMuxPort() {
+		return muxPort;
+	}
+
+	public void setMuxPort(int muxPort) {
+		this.muxPort = muxPort;
+	}
+
 	public void close() {
 		this.connPool.closeAll();
+		this.mux.close();
 	}
 	
 	public long getSession() {
@@ -18,6 +18,7 @@
 package scouter.client.xlog;
 
 import scouter.client.model.TextProxy;
+import scouter.lang.TextTypes;
 import scouter.lang.pack.Pack;
 import scouter.lang.pack.PackEnum;
 import scouter.lang.pack.XLogPack;
@@ -121,12 +122,14 @@ public class XLogUtil {
 			}
 		}
 
-		TextProxy.method.load(yyyymmdd, methodSet, serverId);
-		TextProxy.sql.load(yyyymmdd, sqlSet, serverId);
-		TextProxy.apicall.load(yyyymmdd, subcallSet, serverId);
-		TextProxy.error.load(yyyymmdd, errorSet, serverId);
-		TextProxy.hashMessage.load(yyyymmdd, hashedMsgSet, serverId);
-        TextProxy.stackElement.load(yyyymmdd, stackElementSet, serverId);
+		HashMap<String, HashSet<Integer>> textMap = new HashMap<String, HashSet<Integer>>();
+		textMap.put(TextTypes.METHOD, methodSet);
+		textMap.put(TextTypes.SQL, sqlSet);
+		textMap.put(TextTypes.APICALL, subcallSet);
+		textMap.put(TextTypes.ERROR, errorSet);
+		textMap.put(TextTypes.HASH_MSG, hashedMsgSet);
+		textMap.put(TextTypes.STACK_ELEMENT, stackElementSet);
+		TextProxy.load(yyyymmdd, textMap, serverId);
 	}
 
 	public static int getStepElaspedTime(Step p) {
@@ -60,6 +60,7 @@ import scouter.lang.pack.Pack;
 import scouter.lang.pack.PackEnum;
 import scouter.lang.pack.XLogPack;
 import scouter.lang.value.BooleanValue;
+import scouter.lang.value.Value;
 import scouter.net.RequestCmd;
 import scouter.util.CastUtil;
 import scouter.util.DateUtil;
@@ -77,6 +78,11 @@ public class XLogRealTimeView extends XLogViewCommon implements Refreshable {
 	private MapPack param = new MapPack();
 	
 	int serverId;
+
+	private final static long SUBSCRIBE_DURATION = 30000;
+	private final static long SUBSCRIBE_RETRY = 60000;
+	private long subscribeTime;
+	private volatile boolean disposed;
 	
 	public void init(IViewSite site) throws PartInitException {
 		super.init(site);
@@ -161,6 +167,12 @@ public class XLogRealTimeView extends XLogViewCommon implements Refreshable {
 
 	public void refresh() {
 		setDate(DateUtil.yyyymmdd(TimeUtil.getCurrentTime(serverId)));
+		if (System.currentTimeMillis() >= subscribeTime) {
+			if (subscribe()) {
+				return;
+			}
+			subscribeTime = System.currentTimeMillis() + SUBSCRIBE_RETRY;
+		}
 		TcpProxy tcp = TcpProxy.getTcpProxy(serverId);
 		try {
 			param.put("objHash", agentThread.getLiveObjHashLV(serverId, objType));
@@ -184,6 +196,63 @@ public class XLogRealTimeView extends XLogViewCommon implements Refreshable {
 		} finally {
 			TcpProxy.putTcpProxy(tcp);
 		}
+		redraw();
+	}
+
+	/**
+	 * keeps a TRANX_REAL_TIME_SUBSCRIBE open for SUBSCRIBE_DURATION and draws the xlogs as they are
+	 * pushed, false when the server refused or does not know the subscription so the view polls
+	 */
+	private boolean subscribe() {
+		final boolean[] accepted = new boolean[1];
+		TcpProxy tcp = TcpProxy.getTcpProxy(serverId);
+		try {
+			MapPack req = new MapPack();
+			req.put("objHash", agentThread.getLiveObjHashLV(serverId, objType));
+			req.put("limit", PManager.getInstance().getInt(PreferenceConstants.P_XLOG_IGNORE_TIME));
+			req.put("duration", SUBSCRIBE_DURATION);
+			if (param.containsKey("loop")) {
+				req.put("loop", param.get("loop"));
+				req.put("index", param.get("index"));
+			}
+			twdata.setMax(getMaxCount());
+			tcp.process(RequestCmd.TRANX_REAL_TIME_SUBSCRIBE, req, new INetReader() {
+				long lastDraw;
+				public void process(DataInputX in) throws IOException {
+					if (disposed) {
+						throw new IOException("view closed");
+					}
+					Pack p = in.readPack();
+					if (p.getPackType() == PackEnum.MAP) {
+						MapPack m = (MapPack) p;
+						Value ok = m.get("subscribe");
+						if (ok != null) {
+							accepted[0] = ((BooleanValue) ok).value;
+						}
+						param.put("loop", m.get("loop"));
+						param.put("index", m.get("index"));
+					} else {
+						XLogPack x = XLogUtil.toXLogPack(p);
+						twdata.putLast(x.txid, new XLogData(x, serverId));
+					}
+					long now = System.currentTimeMillis();
+					if (now - lastDraw >= 500) {
+						lastDraw = now;
+						redraw();
+					}
+				}
+			});
+		} catch (Exception e) {
+			ConsoleProxy.errorSafe(e.toString());
+		} finally {
+			// the server ends the connection with the subscription
+			tcp.close();
+		}
+		redraw();
+		return accepted[0];
+	}
+
+	private void redraw() {
 		ExUtil.asyncRun(new Runnable() {
 			public void run() {
 				viewPainter.build();
@@ -241,6 +310,7 @@ public class XLogRealTimeView extends XLogViewCommon implements Refreshable {
 	@Override
 	public void dispose() {
 		super.dispose();
+		disposed = true;
 		if (thread != null) {
 			thread.shutdown();
 		}
@@ -40,6 +40,7 @@ public class NetCafe {
 	public static final int TCP_AGENT_V2 =0xCAFE1002;   // server request a service to agent  V2
 	public static final int TCP_AGENT_REQ = 0xCAFE1011; // agent request a service to server
 	public static final int TCP_CLIENT = 0xCAFE2001;    // client request a service to server
+	public static final int TCP_CLIENT_MUX = 0xCAFE2002; // client multiplexes requests on one connection
 	
 	public static final int TCP_SHUTDOWN = 0xCAFE1999;
 	
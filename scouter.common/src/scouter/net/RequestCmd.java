@@ -91,6 +91,7 @@ public class RequestCmd {
 	public static final String SERVER_THREAD_DETAIL = "SERVER_THREAD_DETAIL";
 	public static final String SERVER_ENV = "SERVER_ENV";
 	public static final String SERVER_STATUS = "SERVER_STATUS";
+	public static final String SERVER_SERVICE_STAT = "SERVER_SERVICE_STAT";
 	public static final String SERVER_TIME = "SERVER_TIME";
 	public static final String SERVER_DB_LIST = "SERVER_DB_LIST";
 	public static final String SERVER_DB_DELETE = "SERVER_DB_DELETE";
@@ -108,6 +109,7 @@ public class RequestCmd {
 	public static final String TRANX_PROFILE_FULL = "TRANX_PROFILE_FULL";
 	public static final String TRANX_REAL_TIME_GROUP = "TRANX_REAL_TIME_GROUP";
 	public static final String TRANX_REAL_TIME_GROUP_LATEST = "TRANX_REAL_TIME_GROUP_LATEST";
+	public static final String TRANX_REAL_TIME_SUBSCRIBE = "TRANX_REAL_TIME_SUBSCRIBE";
 	public static final String TRANX_LOAD_TIME_GROUP = "TRANX_LOAD_TIME_GROUP";
 	public static final String QUICKSEARCH_XLOG_LIST = "QUICKSEARCH_XLOG_LIST";
 	public static final String SEARCH_XLOG_LIST = "SEARCH_XLOG_LIST";
@@ -156,6 +158,7 @@ public class RequestCmd {
 
 	public static final String GET_TEXT = "GET_TEXT";
 	public static final String GET_TEXT_100 = "GET_TEXT_100";
+	public static final String GET_TEXT_PACK = "GET_TEXT_PACK";
 
 	public static final String GET_CONFIGURE_SERVER = "GET_CONFIGURE_SERVER";
 	public static final String SET_CONFIGURE_SERVER = "SET_CONFIGURE_SERVER";
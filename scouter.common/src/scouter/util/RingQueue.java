@@ -0,0 +1,251 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.util;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded lock-free queue with the same put/get contract as {@link RequestQueue}.
+ * Slots are preallocated, so put and get do not allocate.
+ * Producers and consumers claim slots by CAS on their cursor (Dmitry Vyukov's bounded MPMC queue).
+ * A consumer takes the lock only to sleep when the queue stays empty.
+ */
+public class RingQueue<V> {
+	private static final int SPIN = 64;
+	protected final Object[] buffer;
+	protected final AtomicLongArray sequence;
+	protected final int mask;
+	protected final AtomicLong tail = new AtomicLong();
+	protected final AtomicLong head = new AtomicLong();
+	protected volatile int capacity;
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicInteger waiters = new AtomicInteger();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+
+	/**
+	 * @throws IllegalArgumentException if capacity is 0 or less, which meant unbounded for RequestQueue
+	 */
+	public RingQueue(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity " + capacity);
+		}
+		int size = 2;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = capacity;
+		this.buffer = new Object[size];
+		this.sequence = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			sequence.set(i, i);
+		}
+	}
+
+	protected boolean offer(V v) {
+		long pos = tail.get();
+		while (true) {
+			if (pos - head.get() >= capacity)
+				return false;
+			int idx = (int) pos & mask;
+			long dif = sequence.get(idx) - pos;
+			if (dif == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					buffer[idx] = v;
+					// volatile store so a sleeping consumer registered in waiters is not missed
+					sequence.set(idx, pos + 1);
+					return true;
+				}
+				pos = tail.get();
+			} else if (dif < 0) {
+				return false;
+			} else {
+				pos = tail.get();
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public V getNoWait() {
+		long pos = head.get();
+		while (true) {
+			int idx = (int) pos & mask;
+			long dif = sequence.get(idx) - (pos + 1);
+			if (dif == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					V v = (V) buffer[idx];
+					buffer[idx] = null;
+					sequence.lazySet(idx, pos + mask + 1);
+					return v;
+				}
+				pos = head.get();
+			} else if (dif < 0) {
+				return null;
+			} else {
+				pos = head.get();
+			}
+		}
+	}
+
+	public V get() {
+		V v = spin();
+		if (v != null)
+			return v;
+		lock.lock();
+		try {
+			waiters.incrementAndGet();
+			try {
+				while ((v = getNoWait()) == null) {
+					notEmpty.awaitUninterruptibly();
+				}
+				return v;
+			} finally {
+				waiters.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public V get(long timeout) {
+		V v = spin();
+		if (v != null)
+			return v;
+		long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+		lock.lock();
+		try {
+			waiters.incrementAndGet();
+			try {
+				while ((v = getNoWait()) == null) {
+					if (nanos <= 0)
+						return null;
+					try {
+						nanos = notEmpty.awaitNanos(nanos);
+					} catch (InterruptedException e) {
+					}
+				}
+				return v;
+			} finally {
+				waiters.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private V spin() {
+		for (int i = 0; i < SPIN; i++) {
+			V v = getNoWait();
+			if (v != null)
+				return v;
+		}
+		return null;
+	}
+
+	/**
+	 * moves up to max queued items into the collection without blocking
+	 */
+	public int drainTo(Collection<? super V> c, int max) {
+		int n = 0;
+		while (n < max) {
+			V v = getNoWait();
+			if (v == null)
+				break;
+			c.add(v);
+			n++;
+		}
+		return n;
+	}
+
+	public boolean put(V o) {
+		if (offer(o)) {
+			signal();
+			return true;
+		}
+		dropped.incrementAndGet();
+		return false;
+	}
+
+	public boolean putNotifySingle(V o) {
+		return put(o);
+	}
+
+	/**
+	 * drops the oldest items until there is room
+	 */
+	public boolean putForce(V o) {
+		boolean ok = true;
+		while (offer(o) == false) {
+			if (getNoWait() != null) {
+				dropped.incrementAndGet();
+				ok = false;
+			}
+		}
+		signal();
+		return ok;
+	}
+
+	private void signal() {
+		if (waiters.get() > 0) {
+			lock.lock();
+			try {
+				notEmpty.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	public void clear() {
+		while (getNoWait() != null) {
+		}
+	}
+
+	public int size() {
+		long n = tail.get() - head.get();
+		if (n < 0)
+			return 0;
+		return (int) Math.min(n, capacity);
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * the capacity can be changed only up to the preallocated ring size
+	 */
+	public void setCapacity(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("capacity " + size);
+		}
+		this.capacity = Math.min(size, buffer.length);
+	}
+
+	public long getDropCount() {
+		return dropped.get();
+	}
+}
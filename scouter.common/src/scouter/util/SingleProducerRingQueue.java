@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.util;
+
+/**
+ * {@link RingQueue} for a queue that is filled by one thread only.
+ * The producer cursor is advanced without CAS.
+ */
+public class SingleProducerRingQueue<V> extends RingQueue<V> {
+
+	public SingleProducerRingQueue(int capacity) {
+		super(capacity);
+	}
+
+	protected boolean offer(V v) {
+		long pos = tail.get();
+		if (pos - head.get() >= capacity)
+			return false;
+		int idx = (int) pos & mask;
+		if (sequence.get(idx) != pos)
+			return false;
+		buffer[idx] = v;
+		sequence.set(idx, pos + 1);
+		tail.lazySet(pos + 1);
+		return true;
+	}
+}
@@ -0,0 +1,72 @@
+package scouter.util;
+
+/**
+ * Rough throughput comparison of RequestQueue and RingQueue with several producers and one consumer,
+ * the shape of the server core pipelines.
+ * run : java -cp target/classes:target/test-classes scouter.util.RingQueueBench [producers] [items]
+ */
+public class RingQueueBench {
+
+    interface Q {
+        boolean put(Long v);
+
+        Long get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int items = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+
+        for (int round = 0; round < 3; round++) {
+            final RequestQueue<Long> rq = new RequestQueue<Long>(10000);
+            run("RequestQueue", new Q() {
+                public boolean put(Long v) {
+                    return rq.put(v);
+                }
+
+                public Long get() {
+                    return rq.get();
+                }
+            }, producers, items);
+
+            final RingQueue<Long> ring = new RingQueue<Long>(10000);
+            run("RingQueue", new Q() {
+                public boolean put(Long v) {
+                    return ring.put(v);
+                }
+
+                public Long get() {
+                    return ring.get();
+                }
+            }, producers, items);
+        }
+    }
+
+    private static void run(String name, final Q q, int producers, final int items) throws Exception {
+        final int perProducer = items / producers;
+        final Long v = new Long(1);
+        Thread[] threads = new Thread[producers];
+        long stime = System.nanoTime();
+        for (int i = 0; i < producers; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int k = 0; k < perProducer; k++) {
+                        while (q.put(v) == false) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        int total = perProducer * producers;
+        for (int k = 0; k < total; k++) {
+            q.get();
+        }
+        long elapsed = System.nanoTime() - stime;
+        for (Thread t : threads) {
+            t.join();
+        }
+        System.out.println(name + " producers=" + producers + " ops/s=" + (long) (total * 1000000000.0 / elapsed));
+    }
+}
@@ -0,0 +1,96 @@
+package scouter.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RingQueueTest {
+
+    @Test
+    public void testPutGetOrderAndDrop() throws Exception {
+        RingQueue<Integer> q = new RingQueue<Integer>(3);
+        assertThat(q.put(1)).isTrue();
+        assertThat(q.put(2)).isTrue();
+        assertThat(q.put(3)).isTrue();
+        assertThat(q.put(4)).isFalse();
+        assertThat(q.getDropCount()).isEqualTo(1);
+        assertThat(q.size()).isEqualTo(3);
+
+        assertThat(q.get()).isEqualTo(1);
+        List<Integer> out = new ArrayList<Integer>();
+        assertThat(q.drainTo(out, 10)).isEqualTo(2);
+        assertThat(out).containsExactly(2, 3);
+        assertThat(q.getNoWait()).isNull();
+        assertThat(q.get(10)).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveCapacityIsRejected() throws Exception {
+        new RingQueue<Integer>(0);
+    }
+
+    @Test
+    public void testPutForce() throws Exception {
+        RingQueue<Integer> q = new SingleProducerRingQueue<Integer>(2);
+        q.put(1);
+        q.put(2);
+        assertThat(q.putForce(3)).isFalse();
+        assertThat(q.get()).isEqualTo(2);
+        assertThat(q.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testMultiProducerMultiConsumer() throws Exception {
+        final RingQueue<Long> q = new RingQueue<Long>(1024);
+        final int producers = 4;
+        final int perProducer = 100000;
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong count = new AtomicLong();
+
+        Thread[] consumers = new Thread[3];
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i] = new Thread() {
+                public void run() {
+                    while (true) {
+                        Long v = q.get();
+                        if (v.longValue() < 0)
+                            return;
+                        sum.addAndGet(v.longValue());
+                        count.incrementAndGet();
+                    }
+                }
+            };
+            consumers[i].start();
+        }
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (long k = 1; k <= perProducer; k++) {
+                        while (q.put(k) == false) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int i = 0; i < consumers.length; i++) {
+            while (q.put(-1L) == false) {
+                Thread.yield();
+            }
+        }
+        for (Thread t : consumers) {
+            t.join();
+        }
+        assertThat(count.get()).isEqualTo((long) producers * perProducer);
+        assertThat(sum.get()).isEqualTo((long) producers * perProducer * (perProducer + 1) / 2);
+    }
+}
@@ -93,6 +93,8 @@ public class Configure extends Thread {
 	public boolean log_udp_batch = false;	
 	@ConfigDesc("Logging all request handlers in starting")	
 	public boolean log_service_handler_list = false;
+	@ConfigDesc("Service requests taking this long(ms) or more are written to the request log with their parameters")
+	public int log_service_slow_ms = 3000;
 	@ConfigDesc("Retaining log according to date")
 	public boolean log_rotation_enabled = true;
 	@ConfigDesc("Keeping period of log")
@@ -125,8 +127,28 @@ public class Configure extends Thread {
 	public int net_udp_so_rcvbuf_size = 1024 * 1024 * 4;
 	@ConfigDesc("")
 	public int _net_udp_worker_thread_count = 3;
+	@ConfigDesc("Activating NIO UDP receivers with pooled direct buffers")
+	public boolean net_udp_nio_enabled = false;
+	@ConfigDesc("Number of UDP receive sockets bound with SO_REUSEPORT (NIO mode only)")
+	public int net_udp_receiver_count = 1;
+	@ConfigDesc("Number of pooled UDP receive buffers per socket (NIO mode only)")
+	public int net_udp_buffer_pool_size = 128;
 	@ConfigDesc("TCP Thread Pool Size")
 	public int net_tcp_service_pool_size = 100;
+	@ConfigDesc("Activating the multiplexed TCP service server, clients move their requests to it at their next login")
+	public boolean net_tcp_mux_enabled = false;
+	@ConfigDesc("Multiplexed TCP service port")
+	public int net_tcp_mux_listen_port = 6102;
+	@ConfigDesc("Thread pool size for fast requests of multiplexed clients")
+	public int net_tcp_mux_io_pool_size = 4;
+	@ConfigDesc("Thread pool size for slow requests of multiplexed clients")
+	public int net_tcp_mux_slow_pool_size = 16;
+	@ConfigDesc("Slow requests waiting beyond this are answered with a failure")
+	public int net_tcp_mux_slow_queue_size = 1000;
+	@ConfigDesc("Requests averaging this long(ms) or more run on the slow pool")
+	public int net_tcp_mux_slow_ms = 100;
+	@ConfigDesc("Idle multiplexed connections are closed after this time(ms)")
+	public int net_tcp_mux_idle_timeout_ms = 60000;
 	@ConfigDesc("Activating Http Server")
 	public boolean net_http_server_enabled = false;
 	@ConfigDesc("Http Port")
@@ -142,6 +164,18 @@ public class Configure extends Thread {
 	@ConfigDesc("Path to client related directory")
 	public String client_dir = "./client";
 
+	//Text
+	@ConfigDesc("Off-heap cache size(MB) of service texts")
+	public int text_cache_service_mb = 16;
+	@ConfigDesc("Off-heap cache size(MB) of sql texts")
+	public int text_cache_sql_mb = 64;
+	@ConfigDesc("Off-heap cache size(MB) of each other text type")
+	public int text_cache_mb = 2;
+	@ConfigDesc("Skip the index probe of new texts with a persisted bloom filter per text type")
+	public boolean text_dup_filter_enabled = true;
+	@ConfigDesc("Initial bloom filter size(KB) of each text type, a filter that gets too full is rebuilt twice as large")
+	public int text_dup_filter_kb = 256;
+
 	//Object
 	@ConfigDesc("Waiting time(ms) until stopped heartbeat of object is determined to be inactive")
 	public int object_deadtime_ms = 8000;
@@ -151,6 +185,8 @@ public class Configure extends Thread {
 	public boolean compress_xlog_enabled = false;
 	@ConfigDesc("Activating profile data in zip file")
 	public boolean compress_profile_enabled = false;
+	@ConfigDesc("Block codec for new dates of compressed data (gzip, deflate_fast, deflate)")
+	public String compress_codec = "deflate_fast";
 	@ConfigDesc("")
 	public int _compress_write_buffer_block_count = 3;
 	@ConfigDesc("")
@@ -162,10 +198,38 @@ public class Configure extends Thread {
 	@ConfigDesc("")
 	public int _compress_write_thread = 2;
 
+	//Index
+	@ConfigDesc("Reading XLog index files through memory mapped segments")
+	public boolean db_xlog_index_mmap_enabled = false;
+	@ConfigDesc("Reading profile index files through memory mapped segments")
+	public boolean db_profile_index_mmap_enabled = false;
+	@ConfigDesc("Reading text index files through memory mapped segments")
+	public boolean db_text_index_mmap_enabled = false;
+	@ConfigDesc("Reading counter index files through memory mapped segments")
+	public boolean db_counter_index_mmap_enabled = false;
+	@ConfigDesc("Keeping each realtime counter as a compressed time series for single counter reads")
+	public boolean counter_series_enabled = true;
+	@ConfigDesc("New index hash files grow on demand and keep the full key hash in each slot")
+	public boolean db_index_hash_growable_enabled = true;
+	@ConfigDesc("Max size(MB) a growable index hash may grow to")
+	public int db_index_hash_max_mb = 64;
+	@ConfigDesc("New time index files keep a per second offset index for range scans")
+	public boolean db_time_index_sparse_enabled = true;
+	@ConfigDesc("Max XLog index and data readers kept open between queries")
+	public int db_reader_pool_size = 8;
+	@ConfigDesc("Closing pooled readers unused for this time(ms)")
+	public long db_reader_pool_idle_ms = 60000;
+	@ConfigDesc("Threads reading several days or files in parallel")
+	public int db_reader_threads = 4;
+
 	//Auto
 	@ConfigDesc("")
 	public boolean _auto_5m_sampling = true;
 
+	//Counter
+	@ConfigDesc("Counter core threads, the packs of one object stay on one thread (restart required)")
+	public int counter_core_thread_count = 2;
+
 	//Manager
 	@ConfigDesc("Activating automatic deletion function in the database")
 	public boolean mgr_purge_enabled = true;
@@ -181,8 +245,22 @@ public class Configure extends Thread {
 	//XLog
 	@ConfigDesc("XLog Writer Queue Size")
 	public int xlog_queue_size = 10000;
+	@ConfigDesc("XLog core threads, XLogs are spread over them by txid (restart required)")
+	public int xlog_core_thread_count = 2;
+	@ConfigDesc("Max XLogs written to disk in one batch")
+	public int xlog_writer_batch_size = 512;
 	@ConfigDesc("Ignored time(ms) in retrieving XLog in real time")
 	public int xlog_realtime_lower_bound_ms = 0;
+	@ConfigDesc("Number of recent XLogs kept for realtime retrieval")
+	public int xlog_realtime_cache_count = 20480;
+	@ConfigDesc("Off-heap memory(MB) holding the recent XLogs for realtime retrieval")
+	public int xlog_realtime_cache_mb = 16;
+	@ConfigDesc("Max concurrent realtime XLog subscriptions, each holds a connection and a thread of its own, clients beyond it poll")
+	public int xlog_realtime_subscribe_max = 64;
+	@ConfigDesc("Max time(ms) one realtime XLog subscription stays open")
+	public int xlog_realtime_subscribe_duration_ms = 60000;
+	@ConfigDesc("Time(ms) a realtime XLog subscription gathers new XLogs before pushing them")
+	public int xlog_realtime_subscribe_coalesce_ms = 200;
 	@ConfigDesc("Ignored time(ms) in retrieving previous XLog")
 	public int xlog_pasttime_lower_bound_ms = 0;
 //	@ConfigDesc("Ignored profile time(ms) without saving")
@@ -205,6 +283,10 @@ public class Configure extends Thread {
 	//TagCount
 	@ConfigDesc("Activating TagCount function")
 	public boolean tagcnt_enabled = false;
+	@ConfigDesc("Keeping the top values of each tag up to date as they are counted")
+	public boolean tagcnt_sketch_enabled = true;
+	@ConfigDesc("Values tracked per tag for its top values")
+	public int tagcnt_sketch_size = 1024;
 	
 	//Visitor Hourly
 	public boolean visitor_hourly_count_enabled = true;
@@ -305,6 +387,7 @@ public class Configure extends Thread {
 
 		this.compress_xlog_enabled = getBoolean("compress_xlog_enabled", false);
 		this.compress_profile_enabled = getBoolean("compress_profile_enabled", false);
+		this.compress_codec = getValue("compress_codec", "deflate_fast");
 		this._compress_write_buffer_block_count = getInt("_compress_write_buffer_block_count", 3);
 		this._compress_dailycount_header_cache_size = getInt("_compress_dailycount_header_cache_size", 3);
 		this._compress_read_cache_block_count = getInt("_compress_read_cache_block_count", 3);
@@ -332,20 +415,49 @@ public class Configure extends Thread {
 		this.log_udp_summary = getBoolean("log_udp_summary", false);
 		this.log_udp_batch = getBoolean("log_udp_batch", false);
 		this.log_service_handler_list = getBoolean("log_service_handler_list", false);
+		this.log_service_slow_ms = getInt("log_service_slow_ms", 3000);
 		this.log_rotation_enabled = getBoolean("log_rotation_enabled", true);
 		this.log_keep_days = getInt("log_keep_days", 31);
 		this.log_sql_parsing_fail_enabled = getBoolean("log_sql_parsing_fail_enabled", false);
 		this._trace = getBoolean("_trace", false);
 
-		this._auto_5m_sampling = getBoolean("_auto_5m_sampling", true);
+		this.db_xlog_index_mmap_enabled = getBoolean("db_xlog_index_mmap_enabled", false);
+		this.db_profile_index_mmap_enabled = getBoolean("db_profile_index_mmap_enabled", false);
+		this.db_text_index_mmap_enabled = getBoolean("db_text_index_mmap_enabled", false);
+		this.db_counter_index_mmap_enabled = getBoolean("db_counter_index_mmap_enabled", false);
+		this.counter_series_enabled = getBoolean("counter_series_enabled", true);
+		this.db_index_hash_growable_enabled = getBoolean("db_index_hash_growable_enabled", true);
+		this.db_index_hash_max_mb = getInt("db_index_hash_max_mb", 64);
+		this.db_time_index_sparse_enabled = getBoolean("db_time_index_sparse_enabled", true);
+		this.db_reader_pool_size = getInt("db_reader_pool_size", 8);
+		this.db_reader_pool_idle_ms = getLong("db_reader_pool_idle_ms", 60000);
+		this.db_reader_threads = getInt("db_reader_threads", 4);
 
+		this._auto_5m_sampling = getBoolean("_auto_5m_sampling", true);
+		this.text_cache_service_mb = getInt("text_cache_service_mb", 16);
+		this.text_cache_sql_mb = getInt("text_cache_sql_mb", 64);
+		this.text_cache_mb = getInt("text_cache_mb", 2);
+		this.text_dup_filter_enabled = getBoolean("text_dup_filter_enabled", true);
+		this.text_dup_filter_kb = getInt("text_dup_filter_kb", 256);
+		this.counter_core_thread_count = getInt("counter_core_thread_count", 2);
+
+		this.xlog_core_thread_count = getInt("xlog_core_thread_count", 2);
+		this.xlog_writer_batch_size = getInt("xlog_writer_batch_size", 512);
 		this.xlog_realtime_lower_bound_ms = getInt("xlog_realtime_lower_bound_ms", 0);
+		this.xlog_realtime_cache_count = getInt("xlog_realtime_cache_count", 20480);
+		this.xlog_realtime_cache_mb = getInt("xlog_realtime_cache_mb", 16);
+		this.xlog_realtime_subscribe_max = getInt("xlog_realtime_subscribe_max", 64);
+		this.xlog_realtime_subscribe_duration_ms = getInt("xlog_realtime_subscribe_duration_ms", 60000);
+		this.xlog_realtime_subscribe_coalesce_ms = getInt("xlog_realtime_subscribe_coalesce_ms", 200);
 		this.xlog_pasttime_lower_bound_ms = getInt("xlog_pasttime_lower_bound_ms", 0);
 		this.mgr_purge_enabled = getBoolean("mgr_purge_enabled", true);
 		this.mgr_purge_only_xlog_enabled = getBoolean("mgr_purge_only_xlog_enabled", false);
 		this.mgr_purge_disk_usage_pct = getInt("mgr_purge_disk_usage_pct", 80);
 		this.mgr_purge_keep_days = getInt("mgr_purge_keep_days", 0);
 		this._net_udp_worker_thread_count = getInt("_net_udp_worker_thread_count", 3);
+		this.net_udp_nio_enabled = getBoolean("net_udp_nio_enabled", false);
+		this.net_udp_receiver_count = getInt("net_udp_receiver_count", 1);
+		this.net_udp_buffer_pool_size = getInt("net_udp_buffer_pool_size", 128);
 		this.geoip_data_city_file = getValue("geoip_data_city_file", CONF_DIR + "GeoLiteCity.dat");
 		this.geoip_enabled = getBoolean("geoip_enabled", true);
 
@@ -355,10 +467,19 @@ public class Configure extends Thread {
 		this.mgr_log_ignore_ids = getStringSet("mgr_log_ignore_ids", ",");
 
 		this.tagcnt_enabled = getBoolean("tagcnt_enabled", false);
+		this.tagcnt_sketch_enabled = getBoolean("tagcnt_sketch_enabled", true);
+		this.tagcnt_sketch_size = getInt("tagcnt_sketch_size", 1024);
 		
 		this.visitor_hourly_count_enabled = getBoolean("visitor_hourly_count_enabled", true);
 		
 		this.net_tcp_service_pool_size = getInt("net_tcp_service_pool_size", 100);
+		this.net_tcp_mux_enabled = getBoolean("net_tcp_mux_enabled", false);
+		this.net_tcp_mux_listen_port = getInt("net_tcp_mux_listen_port", 6102);
+		this.net_tcp_mux_io_pool_size = getInt("net_tcp_mux_io_pool_size", 4);
+		this.net_tcp_mux_slow_pool_size = getInt("net_tcp_mux_slow_pool_size", 16);
+		this.net_tcp_mux_slow_queue_size = getInt("net_tcp_mux_slow_queue_size", 1000);
+		this.net_tcp_mux_slow_ms = getInt("net_tcp_mux_slow_ms", 100);
+		this.net_tcp_mux_idle_timeout_ms = getInt("net_tcp_mux_idle_timeout_ms", 60000);
 		
 		ConfObserver.exec();
 	}
@@ -24,6 +24,7 @@ import scouter.server.http.HttpServer;
 import scouter.server.netio.data.NetDataProcessor;
 import scouter.server.netio.data.net.DataUdpServer;
 import scouter.server.netio.service.ServiceHandlingProxy;
+import scouter.server.netio.service.net.TcpMuxServer;
 import scouter.server.netio.service.net.TcpServer;
 import scouter.server.plugin.PlugInManager;
 import scouter.server.plugin.alert.AlertEngine;
@@ -51,6 +52,7 @@ public class Main {
 		DataUdpServer.conf();
 		ServiceHandlingProxy.load();
 		TcpServer.conf();
+		TcpMuxServer.conf();
 		HttpServer.load();
 		PlugInManager.load();
         BuiltInPluginManager.loadPlugins();
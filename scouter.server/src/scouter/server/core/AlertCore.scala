@@ -24,13 +24,14 @@ import scouter.server.db.AlertWR
 import scouter.server.plugin.PlugInManager
 import scouter.server.tagcnt.AlertTagCount
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 object AlertCore {
-    val queue: RequestQueue[AlertPack] = new RequestQueue(CoreRun.MAX_QUE_SIZE)
+    val queue: RingQueue[AlertPack] = new RingQueue(CoreRun.MAX_QUE_SIZE)
     val conf = Configure.getInstance();
     ThreadScala.startDaemon("scouter.server.core.AlertCore", { CoreRun.running }) {
         val p = queue.get();
         ServerStat.put("alert.core.queue", queue.size());
+        ServerStat.put("alert.core.drop", queue.getDropCount());
         p.time = System.currentTimeMillis()
         if (Configure.WORKABLE) {
           PlugInManager.alert(p)
@@ -24,12 +24,12 @@ import scouter.lang.pack.SummaryPack
 import scouter.server.Logger
 import scouter.server.util.ThreadScala
 import scouter.util.DateUtil
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.server.Configure
 
 object AlertSummary {
     val conf =Configure.getInstance()
-    val queue = new RequestQueue[AlertPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[AlertPack](CoreRun.MAX_QUE_SIZE);
     var master = new HashMap[Int, HashMap[String, (Byte, Int)]]()
     var typeMap = new HashMap[Int, String]()
 
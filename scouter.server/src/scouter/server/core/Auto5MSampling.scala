@@ -18,7 +18,7 @@
 
 package scouter.server.core
 
-import java.util
+import java.util.concurrent.ConcurrentHashMap
 import scouter.lang.value.{Value, ValueEnum}
 import scouter.lang.{CounterKey, TimeTypeEnum}
 import scouter.server.Configure
@@ -34,22 +34,24 @@ object Auto5MSampling {
 
     val FIVE_MIN_CODE = TimeTypeEnum.FIVE_MIN
 
-    var counterMap = new util.HashMap[CounterKey, Value]()
+    // put by every PerfCountCore shard. Drained in place: an entry is removed only if it still holds the
+    // value that was sampled, so a value put while draining is kept for the next round.
+    val counterMap = new ConcurrentHashMap[CounterKey, Value]()
     val counterMap5m = new LinkedSet[CounterKey]().setMax(1000)
 
     //peak 1 sample data from real time counter data and make it as 5 minute summary data.
     ThreadScala.startFixedRate(DateUtil.MILLIS_PER_FIVE_MINUTE) {
         if (Configure.getInstance()._auto_5m_sampling) {
-            val workMap = counterMap
-            counterMap = new util.HashMap[CounterKey, Value]()
-            val itr = workMap.keySet().iterator()
+            val itr = counterMap.entrySet().iterator()
 
             while (itr.hasNext()) {
-                val key = itr.next()
+                val e = itr.next()
+                val key = e.getKey()
+                val value = e.getValue()
+                counterMap.remove(key, value)
                 val key5m = new CounterKey(key.objHash, key.counter, FIVE_MIN_CODE)
                 if (!counterMap5m.contains(key5m)) {
                     // System.out.println("AUTO 5M " +key);
-                    val value = workMap.get(key);
 
                     val now = System.currentTimeMillis()
                     DailyCounterWR.add(CastUtil.cint(DateUtil.yyyymmdd(now)), key5m,
@@ -11,6 +11,7 @@ import scouter.server.ConfObserver;
 import scouter.server.Configure;
 import scouter.server.Logger;
 import scouter.server.db.DBCtr;
+import scouter.server.db.DBReaderPool;
 import scouter.server.db.XLogWR;
 import scouter.util.CastUtil;
 import scouter.util.DateUtil;
@@ -118,6 +119,7 @@ public class AutoDeleteScheduler extends Thread {
 			} else {
 				f = new File(dbDir, yyyymmdd);
 			}
+			DBReaderPool.closeAll();
 			deleteFiles(f);
 			Logger.println("S206", "Auto deletion... " + yyyymmdd);
 		} catch (Throwable th) {
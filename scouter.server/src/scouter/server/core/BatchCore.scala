@@ -23,11 +23,11 @@ import scouter.server.Configure
 import scouter.server.Logger
 import scouter.server.db.BatchDB
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 
 object BatchCore {
 
-    val queue = new RequestQueue[BatchPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[BatchPack](CoreRun.MAX_QUE_SIZE);
 
     ThreadScala.startDaemon("scouter.server.core.BatchCore") {
         val conf = Configure.getInstance();
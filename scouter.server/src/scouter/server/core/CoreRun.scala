@@ -1,12 +1,23 @@
 package scouter.server.core
 
-import scouter.server.ShutdownManager
+import scouter.server.{Logger, ShutdownManager}
 import scouter.util.IShutdown
 
 object CoreRun {
     val MAX_QUE_SIZE = 10000;
 
     var running = true;
+
+    /**
+      * queue size from a setting, MAX_QUE_SIZE when the setting is 0 or less
+      */
+    def queueSize(name: String, size: Int): Int = {
+        if (size > 0)
+            return size;
+        Logger.println("S228", name + "=" + size + " is not a queue size, using " + MAX_QUE_SIZE);
+        return MAX_QUE_SIZE;
+    }
+
     def shutdown() {
         running = false;
     }
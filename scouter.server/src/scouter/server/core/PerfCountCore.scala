@@ -23,22 +23,36 @@ import scouter.lang.counters.CounterConstants
 import scouter.lang.value.DecimalValue
 import scouter.lang.{CounterKey, TimeTypeEnum}
 import scouter.lang.pack.PerfCounterPack
-import scouter.server.Logger
+import scouter.server.{Configure, Logger}
 import scouter.server.core.app.ObjectCpuChecker
 import scouter.server.core.cache.CounterCache
 import scouter.server.db.{DailyCounterWR, RealtimeCounterWR}
 import scouter.server.plugin.PlugInManager
 import scouter.server.plugin.alert.AlertEngine
 import scouter.server.util.{EnumerScala, ThreadScala}
-import scouter.util.{CastUtil, DateUtil, HashUtil, RequestQueue}
+import scouter.util.{CastUtil, DateUtil, HashUtil, RingQueue}
 
 /**
-  * request queue of performance counter data and also dispatcher of the queue
+  * request queue of performance counter data and also dispatcher of the queue.
+  * packs are sharded by objHash over counter_core_thread_count threads, so one object keeps its order.
   */
 object PerfCountCore {
-    var queue = new RequestQueue[PerfCounterPack](CoreRun.MAX_QUE_SIZE);
-    ThreadScala.startDaemon("scouter.server.core.PerfCountCore", {CoreRun.running}) {
-        val counterPack = queue.get();
+    val shards = math.max(1, Configure.getInstance().counter_core_thread_count)
+    val queues = Array.fill(shards)(new RingQueue[PerfCounterPack](CoreRun.MAX_QUE_SIZE))
+
+    for (i <- 0 to shards - 1) {
+        val queue = queues(i)
+        ThreadScala.startDaemon("scouter.server.core.PerfCountCore-" + i, {CoreRun.running}) {
+            val counterPack = queue.get();
+            val stime = System.nanoTime();
+            process(counterPack);
+            ServerStat.put("counter.core." + i + ".queue", queue.size());
+            ServerStat.put("counter.core." + i + ".drop", queue.getDropCount());
+            ServerStat.put("counter.core." + i + ".ms", (System.nanoTime() - stime) / 1000000.0f);
+        }
+    }
+
+    private def process(counterPack: PerfCounterPack) {
         val objHash = HashUtil.hash(counterPack.objName);
 
         PlugInManager.counter(counterPack);
@@ -52,7 +66,7 @@ object PerfCountCore {
                 val value = counterPack.data.get(k);
                 val counterKey = new CounterKey(objHash, k, counterPack.timetype);
                 Auto5MSampling.add(counterKey, value);
-                CounterCache.put(counterKey, value);
+                CounterCache.put(objHash, k, counterPack.timetype, value);
                 AlertEngine.putRealTime(counterKey, value); //experimental
             })
 
@@ -72,7 +86,8 @@ object PerfCountCore {
     }
 
     def add(p: PerfCounterPack) {
-        val ok = queue.put(p);
+        val shard = (HashUtil.hash(p.objName) & Int.MaxValue) % shards
+        val ok = queues(shard).put(p);
         if (!ok) {
             Logger.println("S109", 10, "queue exceeded!!");
         }
@@ -26,16 +26,17 @@ import scouter.server.db.XLogProfileWR
 import scouter.server.plugin.PlugInManager
 import scouter.server.util.ThreadScala
 import scouter.util.BytesUtil
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 
 object ProfileCore {
 
     val conf = Configure.getInstance();
-    val queue = new RequestQueue[XLogProfilePack](conf.profile_queue_size);
+    val queue = new RingQueue[XLogProfilePack](CoreRun.queueSize("profile_queue_size", conf.profile_queue_size));
 
     ThreadScala.startDaemon("scouter.server.core.ProfileCore", { CoreRun.running }) {
         val m = queue.get();
         ServerStat.put("profile.core.queue",queue.size());
+        ServerStat.put("profile.core.drop",queue.getDropCount());
         if (BytesUtil.getLength(m.profile) > 0) {
             PlugInManager.profile(m)
             //if (conf.xlog_profile_save_lower_bound_ms <= m.elapsed) {
@@ -23,11 +23,11 @@ import scouter.server.Configure
 import scouter.server.Logger
 import scouter.server.db.StackAnalyzerDB
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 
 object StackAnalyzerCore {
 
-    val queue = new RequestQueue[StackPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[StackPack](CoreRun.MAX_QUE_SIZE);
 
     ThreadScala.startDaemon("scouter.server.core.StackCore") {
         val conf = Configure.getInstance();
@@ -21,10 +21,10 @@ import scouter.server.Logger
 import scouter.server.core.cache.StatusCache
 import scouter.server.db.StatusWR
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.DateUtil
 object StatusCore {
-    val queue = new RequestQueue[StatusPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[StatusPack](CoreRun.MAX_QUE_SIZE);
     ThreadScala.startDaemon("scouter.server.core.StatusCore", { CoreRun.running }) {
         val p = queue.get();
         p.time = DateUtil.now
@@ -20,11 +20,11 @@ import scouter.server.Logger
 import scouter.server.db.SummaryWR
 import scouter.server.util.ThreadScala
 import scouter.util.DateUtil
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.server.plugin.PlugInManager
 object SummaryCore {
     val TIME_INTERVAL = DateUtil.MILLIS_PER_FIVE_MINUTE;
-    val queue = new RequestQueue[SummaryPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[SummaryPack](CoreRun.MAX_QUE_SIZE);
     ThreadScala.startDaemon("SummaryCore") {
         while (CoreRun.running) {
             val p = queue.get();
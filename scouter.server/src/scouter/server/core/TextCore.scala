@@ -23,17 +23,18 @@ import scouter.server.Logger
 import scouter.server.core.cache.TextCache
 import scouter.server.db.TextWR
 import scouter.server.util.ThreadScala
-import scouter.util.{DateUtil, RequestQueue}
+import scouter.util.{DateUtil, RingQueue}
 
 /**
   * request queue of text data and dispatcher of the queue.
   */
 object TextCore {
-    val queue = new RequestQueue[TextPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[TextPack](CoreRun.MAX_QUE_SIZE);
 
     ThreadScala.startDaemon("scouter.server.core.TextCore", {CoreRun.running}) {
         val pack = queue.get();
         ServerStat.put("text.core.queue", queue.size());
+        ServerStat.put("text.core.drop", queue.getDropCount());
         val yyyymmdd = DateUtil.yyyymmdd();
         if (TextTypes.SQL.equals(pack.xtype)) {
             SqlTables.add(yyyymmdd, pack.hash, pack.text);
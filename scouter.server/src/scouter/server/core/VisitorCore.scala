@@ -22,7 +22,7 @@ import scouter.lang.pack.XLogPack
 import scouter.server.Configure
 import scouter.server.Logger
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.StringKeyLinkedMap
 import scouter.server.util.cardinality.HyperLogLog
 import scouter.util.DateUtil
@@ -39,13 +39,14 @@ import scouter.server.db.VisitorHourlyDB
 
 object VisitorCore {
 
-    val queue = new RequestQueue[XLogPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[XLogPack](CoreRun.MAX_QUE_SIZE);
 
     ThreadScala.startDaemon("scouter.server.core.VisitorCore") {
         val conf = Configure.getInstance();
         while (CoreRun.running) {
             val m = queue.get();
             ServerStat.put("visitor.core.queue",queue.size());
+            ServerStat.put("visitor.core.drop",queue.getDropCount());
             try {
                 val objInfo = AgentManager.getAgent(m.objHash)
                 if (objInfo != null) {
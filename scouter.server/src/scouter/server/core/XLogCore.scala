@@ -28,12 +28,18 @@ import scouter.server.geoip.GeoIpUtil
 import scouter.server.plugin.PlugInManager
 import scouter.server.tagcnt.XLogTagCount
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 
+/**
+  * enrichment of incoming xlogs on xlog_core_thread_count threads, sharded by txid.
+  * Each pack is serialized once and the same bytes go to the realtime cache and the writer;
+  * group perf, visitor, tag count and the writer each drain their own bounded queue.
+  */
 object XLogCore {
 
   val conf = Configure.getInstance();
-  val queue = new RequestQueue[XLogPack](conf.xlog_queue_size);
+  val shards = math.max(1, conf.xlog_core_thread_count)
+  val queues = Array.fill(shards)(new RingQueue[XLogPack](CoreRun.queueSize("xlog_queue_size", conf.xlog_queue_size)))
 
   def calc(m: XLogPack) = {
     XLogGroupUtil.process(m);
@@ -42,33 +48,42 @@ object XLogCore {
     }
     XLogGroupPerf.add(m);
   }
-  ThreadScala.startDaemon("scouter.server.core.XLogCore", { CoreRun.running }) {
-    val m = queue.get();
-    ServerStat.put("xlog.core.queue", queue.size());
 
-    if (Configure.WORKABLE) {
+  for (i <- 0 to shards - 1) {
+    val queue = queues(i)
+    ThreadScala.startDaemon("scouter.server.core.XLogCore-" + i, { CoreRun.running }) {
+      val m = queue.get();
+      ServerStat.put("xlog.core." + i + ".queue", queue.size());
+      ServerStat.put("xlog.core." + i + ".drop", queue.getDropCount());
 
-      m.xType match {
-        case XLogTypes.WEB_SERVICE =>
-          VisitorCore.add(m)
-          calc(m)
-        case XLogTypes.APP_SERVICE =>
-          calc(m)
-        case _ => //기타 타입은 무시한다.
+      if (Configure.WORKABLE) {
+        val stime = System.nanoTime();
+        process(m);
+        ServerStat.put("xlog.core." + i + ".ms", (System.nanoTime() - stime) / 1000000.0f);
       }
+    }
+  }
 
-      PlugInManager.xlog(m);
-      //for backward compatibility
-      PlugInManager.xlogdb(m);
+  private def process(m: XLogPack) {
+    m.xType match {
+      case XLogTypes.WEB_SERVICE =>
+        VisitorCore.add(m)
+        calc(m)
+      case XLogTypes.APP_SERVICE =>
+        calc(m)
+      case _ => //기타 타입은 무시한다.
+    }
 
-      val b = new DataOutputX().writePack(m).toByteArray();
-      XLogCache.put(m.objHash, m.elapsed, m.error != 0, b);
-      if (conf.tagcnt_enabled) {
-        XLogTagCount.add(m)
-      }
-      XLogWR.add(m.endTime, m.txid, m.gxid, m.elapsed, b);
+    PlugInManager.xlog(m);
+    //for backward compatibility
+    PlugInManager.xlogdb(m);
 
+    val b = new DataOutputX().writePack(m).toByteArray();
+    XLogCache.put(m.objHash, m.elapsed, m.error != 0, b);
+    if (conf.tagcnt_enabled) {
+      XLogTagCount.add(m)
     }
+    XLogWR.add(m, b);
   }
 
   def add(p: XLogPack) {
@@ -76,7 +91,8 @@ object XLogCore {
       p.endTime = System.currentTimeMillis();
     }
 
-    val ok = queue.put(p);
+    val shard = ((p.txid ^ (p.txid >>> 32)).toInt & Int.MaxValue) % shards
+    val ok = queues(shard).put(p);
     if (ok == false) {
       Logger.println("S116", 10, "queue exceeded!!");
     }
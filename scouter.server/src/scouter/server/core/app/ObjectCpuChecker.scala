@@ -11,7 +11,6 @@ import scouter.server.netio.AgentCall
 import scouter.server.util.ThreadScala
 import scouter.util.RequestQueue
 
-import scala.collection.mutable
 
 
 /**
@@ -40,7 +39,7 @@ object ObjectCpuChecker {
     }
 
     val counterManager = CounterManager.getInstance()
-    val objectCpuMap = new mutable.HashMap[String, ObjectCpuStatus]
+    val objectCpuMap = new scala.collection.concurrent.TrieMap[String, ObjectCpuStatus]
 
     /**
       * Check if java process cpu threshold exceeded
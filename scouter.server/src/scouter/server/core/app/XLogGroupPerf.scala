@@ -33,10 +33,11 @@ import scouter.lang.pack.XLogPack
 import scouter.lang.value.DecimalValue
 import scouter.server.Logger
 import scouter.server.core.CoreRun
+import scouter.server.core.ServerStat
 import scouter.server.db.DailyCounterWR
 import scouter.util.DateUtil
 import scouter.util.LinkedMap
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.ThreadUtil
 import scouter.server.util.ThreadScala
 import scouter.server.util.EnumerScala
@@ -76,7 +77,7 @@ object XLogGroupPerf {
 
     }, new Date(stime), DateUtil.MILLIS_PER_MINUTE);
 
-    val queue = new RequestQueue[XLogPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[XLogPack](CoreRun.MAX_QUE_SIZE);
 
     def add(p: XLogPack) {
         val ok = queue.put(p);
@@ -89,6 +90,8 @@ object XLogGroupPerf {
         while (CoreRun.running) {
             clearEmpty();
             val p = queue.get();
+            ServerStat.put("xlog.group.queue", queue.size());
+            ServerStat.put("xlog.group.drop", queue.getDropCount());
             try {
                 process(p);
             } catch {
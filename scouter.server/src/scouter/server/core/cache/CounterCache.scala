@@ -18,57 +18,144 @@
 
 package scouter.server.core.cache;
 
-import java.util.{HashMap, Map}
+import java.util.{HashMap, Iterator, Map}
 
 import scouter.lang.{CounterKey, TimeTypeEnum}
 import scouter.lang.value.Value
 import scouter.server.util.ThreadScala
-import scouter.util.{CacheTable, DateUtil, ThreadUtil}
+import scouter.util.{DateUtil, IntKeyMap, ThreadUtil}
 
 /**
   * Singleton object of the memory cache for counter data.
+  * objects are spread over STRIPES locks and each object keeps its counters by time type,
+  * so a put of an existing counter only updates its slot and one object is read without a scan.
+  * expired slots are skipped on read and swept every 5 seconds.
   */
 object CounterCache {
-    //val counterEngine = CounterManager.getInstance().getCounterEngine();
-    val cache = new CacheTable[CounterKey, Value]();
+    val STRIPES = 64
+
+    class Slot(var value: Value, var expire: Long)
+
+    class ObjectCounters {
+        val types = new Array[HashMap[String, Slot]](TimeTypeEnum.DAY + 1)
+
+        def map(timeType: Byte, create: Boolean): HashMap[String, Slot] = {
+            if (timeType < 0 || timeType >= types.length)
+                return null
+            var m = types(timeType)
+            if (m == null && create) {
+                m = new HashMap[String, Slot]()
+                types(timeType) = m
+            }
+            return m
+        }
+    }
+
+    private val stripes = Array.fill(STRIPES)(new IntKeyMap[ObjectCounters]())
 
     ThreadScala.startDaemon("scouter.server.core.cache.CounterCache") {
         while (true) {
             ThreadUtil.sleep(5000);
-            cache.clearExpiredItems();
+            clearExpiredItems();
             StatusCache.clearDirty();
         }
     }
 
+    private def stripe(objHash: Int): IntKeyMap[ObjectCounters] = stripes(objHash & (STRIPES - 1))
+
     def put(key: CounterKey, value: Value) {
-        var keepTime = getKeepTime(key.timetype);
-        cache.put(key, value, keepTime);
+        put(key.objHash, key.counter, key.timetype, value);
+    }
+
+    def put(objHash: Int, counter: String, timeType: Byte, value: Value) {
+        val expire = System.currentTimeMillis() + getKeepTime(timeType);
+        val s = stripe(objHash);
+        s.synchronized {
+            var obj = s.get(objHash);
+            if (obj == null) {
+                obj = new ObjectCounters();
+                s.put(objHash, obj);
+            }
+            val m = obj.map(timeType, true);
+            if (m == null)
+                return;
+            val slot = m.get(counter);
+            if (slot == null) {
+                m.put(counter, new Slot(value, expire));
+            } else {
+                slot.value = value;
+                slot.expire = expire;
+            }
+        }
     }
 
     def get(key: CounterKey): Value = {
-        return cache.get(key);
+        return get(key.objHash, key.counter, key.timetype);
+    }
+
+    def get(objHash: Int, counter: String, timeType: Byte): Value = {
+        val s = stripe(objHash);
+        s.synchronized {
+            val obj = s.get(objHash);
+            if (obj == null)
+                return null;
+            val m = obj.map(timeType, false);
+            if (m == null)
+                return null;
+            val slot = m.get(counter);
+            if (slot == null || slot.expire < System.currentTimeMillis())
+                return null;
+            return slot.value;
+        }
     }
 
     def getObjectCounters(objHash: Int, timeType: Byte): Map[String, Value] = {
         val map = new HashMap[String, Value]();
-        try {
-
-            val en = cache.keys();
-            while (en.hasMoreElements()) {
-                val key = en.nextElement();
-                if (key.timetype == timeType && key.objHash == objHash) {
-                    val value = cache.get(key);
-                    if (value != null) {
-                        map.put(key.counter, value);
-                    }
+        val now = System.currentTimeMillis();
+        val s = stripe(objHash);
+        s.synchronized {
+            val obj = s.get(objHash);
+            if (obj == null)
+                return map;
+            val m = obj.map(timeType, false);
+            if (m == null)
+                return map;
+            val itr = m.entrySet().iterator();
+            while (itr.hasNext()) {
+                val e = itr.next();
+                if (e.getValue().expire >= now) {
+                    map.put(e.getKey(), e.getValue().value);
                 }
             }
-        } catch {
-            case e: Throwable => println(e)
         }
         return map;
     }
 
+    private def clearExpiredItems() {
+        val now = System.currentTimeMillis();
+        for (s <- stripes) {
+            s.synchronized {
+                val keys = s.keyArray();
+                for (objHash <- keys) {
+                    val obj = s.get(objHash);
+                    var alive = false;
+                    for (m <- obj.types if m != null) {
+                        val itr: Iterator[Slot] = m.values().iterator();
+                        while (itr.hasNext()) {
+                            if (itr.next().expire < now) {
+                                itr.remove();
+                            }
+                        }
+                        alive = alive || m.size() > 0;
+                    }
+                    if (alive == false) {
+                        s.remove(objHash);
+                    }
+                }
+            }
+        }
+    }
+
     def getKeepTime(timeType: Byte): Long = {
         timeType match {
             case TimeTypeEnum.REALTIME =>
@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.server.core.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import scouter.util.IntIntMap;
+
+/**
+ * Texts of one type as UTF-8 records in a direct buffer used as a ring log,
+ * record = hash(4) length(4) bytes, a length of -1 marks the unused tail before a wrap.
+ * <p>
+ * When the ring is full the oldest record is the victim. A count-min sketch of recent
+ * gets and puts decides admission like TinyLFU: a victim hotter than the new text gets a
+ * second chance and is moved forward, and if no room can be made the new text is not stored.
+ */
+public class TextArena {
+	private final static int HEADER = 8;
+	private final static int WRAP = -1;
+	private final static int MAX_SECOND_CHANCE = 4;
+
+	private final ByteBuffer buf;
+	private final int capacity;
+	private final IntIntMap index = new IntIntMap().setNullValue(-1);
+	private final FrequencySketch sketch;
+
+	private int head;
+	private int writePos;
+	private int count;
+
+	public long hit;
+	public long miss;
+	public long rejected;
+
+	public TextArena(int bytes) {
+		this.capacity = Math.max(bytes, 64 * 1024);
+		this.buf = ByteBuffer.allocateDirect(capacity);
+		this.sketch = new FrequencySketch(Math.max(capacity / 256, 1024));
+	}
+
+	public synchronized String get(int hash) {
+		sketch.increment(hash);
+		int off = index.get(hash);
+		if (off < 0) {
+			miss++;
+			return null;
+		}
+		hit++;
+		byte[] b = new byte[buf.getInt(off + 4)];
+		buf.position(off + HEADER);
+		buf.get(b);
+		try {
+			return new String(b, "UTF8");
+		} catch (UnsupportedEncodingException e) {
+			return null;
+		}
+	}
+
+	public synchronized boolean containsKey(int hash) {
+		return index.containsKey(hash);
+	}
+
+	public synchronized void put(int hash, String text) {
+		if (text == null || index.containsKey(hash))
+			return;
+		sketch.increment(hash);
+		byte[] b;
+		try {
+			b = text.getBytes("UTF8");
+		} catch (UnsupportedEncodingException e) {
+			return;
+		}
+		int size = HEADER + b.length;
+		if (size > capacity / 4 || makeRoom(size, sketch.frequency(hash)) == false) {
+			rejected++;
+			return;
+		}
+		buf.putInt(writePos, hash);
+		buf.putInt(writePos + 4, b.length);
+		buf.position(writePos + HEADER);
+		buf.put(b);
+		index.put(hash, writePos);
+		writePos += size;
+		count++;
+	}
+
+	private boolean makeRoom(int size, int frequency) {
+		int chances = 0;
+		while (true) {
+			if (count == 0) {
+				head = writePos = 0;
+				return true;
+			}
+			if (head > writePos || head == writePos) {
+				if (head - writePos >= size)
+					return true;
+			} else {
+				if (capacity - writePos >= size)
+					return true;
+				if (capacity - writePos >= HEADER)
+					buf.putInt(writePos + 4, WRAP);
+				writePos = 0;
+				continue;
+			}
+			// the victim is at head
+			if (capacity - head < HEADER || buf.getInt(head + 4) == WRAP) {
+				head = 0;
+				continue;
+			}
+			int victim = buf.getInt(head);
+			int victimSize = HEADER + buf.getInt(head + 4);
+			if (sketch.frequency(victim) > frequency) {
+				if (chances >= MAX_SECOND_CHANCE || head - writePos < victimSize)
+					return false;
+				chances++;
+				move(victim, victimSize);
+			} else {
+				evict(victim, victimSize);
+			}
+		}
+	}
+
+	private void move(int hash, int size) {
+		ByteBuffer src = buf.duplicate();
+		src.limit(head + size).position(head);
+		ByteBuffer dst = buf.duplicate();
+		dst.position(writePos);
+		dst.put(src);
+		index.put(hash, writePos);
+		writePos += size;
+		head += size;
+	}
+
+	private void evict(int hash, int size) {
+		if (index.get(hash) == head)
+			index.remove(hash);
+		head += size;
+		count--;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized void clear() {
+		index.clear();
+		head = writePos = count = 0;
+	}
+
+	/**
+	 * 4 rows of 4 bit counters, halved every 10 * width increments so old popularity fades
+	 */
+	static class FrequencySketch {
+		private final byte[][] rows = new byte[4][];
+		private final int mask;
+		private final int resetAt;
+		private int added;
+
+		FrequencySketch(int width) {
+			int w = Integer.highestOneBit(width - 1) << 1;
+			for (int i = 0; i < rows.length; i++)
+				rows[i] = new byte[w];
+			this.mask = w - 1;
+			this.resetAt = w * 10;
+		}
+
+		private int slot(int hash, int row) {
+			int h = (hash + row) * 0x9E3779B9;
+			return (h ^ (h >>> 16)) & mask;
+		}
+
+		void increment(int hash) {
+			for (int i = 0; i < rows.length; i++) {
+				int s = slot(hash, i);
+				if (rows[i][s] < 15)
+					rows[i][s]++;
+			}
+			if (++added >= resetAt) {
+				for (byte[] r : rows) {
+					for (int i = 0; i < r.length; i++)
+						r[i] = (byte) (r[i] >> 1);
+				}
+				added /= 2;
+			}
+		}
+
+		int frequency(int hash) {
+			int f = 15;
+			for (int i = 0; i < rows.length; i++)
+				f = Math.min(f, rows[i][slot(hash, i)]);
+			return f;
+		}
+	}
+}
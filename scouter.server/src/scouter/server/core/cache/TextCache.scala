@@ -19,37 +19,54 @@
 package scouter.server.core.cache;
 
 import scouter.lang.TextTypes
-import scouter.util.HashUtil
-import scouter.util.IntKeyLinkedMap
-import scouter.util.IntKeyMap;
+import scouter.server.Configure
+import scouter.server.core.ServerStat
+import scouter.server.util.ThreadScala
 import scouter.util.StringKeyLinkedMap
 
+/**
+  * texts by type, each type in its own off-heap TextArena sized by text_cache_*_mb.
+  */
 object TextCache {
 
-    val cache = new StringKeyLinkedMap[IntKeyLinkedMap[String]]();
+    val cache = new StringKeyLinkedMap[TextArena]();
+
+    ThreadScala.startFixedRate(10000) {
+        val en = cache.keys()
+        while (en.hasMoreElements()) {
+            val div = en.nextString()
+            val a = cache.get(div)
+            if (a != null) {
+                val total = a.hit + a.miss
+                ServerStat.put("text.cache." + div + ".hit", if (total == 0) 0f else a.hit * 100f / total)
+                ServerStat.put("text.cache." + div + ".count", a.size())
+                ServerStat.put("text.cache." + div + ".rejected", a.rejected)
+            }
+        }
+    }
 
     def put(div: String, hash: Int, text: String) {
-        val map = getMap(div);
-        if (map.containsKey(hash))
-            return ;
-        map.put(hash, text);
+        getMap(div).put(hash, text);
     }
 
-    
     def get(div: String, hash: Int): String = {
-        val map = getMap(div);
-        return map.get(hash);
+        return getMap(div).get(hash);
     }
 
-    private def getMap(div: String): IntKeyLinkedMap[String] = {
+    private def getMap(div: String): TextArena = {
         var map = cache.get(div);
         if (map == null) {
-            if (TextTypes.SERVICE.equals(div)) {
-                map = new IntKeyLinkedMap().setMax(10000);
-            } else {
-                map = new IntKeyLinkedMap().setMax(1000);
+            cache.synchronized {
+                map = cache.get(div);
+                if (map == null) {
+                    val conf = Configure.getInstance()
+                    val mb = if (TextTypes.SERVICE.equals(div)) conf.text_cache_service_mb
+                    else if (TextTypes.SQL.equals(div)) conf.text_cache_sql_mb
+                    else conf.text_cache_mb
+                    map = new TextArena(mb * 1024 * 1024);
+                    cache.put(div, map);
+                }
             }
-            cache.put(div, map);
         }
         return map;
     }
@@ -18,31 +18,64 @@
 
 package scouter.server.core.cache;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import scouter.server.Configure;
+import scouter.server.core.ServerStat;
 import scouter.util.IntSet;
 
 object XLogCache {
 
-    val cache = new XLogLoopCache[Array[Byte]](20480);
+    val cache = {
+        val conf = Configure.getInstance();
+        new XLogLoopCache(Math.max(conf.xlog_realtime_cache_count, 1024), Math.max(conf.xlog_realtime_cache_mb, 1) * 1024 * 1024);
+    }
+
+    private val subscribers = new AtomicInteger();
 
     def put(objHash: Int, time: Int, error: Boolean, record: Array[Byte]) {
         cache.put(objHash, time, error, record);
     }
 
-    def get(last_loop: Long, last_index: Int, time: Int): CacheOut[Array[Byte]] = {
-        return cache.get(last_loop, last_index, time);
+    def get(last_loop: Long, last_index: Int, time: Int): XLogCursor = {
+        return cache.get(null, last_loop, last_index, time);
     }
 
-    def get(objHashSet: IntSet, last_loop: Long, last_index: Int, time: Int): CacheOut[Array[Byte]] = {
+    def get(objHashSet: IntSet, last_loop: Long, last_index: Int, time: Int): XLogCursor = {
         return cache.get(objHashSet, last_loop, last_index, time);
     }
 
-    def getWithinCount(last_loop: Long, last_index: Int, count: Int): CacheOut[Array[Byte]] = {
-        return cache.getWithinCount(last_loop, last_index, count);
+    def getWithinCount(last_loop: Long, last_index: Int, count: Int): XLogCursor = {
+        return cache.getWithinCount(null, last_loop, last_index, count);
     }
 
-    def getWithinCount(objHashSet: IntSet, last_loop: Long, last_index: Int, count: Int): CacheOut[Array[Byte]] = {
+    def getWithinCount(objHashSet: IntSet, last_loop: Long, last_index: Int, count: Int): XLogCursor = {
         return cache.getWithinCount(objHashSet, last_loop, last_index, count);
     }
 
+    def position(): XLogCursor = {
+        return cache.position();
+    }
+
+    def await(last_loop: Long, last_index: Int, ms: Long): Boolean = {
+        return cache.await(last_loop, last_index, ms);
+    }
+
+    /**
+      * takes a subscription slot, false when xlog_realtime_subscribe_max are taken
+      */
+    def subscribe(): Boolean = {
+        if (subscribers.incrementAndGet() > Configure.getInstance().xlog_realtime_subscribe_max) {
+            subscribers.decrementAndGet();
+            return false;
+        }
+        ServerStat.put("xlog.subscribe", subscribers.get());
+        return true;
+    }
+
+    def unsubscribe() {
+        ServerStat.put("xlog.subscribe", subscribers.decrementAndGet());
+    }
+
 
 }
\ No newline at end of file
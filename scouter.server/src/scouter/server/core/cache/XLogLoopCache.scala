@@ -18,205 +18,205 @@
 
 package scouter.server.core.cache;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import scouter.util.IntSet;
-
-class XLogLoopCache[V](capacity: Int) {
-
-    val queue = new Array[Any](capacity);
-    val objHashTable = new Array[Int](capacity);
-    val elapsed = new Array[Int](capacity);
-    val error = new Array[Boolean](capacity);
-
-    var index = 0;
-    var loop = 0L;
-
-    def put(objHash: Int, time: Int, err: Boolean, record: V) {
-        queue.synchronized {
-            queue(index) = record;
-            objHashTable(index) = objHash;
-            elapsed(index) = time;
-            error(index) = err;
-            index += 1;
-            if (index >= queue.length) {
-                loop += 1;
-                index = 0;
-            }
-        }
+import java.nio.ByteBuffer
+import java.util.Arrays
+import java.util.concurrent.atomic.AtomicLongArray
+
+import scouter.util.{IntLongLinkedMap, IntSet}
+
+/**
+  * realtime xlog ring. Records are kept off-heap in a data log of dataSize bytes; each of the
+  * capacity slots holds one record's offset and summary. A slot is published through its sequence
+  * number (seqlock style), so readers never lock: they copy a record and keep it only if the slot
+  * and the data log have not moved past it meanwhile. Records of the same object are chained,
+  * so a read for a few objects visits only their records.
+  * A position is (loop, index) of the sequence number loop * capacity + index.
+  */
+class XLogLoopCache(capacity: Int, dataSize: Int) {
+
+    private val data = ByteBuffer.allocateDirect(dataSize);
+    private val seqs = new AtomicLongArray(capacity);
+    private val offsets = new Array[Long](capacity);
+    private val lengths = new Array[Int](capacity);
+    private val objHashTable = new Array[Int](capacity);
+    private val elapsed = new Array[Int](capacity);
+    private val error = new Array[Boolean](capacity);
+    private val prevOfObj = new Array[Long](capacity);
+    private val lastOfObj = new IntLongLinkedMap().setNullValue(-1);
+
+    @volatile private var writeSeq = 0L;
+    @volatile private var dataHead = 0L;
+
+    private val signal = new Object();
+    @volatile private var waiters = 0;
+
+    for (i <- 0 to capacity - 1) {
+        seqs.set(i, -1);
     }
 
-    def getList(start_loop: Long, start_index: Int, time: Int): List[V] = {
-        val end_index = this.index;
-        val end_loop = this.loop;
-
-        val buff = new ArrayList[V](queue.length);
-        (end_loop - start_loop) match {
-            case 0 =>
-                if (start_index < end_index) {
-                    copy(buff, start_index, end_index, time);
-                }
-            case 1 =>
-                if (start_index <= end_index) {
-                    copy(buff, end_index, queue.length, time);
-                    copy(buff, 0, end_index, time);
-                } else {
-                    copy(buff, start_index, queue.length, time);
-                    copy(buff, 0, end_index, time);
-                }
-            case _ =>
-                copy(buff, end_index, queue.length, time);
-                copy(buff, 0, end_index, time);
+    def put(objHash: Int, time: Int, err: Boolean, record: Array[Byte]) {
+        val len = record.length;
+        if (len > dataSize)
+            return;
+        this.synchronized {
+            var pos = dataHead;
+            val at = (pos % dataSize).toInt;
+            if (at + len > dataSize) {
+                pos += dataSize - at;
+            }
+            val seq = writeSeq;
+            val slot = (seq % capacity).toInt;
+            seqs.set(slot, -1);
+            // reserve before writing so readers of the overwritten bytes can tell
+            dataHead = pos + len;
+            data.position((pos % dataSize).toInt);
+            data.put(record);
+            offsets(slot) = pos;
+            lengths(slot) = len;
+            objHashTable(slot) = objHash;
+            elapsed(slot) = time;
+            error(slot) = err;
+            prevOfObj(slot) = lastOfObj.get(objHash);
+            lastOfObj.put(objHash, seq);
+            seqs.set(slot, seq);
+            writeSeq = seq + 1;
+        }
+        if (waiters > 0) {
+            signal.synchronized {
+                signal.notifyAll();
+            }
         }
-        return buff;
     }
 
-    def getList(objHashSet: IntSet, start_loop: Long, start_index: Int, time: Int): List[V] = {
-        val end_index = this.index;
-        val end_loop = this.loop;
-
-        val buff = new ArrayList[V](queue.length);
-        (end_loop - start_loop) match {
-            case 0 =>
-                if (start_index < end_index) {
-                    copy(objHashSet, buff, start_index, end_index, time);
+    /**
+      * waits up to ms for a record after (last_loop, last_index), true if there is one
+      */
+    def await(last_loop: Long, last_index: Int, ms: Long): Boolean = {
+        val last = last_loop * capacity + last_index;
+        if (writeSeq != last)
+            return true;
+        signal.synchronized {
+            waiters += 1;
+            try {
+                if (writeSeq == last) {
+                    signal.wait(ms);
                 }
-            case 1 =>
-                if (start_index <= end_index) {
-                    copy(objHashSet, buff, end_index, queue.length, time);
-                    copy(objHashSet, buff, 0, end_index, time);
-                } else {
-                    copy(objHashSet, buff, start_index, queue.length, time);
-                    copy(objHashSet, buff, 0, end_index, time);
-                }
-            case _ =>
-                copy(objHashSet, buff, end_index, queue.length, time);
-                copy(objHashSet, buff, 0, end_index, time);
+            } finally {
+                waiters -= 1;
+            }
         }
-        return buff;
+        return writeSeq != last;
     }
 
-    def getListWithinCount(start_loop: Long, start_index: Int, _count: Int): List[V] = {
-        var  count = _count
-        (this.loop - start_loop) match {
-            case 0 =>
-                val gap = this.index - start_index
-                if(gap > 0) {
-                    count = Math.min(count, gap)
-                }
-            case 1 =>
-                count = Math.min(count, queue.length - start_index + this.index)
-            case _ =>
-        }
+    def position(): XLogCursor = {
+        val end = writeSeq;
+        return new XLogCursor(this, null, end, end, 0);
+    }
 
-        val buff = new ArrayList[V](count)
-        if(count > this.index) {
-            copy(buff, queue.length-(count-this.index), queue.length)
-            copy(buff, 0, this.index)
-        } else {
-            copy(buff, this.index - count, this.index)
-        }
+    /**
+      * records after (last_loop, last_index) slower than time or with an error
+      */
+    def get(objHashSet: IntSet, last_loop: Long, last_index: Int, time: Int): XLogCursor = {
+        val end = writeSeq;
+        return new XLogCursor(this, objHashSet, from(end, last_loop * capacity + last_index), end, time);
+    }
 
-        return buff
+    /**
+      * the latest count records, no older than (last_loop, last_index) when that is still in the ring
+      */
+    def getWithinCount(objHashSet: IntSet, last_loop: Long, last_index: Int, count: Int): XLogCursor = {
+        val end = writeSeq;
+        val gap = end - (last_loop * capacity + last_index);
+        val n = if (gap > 0 && gap <= capacity) Math.min(count, gap) else count;
+        return new XLogCursor(this, objHashSet, Math.max(end - n, 0), end, Integer.MIN_VALUE);
     }
 
-    def getListWithinCount(objHashSet: IntSet, start_loop: Long, start_index: Int, _count: Int): List[V] = {
-        var  count = _count
-        (this.loop - start_loop) match {
-            case 0 =>
-                val gap = this.index - start_index
-                if(gap > 0) {
-                    count = Math.min(count, gap)
-                }
-            case 1 =>
-                count = Math.min(count, queue.length - start_index + this.index)
-            case _ =>
-        }
+    private def from(end: Long, last: Long): Long = {
+        val oldest = Math.max(end - capacity, 0);
+        if (last > end || last < oldest)
+            return oldest;
+        return last;
+    }
 
-        val buff = new ArrayList[V](count)
-        if(count > this.index) {
-            copy(objHashSet, buff, queue.length-(count-this.index), queue.length)
-            copy(objHashSet, buff, 0, this.index)
-        } else {
-            copy(objHashSet, buff, this.index - count, this.index)
-        }
+    def loopOf(seq: Long): Long = seq / capacity;
 
-        return buff
-    }
+    def indexOf(seq: Long): Int = (seq % capacity).toInt;
 
-    private def copy(objHashSet: IntSet, buff: List[V], _from: Int, _to: Int, time: Int) {
-        var i = _from
-        while (i < _to) {
-            if (objHashSet == null || objHashSet.contains(objHashTable(i))) {
-                if (queue(i) != null && (elapsed(i) >= time || error(i) == true)) {
-                    buff.add(queue(i).asInstanceOf[V]);
-                }
+    /**
+      * hands each record to handler in write order. The array is reused, only its first len bytes are the record.
+      */
+    def read(objHashSet: IntSet, from: Long, to: Long, time: Int, handler: (Array[Byte], Int) => Any) {
+        val reader = new Reader(time, handler);
+        if (objHashSet == null) {
+            var seq = from;
+            while (seq < to) {
+                reader.visit(null, seq);
+                seq += 1;
             }
-            i += 1
+            return;
         }
-    }
-
-    def copy(buff: List[V], _from: Int, _to: Int, time: Int) {
-        var i = _from
-        while (i < _to) {
-            if (queue(i) != null && (elapsed(i) >= time || error(i) == true)) {
-                buff.add(queue(i).asInstanceOf[V]);
+        var found = new Array[Long](64);
+        var n = 0;
+        val en = objHashSet.values();
+        while (en.hasMoreElements()) {
+            var seq = lastOfObj.get(en.nextInt());
+            while (seq >= from) {
+                val slot = (seq % capacity).toInt;
+                val prev = prevOfObj(slot);
+                if (seqs.get(slot) != seq) {
+                    seq = -1;
+                } else {
+                    if (seq < to) {
+                        if (n == found.length) {
+                            found = Arrays.copyOf(found, n * 2);
+                        }
+                        found(n) = seq;
+                        n += 1;
+                    }
+                    seq = prev;
+                }
             }
-            i += 1
         }
-    }
-
-    def copy(buff: List[V], _from: Int, _to: Int) {
-        var i = _from
-        while (i < _to) {
-            if (queue(i) != null) {
-                buff.add(queue(i).asInstanceOf[V]);
-            }
-            i += 1
+        Arrays.sort(found, 0, n);
+        for (i <- 0 to n - 1) {
+            reader.visit(objHashSet, found(i));
         }
     }
 
-    private def copy(objHashSet: IntSet, buff: List[V], _from: Int, _to: Int) {
-        (_from until _to) foreach { i =>
-            if (objHashSet == null || objHashSet.contains(objHashTable(i))) {
-                if (queue(i) != null) {
-                    buff.add(queue(i).asInstanceOf[V]);
-                }
+    private class Reader(time: Int, handler: (Array[Byte], Int) => Any) {
+        private val buf = data.duplicate();
+        private var scratch = new Array[Byte](1024);
+
+        def visit(objHashSet: IntSet, seq: Long) {
+            val slot = (seq % capacity).toInt;
+            if (seqs.get(slot) != seq)
+                return;
+            if (objHashSet != null && objHashSet.contains(objHashTable(slot)) == false)
+                return;
+            if (elapsed(slot) < time && error(slot) == false)
+                return;
+            val off = offsets(slot);
+            val len = lengths(slot);
+            if (len > scratch.length) {
+                scratch = new Array[Byte](len);
             }
+            buf.position((off % dataSize).toInt);
+            buf.get(scratch, 0, len);
+            if (seqs.get(slot) != seq || dataHead - off > dataSize)
+                return;
+            handler(scratch, len);
         }
     }
+}
 
-    def get(last_loop: Long, last_index: Int, time: Int): CacheOut[V] = {
-        val d = new CacheOut[V]();
-        d.data = getList(last_loop, last_index, time);
-        d.loop = this.loop;
-        d.index = this.index;
-        return d;
-    }
+/**
+  * a range of the realtime xlog ring; (loop, index) is where the next read should continue
+  */
+class XLogCursor(cache: XLogLoopCache, objHashSet: IntSet, from: Long, to: Long, time: Int) {
+    val loop = cache.loopOf(to);
+    val index = cache.indexOf(to);
 
-    def get(objHashSet: IntSet, last_loop: Long, last_index: Int, time: Int): CacheOut[V] = {
-        val d = new CacheOut[V]();
-        d.data = getList(objHashSet, last_loop, last_index, time);
-        d.loop = this.loop;
-        d.index = this.index;
-        return d;
+    def foreach(handler: (Array[Byte], Int) => Any) {
+        cache.read(objHashSet, from, to, time, handler);
     }
-
-    def getWithinCount(last_loop: Long, last_index: Int, count: Int): CacheOut[V] = {
-        val d = new CacheOut[V]();
-        d.data = getListWithinCount(last_loop, last_index, count);
-        d.loop = this.loop;
-        d.index = this.index;
-        return d;
-    }
-
-    def getWithinCount(objHashSet: IntSet, last_loop: Long, last_index: Int, count: Int): CacheOut[V] = {
-        val d = new CacheOut[V]();
-        d.data = getListWithinCount(objHashSet, last_loop, last_index, count);
-        d.loop = this.loop;
-        d.index = this.index;
-        return d;
-    }
-
-}
\ No newline at end of file
+}
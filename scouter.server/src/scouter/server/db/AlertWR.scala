@@ -27,7 +27,7 @@ import scouter.server.plugin.PlugInManager
 import scouter.util.DateUtil
 import scouter.util.FileUtil
 import scouter.util.IClose
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import java.io.File
 import scouter.server.util.ThreadScala
 import scouter.server.util.OftenAction
@@ -35,7 +35,7 @@ import scouter.server.core.AlertSummary
 
 object AlertWR {
 
-    val queue = new RequestQueue[AlertPack](DBCtr.MAX_QUE_SIZE)
+    val queue = new RingQueue[AlertPack](DBCtr.MAX_QUE_SIZE)
 
     val alert = "alert"
     ThreadScala.start("scouter.server.db.AlertWR") {
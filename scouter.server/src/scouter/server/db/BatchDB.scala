@@ -21,7 +21,7 @@ package scouter.server.db;
 import scouter.server.Configure
 import scouter.server.Logger
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.StringKeyLinkedMap
 import scouter.server.util.cardinality.HyperLogLog
 import scouter.util.DateUtil
@@ -51,7 +51,7 @@ import scouter.server.util.BinSearch
 object BatchDB {
     val IDX_LEN = 8 + 5
 
-    val queue = new RequestQueue[BatchPack](DBCtr.MAX_QUE_SIZE);
+    val queue = new RingQueue[BatchPack](DBCtr.MAX_QUE_SIZE);
     val dbinfo = new LongKeyLinkedMap[String]().setMax(1000);
     ThreadScala.startDaemon("scouter.server.db.BatchDB") {
         while (DBCtr.running) {
@@ -0,0 +1,135 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.db;
+
+import java.util.ArrayList
+import java.util.LinkedHashMap
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+
+import scouter.server.Configure
+import scouter.server.util.ThreadScala
+import scouter.util.FileUtil
+import scouter.util.IClose
+
+/**
+  * keeps recently used day readers open between queries and runs reads of several days in parallel.
+  * the readers are the shared, reference counted instances (XLogIndex.open, XLogDataReader.open..),
+  * the pool owns one reference of each and releases it in LRU order or when it stays unused.
+  */
+object DBReaderPool {
+
+    class Entry(_reader: IClose) {
+        val reader = _reader
+        var lastUsed = System.currentTimeMillis()
+    }
+
+    private val table = new LinkedHashMap[String, Entry](64, 0.75f, true)
+
+    private val executor = Executors.newFixedThreadPool(Math.max(1, Configure.getInstance().db_reader_threads), new ThreadFactory() {
+        var seq = 0
+        override def newThread(r: Runnable): Thread = {
+            this.synchronized {
+                seq += 1
+                val t = new Thread(r, "scouter.server.db.DBReaderPool-" + seq)
+                t.setDaemon(true)
+                return t
+            }
+        }
+    })
+
+    ThreadScala.startDaemon("scouter.server.db.DBReaderPool", { DBCtr.running }, 5000) {
+        val idle = System.currentTimeMillis() - Configure.getInstance().db_reader_pool_idle_ms
+        release((e: Entry) => e.lastUsed < idle)
+    }
+
+    /**
+      * open must return the shared instance of key with one more reference, it is taken only when key is not pooled yet
+      */
+    def hold(key: String, open: => IClose) {
+        val size = Configure.getInstance().db_reader_pool_size
+        if (size <= 0)
+            return
+        val evicted = new ArrayList[IClose]()
+        table.synchronized {
+            val e = table.get(key)
+            if (e != null) {
+                e.lastUsed = System.currentTimeMillis()
+                return
+            }
+            table.put(key, new Entry(open))
+            val it = table.values().iterator()
+            while (table.size() > size && it.hasNext()) {
+                evicted.add(it.next().reader)
+                it.remove()
+            }
+        }
+        closeAll(evicted)
+    }
+
+    def closeAll() {
+        release((e: Entry) => true)
+    }
+
+    private def release(cond: (Entry) => Boolean) {
+        val released = new ArrayList[IClose]()
+        table.synchronized {
+            val it = table.values().iterator()
+            while (it.hasNext()) {
+                val e = it.next()
+                if (cond(e)) {
+                    released.add(e.reader)
+                    it.remove()
+                }
+            }
+        }
+        closeAll(released)
+    }
+
+    private def closeAll(readers: ArrayList[IClose]) {
+        for (i <- 0 to readers.size() - 1) {
+            FileUtil.close(readers.get(i))
+        }
+    }
+
+    /**
+      * runs the reads on the reader threads and hands their results to the handler in the given order,
+      * each result as soon as it and the ones before it are done.
+      */
+    def fanOut[T](reads: Seq[() => T], handler: (T) => Any) {
+        val futures = new ArrayList[Future[T]]()
+        for (read <- reads) {
+            futures.add(executor.submit(new Callable[T]() {
+                override def call(): T = read()
+            }))
+        }
+        try {
+            for (i <- 0 to futures.size() - 1) {
+                handler(futures.get(i).get())
+            }
+        } finally {
+            for (i <- 0 to futures.size() - 1) {
+                futures.get(i).cancel(false)
+            }
+        }
+    }
+}
@@ -27,13 +27,13 @@ import scouter.server.db.counter.DailyCounterIndex
 import scouter.server.util.OftenAction
 import scouter.server.util.ThreadScala
 import scouter.util.FileUtil
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 
 /**
   * 'daily counter writer' queue and dispatcher
   */
 object DailyCounterWR {
-    val queue = new RequestQueue[Data](DBCtr.MAX_QUE_SIZE)
+    val queue = new RingQueue[Data](DBCtr.MAX_QUE_SIZE)
     val prefix = "5m"
 
     var lastDateInt: Int = 0
@@ -36,7 +36,7 @@ import scouter.server.Logger
 import scouter.server.ShutdownManager
 import scouter.util.DateUtil
 import scouter.util.FileUtil
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.HashUtil
 import scouter.util.IClose
 import scouter.util.IShutdown
@@ -48,7 +48,7 @@ import scouter.server.util.ThreadScala
 object ObjectWR {
     val BLOCK_SIZE = 4096;
 
-    val queue = new RequestQueue[Order](DBCtr.MAX_QUE_SIZE);
+    val queue = new RingQueue[Order](DBCtr.MAX_QUE_SIZE);
 
     ThreadScala.start("scouter.server.db.ObjectWR") {
         while (DBCtr.running) {
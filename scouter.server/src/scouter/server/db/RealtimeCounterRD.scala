@@ -1,7 +1,11 @@
 package scouter.server.db;
 
 import scouter.io.DataInputX
+import scouter.lang.counters.CounterConstants
 import scouter.lang.value.MapValue
+import scouter.lang.value.Value
+import scouter.server.db.counter.CounterRollup
+import scouter.server.db.counter.CounterSeriesChunk
 import scouter.server.db.counter.RealtimeCounterDBHelper
 import scouter.util.DateUtil
 import scouter.util.FileUtil
@@ -25,7 +29,17 @@ object RealtimeCounterRD {
             perfdb = new RealtimeCounterDBHelper().open(date, true);
             if (perfdb == null)
                 return ;
-            perfdb.counterIndex.read(HashUtil.hash(objName), stime, etime, handler, perfdb.counterDbHeader.getTagIntStr(), perfdb.counterData.read);
+            val objHash = HashUtil.hash(objName)
+            val slim = getSlimSince(perfdb)
+            if (slim == 0 || etime < slim) {
+                perfdb.counterIndex.read(objHash, stime, etime, handler, perfdb.counterDbHeader.getTagIntStr(), perfdb.counterData.read);
+            } else {
+                val it = readSlim(perfdb, objHash, stime, etime, slim).entrySet().iterator()
+                while (it.hasNext()) {
+                    val e = it.next()
+                    handler(e.getKey(), e.getValue())
+                }
+            }
         } catch {
             case e: Exception => e.printStackTrace();
         } finally {
@@ -33,6 +47,59 @@ object RealtimeCounterRD {
         }
     }
 
+    private def getSlimSince(perfdb: RealtimeCounterDBHelper): Long = {
+        return if (perfdb.counterSeries == null) 0L else perfdb.counterSeries.getSlimSince()
+    }
+
+    /**
+      * the map records of one object in [stime, etime] by time, with the number counters the
+      * writer left out of them since slim put back from the series
+      */
+    private def readSlim(perfdb: RealtimeCounterDBHelper, objHash: Int, stime: Long, etime: Long, slim: Long): java.util.TreeMap[java.lang.Long, MapValue] = {
+        val rows = new java.util.TreeMap[java.lang.Long, MapValue]()
+        val tagMap = perfdb.counterDbHeader.getTagIntStr()
+        perfdb.counterIndex.read(objHash, stime, etime, (time: Long, items: MapValue) => rows.put(time, items), tagMap, perfdb.counterData.read)
+        val tags = tagMap.keys()
+        while (tags.hasMoreElements()) {
+            val tag = tags.nextInt()
+            val name = tagMap.get(tag)
+            if (RealtimeCounterDBHelper.isKey(name) == false) {
+                perfdb.counterSeries.readValues(objHash, tag, math.max(stime, slim), etime, (time: Long, valueType: Byte, v: Double) => {
+                    val items = rows.get(time)
+                    if (items != null)
+                        items.put(name, CounterSeriesChunk.toValue(valueType, v))
+                })
+            }
+        }
+        return rows
+    }
+
+    /**
+      * reads one counter of one object from the series store.
+      * returns false when the day is not covered by the series, the caller then reads the map records.
+      */
+    def readSeries(objName: String, date: String, counter: String, stime: Long, etime: Long, handler: (Long, Value) => Any): Boolean = {
+        if (objName == null)
+            return true;
+        var perfdb: RealtimeCounterDBHelper = null;
+        try {
+            perfdb = new RealtimeCounterDBHelper().open(date, true);
+            if (perfdb == null)
+                return true;
+            if (perfdb.counterSeries == null)
+                return false;
+            val tag = perfdb.counterDbHeader.getTagStrInt().get(counter);
+            if (tag < 0)
+                return true;
+            return perfdb.counterSeries.read(HashUtil.hash(objName), tag, stime, etime, handler);
+        } catch {
+            case e: Exception => e.printStackTrace();
+        } finally {
+            FileUtil.close(perfdb);
+        }
+        return false;
+    }
+
     def readBulk(date: String, _stime: Long, etime: Long, handler: (MapValue) => Any) {
         var perfdb: RealtimeCounterDBHelper = null;
         try {
@@ -40,6 +107,9 @@ object RealtimeCounterRD {
             if (perfdb == null) {
                 return
             }
+            val slim = getSlimSince(perfdb)
+            // records after slim wait for their numbers from the series, in file order
+            val late = new java.util.LinkedHashMap[(Int, Long), MapValue]()
             val unit = 1 * 60 * 1000
             var stime = _stime
             while(stime <= etime) {
@@ -52,7 +122,116 @@ object RealtimeCounterRD {
                         val buffer = perfdb.counterData.readBulk(posStart, posEnd)
                         val keyMap = perfdb.counterDbHeader.getTagIntStr()
                         val items = RealtimeCounterDBHelper.setTagBytesMulti(keyMap, buffer);
-                        items.foreach(mapValue => handler(mapValue))
+                        items.foreach(mapValue => {
+                            val time = mapValue.getLong(CounterConstants.COMMON_TIME)
+                            if (slim > 0 && time >= slim)
+                                late.put((mapValue.getInt(CounterConstants.COMMON_OBJHASH), time), mapValue)
+                            else
+                                handler(mapValue)
+                        })
+                    }
+                }
+            }
+            if (late.size() > 0) {
+                val from = math.max(_stime, slim)
+                val tagMap = perfdb.counterDbHeader.getTagIntStr()
+                val objs = perfdb.counterIndex.readObjHash(from, etime).values()
+                while (objs.hasMoreElements()) {
+                    val objHash = objs.nextInt()
+                    val tags = tagMap.keys()
+                    while (tags.hasMoreElements()) {
+                        val tag = tags.nextInt()
+                        val name = tagMap.get(tag)
+                        if (RealtimeCounterDBHelper.isKey(name) == false) {
+                            perfdb.counterSeries.readValues(objHash, tag, from, etime, (time: Long, valueType: Byte, v: Double) => {
+                                val items = late.get((objHash, time))
+                                if (items != null)
+                                    items.put(name, CounterSeriesChunk.toValue(valueType, v))
+                            })
+                        }
+                    }
+                }
+                val it = late.values().iterator()
+                while (it.hasNext()) {
+                    handler(it.next())
+                }
+            }
+        } catch {
+            case e: Exception => e.printStackTrace();
+        } finally {
+            FileUtil.close(perfdb);
+        }
+    }
+
+    /**
+      * reads the rollups of one counter merged into buckets of tier ms.
+      * returns false when the day has no rollups for stime, or when the object or counter is not
+      * known in that day's realtime db, so the caller falls back to the 5 minute daily counters.
+      */
+    def readRollup(objName: String, date: String, counter: String, stime: Long, etime: Long, tier: Long, handler: (CounterRollup) => Any): Boolean = {
+        if (objName == null)
+            return false;
+        var perfdb: RealtimeCounterDBHelper = null;
+        try {
+            perfdb = new RealtimeCounterDBHelper().open(date, true);
+            if (perfdb == null || perfdb.counterSeries == null)
+                return false;
+            val tag = perfdb.counterDbHeader.getTagStrInt().get(counter);
+            if (tag < 0)
+                return false;
+            return perfdb.counterSeries.readRollup(HashUtil.hash(objName), tag, stime, etime, tier, handler);
+        } catch {
+            case e: Exception => e.printStackTrace();
+        } finally {
+            FileUtil.close(perfdb);
+        }
+        return false;
+    }
+
+    /**
+      * readBulk for a few counters: the tag indexes are resolved once and the records are decoded
+      * in place, handler gets counter i of counters as a primitive value.
+      */
+    def readBulk(date: String, _stime: Long, etime: Long, counters: Array[String], handler: RealtimeCounterDBHelper.BulkHandler) {
+        var perfdb: RealtimeCounterDBHelper = null;
+        try {
+            perfdb = new RealtimeCounterDBHelper().open(date, true);
+            if (perfdb == null) {
+                return
+            }
+            val tagMap = perfdb.counterDbHeader.getTagStrInt()
+            val objHashTag = tagMap.get(CounterConstants.COMMON_OBJHASH)
+            val timeTag = tagMap.get(CounterConstants.COMMON_TIME)
+            if (objHashTag < 0 || timeTag < 0) {
+                return
+            }
+            val tags = counters.map(c => if (c == null) -1 else tagMap.get(c))
+            // from slim on the numbers are only in the series
+            val slim = getSlimSince(perfdb)
+            val mapEnd = if (slim > 0 && etime >= slim) slim - 1 else etime
+            val unit = 1 * 60 * 1000
+            var stime = _stime
+            while(stime <= mapEnd) {
+                val pos = perfdb.counterIndex.getStartEndDataPos(stime, math.min(stime+unit-1, mapEnd))
+                stime += unit
+                if(pos._1 != null && pos._2 != null) {
+                    val posStart = DataInputX.toLong5(pos._1, 0)
+                    val posEnd = DataInputX.toLong5(pos._2, 0)
+                    if(posStart > 0 && posEnd > 0) {
+                        val buffer = perfdb.counterData.readBulk(posStart, posEnd)
+                        RealtimeCounterDBHelper.readTagBytesMulti(buffer, objHashTag, timeTag, tags, handler)
+                    }
+                }
+            }
+            if (mapEnd < etime) {
+                val from = math.max(_stime, slim)
+                val objs = perfdb.counterIndex.readObjHash(from, etime).values()
+                while (objs.hasMoreElements()) {
+                    val objHash = objs.nextInt()
+                    for (k <- 0 to tags.length - 1 if tags(k) >= 0) {
+                        perfdb.counterSeries.readValues(objHash, tags(k), from, etime, (time: Long, valueType: Byte, v: Double) => {
+                            handler.handle(objHash, time, k, valueType, v)
+                        })
                     }
                 }
             }
@@ -91,8 +270,18 @@ object RealtimeCounterRD {
             if (logdb == null)
                 return ;
 
-            logdb.counterIndex.readFromEnd(HashUtil.hash(objName), stime, etime, handler, logdb.counterDbHeader.getTagIntStr(),
-                logdb.counterData.read);
+            val objHash = HashUtil.hash(objName)
+            val slim = getSlimSince(logdb)
+            if (slim == 0 || etime < slim) {
+                logdb.counterIndex.readFromEnd(objHash, stime, etime, handler, logdb.counterDbHeader.getTagIntStr(),
+                    logdb.counterData.read);
+            } else {
+                val it = readSlim(logdb, objHash, stime, etime, slim).descendingMap().entrySet().iterator()
+                while (it.hasNext()) {
+                    val e = it.next()
+                    handler(e.getKey(), e.getValue())
+                }
+            }
         } catch {
             case e: Exception => e.printStackTrace();
         } finally {
@@ -22,22 +22,28 @@ import scouter.lang.pack.PerfCounterPack
 import scouter.lang.value.DecimalValue
 import scouter.server.Logger
 import scouter.server.db.counter.RealtimeCounterDBHelper
+import scouter.server.db.counter.RealtimeCounterSeries
 import scouter.server.plugin.PlugInManager
 import scouter.util.DateUtil
 import scouter.util.FileUtil
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.HashUtil
 import scouter.util.IClose
 import scouter.util.ThreadUtil;
 import scouter.server.util.ThreadScala
 object RealtimeCounterWR {
-    val queue = new RequestQueue[PerfCounterPack](DBCtr.MAX_QUE_SIZE);
+    // fed by every PerfCountCore shard
+    val queue = new RingQueue[PerfCounterPack](DBCtr.MAX_QUE_SIZE);
+    private var lastFlushWindow = 0L
     ThreadScala.start("scouter.server.db.RealtimeCounterWR") {
         val last_logtime = System.currentTimeMillis();
         var dBHelper: RealtimeCounterDBHelper = null
         while (DBCtr.running) {
-            val pack = queue.get()
-            try {
+            val pack = queue.get(1000)
+            if (pack == null) {
+                if (dBHelper != null && dBHelper.counterSeries != null)
+                    dBHelper.counterSeries.flushBefore(System.currentTimeMillis())
+            } else try {
                 if (dBHelper == null) {
                     dBHelper = writeOpen(pack)
                 } else if (dBHelper.currentDateUnit != DateUtil.getDateUnit(pack.time)) {
@@ -48,9 +54,17 @@ object RealtimeCounterWR {
                 dBHelper.activeTime = System.currentTimeMillis()
                 dBHelper.counterDbHeader.intern(pack.data.keySet())
 
-                val counterBytes = RealtimeCounterDBHelper.getTagBytes(dBHelper.counterDbHeader.getTagStrInt(), pack.data)
+                // the number counters go to the series only, the map record keeps the rest
+                val slim = dBHelper.counterSeries != null
+                if (slim) {
+                    dBHelper.counterSeries.markSlim(pack.time)
+                }
+                val counterBytes = RealtimeCounterDBHelper.getTagBytes(dBHelper.counterDbHeader.getTagStrInt(), pack.data, slim)
                 val dataOffset = dBHelper.counterData.write(counterBytes)
                 dBHelper.counterIndex.write(objHash, pack.time, dataOffset)
+                if (slim) {
+                    writeSeries(dBHelper, objHash, pack)
+                }
 
             } catch {
                 case t: Throwable => Logger.println("S133", 10, t.toString())
@@ -58,6 +72,22 @@ object RealtimeCounterWR {
         }
         FileUtil.close(dBHelper);
     }
+    private def writeSeries(db: RealtimeCounterDBHelper, objHash: Int, pack: PerfCounterPack) {
+        val tags = db.counterDbHeader.getTagStrInt()
+        val en = pack.data.keys()
+        while (en.hasMoreElements()) {
+            val name = en.nextElement()
+            val tag = tags.get(name)
+            if (tag >= 0 && RealtimeCounterDBHelper.isKey(name) == false) {
+                db.counterSeries.add(objHash, tag, pack.time, pack.data.get(name))
+            }
+        }
+        if (pack.time / RealtimeCounterSeries.CHUNK_MS != lastFlushWindow) {
+            lastFlushWindow = pack.time / RealtimeCounterSeries.CHUNK_MS
+            db.counterSeries.flushBefore(pack.time)
+        }
+    }
+
     def addWait(p: PerfCounterPack, max: Int) {
         while (queue.size() >= max) {
             ThreadUtil.sleep(100);
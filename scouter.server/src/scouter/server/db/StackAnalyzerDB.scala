@@ -22,7 +22,7 @@ import scouter.lang.pack.XLogPack
 import scouter.server.Configure
 import scouter.server.Logger
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.StringKeyLinkedMap
 import scouter.server.util.cardinality.HyperLogLog
 import scouter.util.DateUtil
@@ -51,7 +51,7 @@ import scouter.server.util.BinSearch
 object StackAnalyzerDB {
     val IDX_LEN = 8 + 5
 
-    val queue = new RequestQueue[StackPack](DBCtr.MAX_QUE_SIZE);
+    val queue = new RingQueue[StackPack](DBCtr.MAX_QUE_SIZE);
     val dbinfo = new LongKeyLinkedMap[String]().setMax(1000);
     ThreadScala.startDaemon("scouter.server.db.StackDB") {
         while (DBCtr.running) {
@@ -24,13 +24,13 @@ import scouter.server.db.status.StatusWriter
 import scouter.util.DateUtil
 import scouter.util.FileUtil
 import scouter.util.IClose
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import java.io.File
 import scouter.server.util.ThreadScala
 import scouter.server.util.OftenAction
 object StatusWR {
     val status = "status";
-    val queue = new RequestQueue[StatusPack](DBCtr.MAX_QUE_SIZE);
+    val queue = new RingQueue[StatusPack](DBCtr.MAX_QUE_SIZE);
     ThreadScala.start("scouter.server.db.StatusWR") {
         var currentDateUnit = 0L
         while (DBCtr.running) {
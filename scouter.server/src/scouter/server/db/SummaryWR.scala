@@ -24,7 +24,7 @@ import scouter.server.db.summary.SummaryWriter
 import scouter.util.DateUtil
 import scouter.util.FileUtil
 import scouter.util.IClose
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import java.io.File
 import scouter.server.util.ThreadScala
 import scouter.server.util.OftenAction
@@ -32,12 +32,13 @@ import scouter.lang.SummaryEnum
 import scouter.server.core.ServerStat
 object SummaryWR {
   val root = "sum";
-  val queue = new RequestQueue[SummaryPack](DBCtr.MAX_QUE_SIZE);
+  val queue = new RingQueue[SummaryPack](DBCtr.MAX_QUE_SIZE);
   ThreadScala.start("scouter.server.db.SummaryWR") {
     var currentDateUnit = 0L
     while (DBCtr.running) {
       val p = queue.get();
       ServerStat.put("summary.db.queue", queue.size());
+      ServerStat.put("summary.db.drop", queue.getDropCount());
       try {
         if (currentDateUnit != DateUtil.getDateUnit(p.time)) {
           currentDateUnit = DateUtil.getDateUnit(p.time);
@@ -0,0 +1,264 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.db
+
+import java.io.File
+import java.util.concurrent.atomic.AtomicLong
+
+import scouter.io.DataInputX
+import scouter.server.{Configure, Logger}
+import scouter.server.core.ServerStat
+import scouter.server.db.text.TextBloom
+import scouter.server.util.ThreadScala
+import scouter.util.{HashUtil, RingQueue, StringKeyLinkedMap}
+
+/**
+  * bloom filter per text type (per day for the types TextWR stores by date) checked when a
+  * text is queued: a miss means the text is new and the writer skips its index probe, a hit is
+  * confirmed by the writer's own probe. Filters are loaded or built from the index on a separate
+  * thread and are not used until they hold every stored key. A filter that gets too full for
+  * its size is rebuilt twice as large from the index, so the permanent types stay accurate.
+  * <p>
+  * A loaded filter file is deleted and written again only at close, so a crash leaves no stale
+  * filter behind and it is rebuilt.
+  */
+object TextDupFilter {
+
+    val UNKNOWN = 0
+    val NEW = 1
+    val HIT = 2
+
+    private val MAX_OPEN = 64;
+    private val MAX_FPP = 0.01;
+    private val MAX_KB = 64 * 1024;
+    private val filters = new StringKeyLinkedMap[Filter]();
+    private val tasks = new RingQueue[Task](1024);
+
+    val newKeys = new AtomicLong();
+    val falsePositives = new AtomicLong();
+    val duplicates = new AtomicLong();
+    val rejected = new AtomicLong();
+
+    class Filter(_file: File, _date: String, _div: String, _kb: Int) {
+        val file = _file
+        val date = _date
+        val div = _div
+        val bloom = new TextBloom(file, _kb)
+        @volatile var ready = false
+        @volatile var next: Filter = null
+
+        def put(hash: Int) {
+            bloom.put(hash)
+            val n = next
+            if (n != null) {
+                n.bloom.put(hash)
+            }
+        }
+    }
+
+    class Task(_filter: Filter, _kind: Int) {
+        val filter = _filter
+        val kind = _kind
+    }
+
+    private val OPEN = 0
+    private val SAVE = 1
+    private val GROW = 2
+
+    ThreadScala.startFixedRate(10000) {
+        val fp = falsePositives.get()
+        val total = newKeys.get() + fp
+        ServerStat.put("text.filter.fp", if (total == 0) 0f else fp * 100f / total)
+        ServerStat.put("text.filter.dup", duplicates.get())
+        ServerStat.put("text.filter.rejected", rejected.get())
+    }
+
+    ThreadScala.start("scouter.server.db.TextDupFilter") {
+        while (DBCtr.running) {
+            val task = tasks.get(1000)
+            if (task != null) {
+                task.kind match {
+                    case SAVE => task.filter.bloom.save()
+                    case OPEN => open(task.filter)
+                    case GROW => grow(task.filter)
+                }
+            }
+        }
+    }
+
+    /**
+      * checked before a text is queued: NEW when the hash is surely not stored yet, so the writer
+      * can skip its index probe, HIT when the writer has to probe, UNKNOWN while no filter is ready.
+      * A new hash is put right away so a resend queued behind it is probed.
+      */
+    def check(date: String, div: String, hash: Int): Int = {
+        if (Configure.getInstance().text_dup_filter_enabled == false)
+            return UNKNOWN
+        val f = getFilter(date, div)
+        if (f == null || f.ready == false)
+            return UNKNOWN
+        if (f.bloom.mightContain(hash))
+            return HIT
+        f.put(hash)
+        newKeys.incrementAndGet()
+        return NEW
+    }
+
+    /**
+      * called by the writer after it stored a text with the state check returned for it
+      */
+    def stored(date: String, div: String, hash: Int, state: Int) {
+        if (Configure.getInstance().text_dup_filter_enabled == false)
+            return
+        val f = getFilter(date, div)
+        if (f == null)
+            return
+        f.put(hash)
+        if (state == HIT) {
+            falsePositives.incrementAndGet()
+        }
+        checkSize(f)
+    }
+
+    /**
+      * called by the writer when its probe found the text already stored
+      */
+    def duplicated() {
+        duplicates.incrementAndGet()
+    }
+
+    /**
+      * called when a resent text is dropped before it is queued
+      */
+    def reject() {
+        rejected.incrementAndGet()
+    }
+
+    private def checkSize(f: Filter) {
+        if (f.ready == false || f.next != null || f.bloom.expectedFpp() <= MAX_FPP)
+            return
+        val kb = Math.min(MAX_KB, f.bloom.getSizeKb() * 2)
+        if (kb <= f.bloom.getSizeKb())
+            return
+        f.next = new Filter(f.file, f.date, f.div, kb)
+        tasks.put(new Task(f, GROW))
+    }
+
+    private def getFilter(date: String, div: String): Filter = {
+        val dir = if (TextPermWR.isA(div)) TextPermWR.getDBPath() else TextWR.getDBPath(date)
+        val file = new File(dir, "text_" + div + ".bloom")
+        val key = file.getPath()
+        var f = filters.get(key)
+        if (f != null)
+            return f
+        filters.synchronized {
+            f = filters.get(key)
+            if (f == null) {
+                // a filter grown earlier is saved larger than the configured size
+                val kb = Math.max(Configure.getInstance().text_dup_filter_kb, TextBloom.getSizeKb(file))
+                f = new Filter(file, date, div, kb)
+                if (tasks.put(new Task(f, OPEN)) == false)
+                    return null
+                while (filters.size() >= MAX_OPEN) {
+                    val old = filters.removeFirst()
+                    if (old.ready) {
+                        tasks.put(new Task(old, SAVE))
+                    }
+                }
+                filters.put(key, f)
+            }
+        }
+        return f
+    }
+
+    private def open(f: Filter) {
+        val saved = TextBloom.load(f.file)
+        if (saved != null) {
+            f.file.delete()
+        }
+        if (saved == null || f.bloom.merge(saved) == false) {
+            new File(f.file.getParent()).mkdirs()
+            if (build(f.bloom, f.date, f.div) == false)
+                return
+        }
+        f.ready = true
+        checkSize(f)
+    }
+
+    /**
+      * builds the larger filter of f from the index, f.next gets the keys stored meanwhile,
+      * and replaces f once it is ready
+      */
+    private def grow(f: Filter) {
+        val g = f.next
+        if (build(g.bloom, g.date, g.div) == false) {
+            f.next = null
+            return
+        }
+        g.ready = true
+        val key = f.file.getPath()
+        filters.synchronized {
+            if (filters.get(key) eq f) {
+                filters.put(key, g)
+            }
+        }
+        Logger.println("S229", "text filter " + f.div + " grown to " + g.bloom.getSizeKb() + "KB")
+    }
+
+    /**
+      * fills a new filter with the hashes already stored, e.g. on the first start after an upgrade
+      */
+    private def build(bloom: TextBloom, date: String, div: String): Boolean = {
+        try {
+            if (TextPermWR.isA(div)) {
+                val (index, data) = TextPermWR.open(div)
+                if (index == null)
+                    return false
+                index.readKeys((hash: Int) => bloom.put(hash))
+            } else if (new File(TextWR.getDBPath(date), "text.kfile").exists()) {
+                val table = TextWR.open(date)
+                val divHash = HashUtil.hash(div)
+                if (table == null)
+                    return false
+                table.read((key: Array[Byte], value: Array[Byte]) => {
+                    if (DataInputX.toInt(key, 0) == divHash) {
+                        bloom.put(DataInputX.toInt(key, 4))
+                    }
+                })
+            }
+            return true
+        } catch {
+            case e: Exception =>
+                Logger.println("S222", "text filter build failed " + div + " " + e)
+        }
+        return false
+    }
+
+    def close() {
+        filters.synchronized {
+            while (filters.size() > 0) {
+                val f = filters.removeFirst()
+                if (f.ready) {
+                    f.bloom.save()
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ package scouter.server.db;
 
 import scouter.server.core.cache.TextCache
 import scouter.util.HashUtil
+import scala.collection.mutable.ArrayBuffer
 
 object TextPermRD {
   def getString(division: String, hash: Int): String = {
@@ -44,6 +45,32 @@ object TextPermRD {
     return null;
   }
 
+  def getStrings(division: String, hashes: Array[Int], handler: (Int, String) => Any) {
+    val missing = TextRD.uncached(division, hashes, handler);
+    if (missing.length == 0)
+      return;
+    try {
+      val (index, data) = TextPermWR.open(division);
+      if (index == null)
+        return;
+      val found = new ArrayBuffer[Int]();
+      val fpos = new ArrayBuffer[Long]();
+      index.getBatch(missing, (i: Int, pos: Long) => {
+        if (pos > 0) {
+          found += missing(i);
+          fpos += pos;
+        }
+      })
+      data.readBatch(fpos.toArray, (i: Int, bytes: Array[Byte]) => {
+        val text = new String(bytes, "UTF-8");
+        TextCache.put(division, found(i), text);
+        handler(found(i), text);
+      })
+    } catch {
+      case e: Exception => e.printStackTrace();
+    }
+  }
+
   def read(division: String, handler: (Array[Byte], Array[Byte]) => Unit) {
     try {
       val (index, data) = TextPermWR.open(division);
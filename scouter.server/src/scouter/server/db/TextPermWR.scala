@@ -25,14 +25,14 @@ import scouter.server.core.cache.TextCache
 import scouter.server.util.ThreadScala
 import scouter.util.HashUtil
 import scouter.util.Hexa32
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.StringUtil
 import scouter.server.db.text.TextPermIndex
 import scouter.server.db.text.TextPermData
 
 object TextPermWR {
 
-  val queue = new RequestQueue[Data](DBCtr.LARGE_MAX_QUE_SIZE);
+  val queue = new RingQueue[Data](DBCtr.LARGE_MAX_QUE_SIZE);
 
   //에러만 날짜별로 저장한다.-20151110
   def isA(divs: String): Boolean = {
@@ -48,10 +48,13 @@ object TextPermWR {
           queue.clear();
           Logger.println("S137", 10, "can't open db");
         } else {
-          val ok = indexDb.hasKey(data.hash);
+          val ok = data.state != TextDupFilter.NEW && indexDb.hasKey(data.hash);
           if (ok == false) {
             val dataPos = dataDb.write(data.text.getBytes("UTF8"));
             indexDb.set(data.hash, dataPos);
+            TextDupFilter.stored(null, data.div, data.hash, data.state)
+          } else {
+            TextDupFilter.duplicated()
           }
         }
       } catch {
@@ -66,16 +69,18 @@ object TextPermWR {
       return
 
     TextCache.put(divHash, hash, text)
-    val ok = queue.put(new Data(divHash, hash, text))
+    val state = TextDupFilter.check(null, divHash, hash)
+    val ok = queue.put(new Data(divHash, hash, text, state))
     if (ok == false) {
       Logger.println("S138", 10, "queue exceeded!!");
     }
   }
 
-  class Data(_divs: String, _hash: Int, _text: String) {
+  class Data(_divs: String, _hash: Int, _text: String, _state: Int) {
     val div = _divs;
     val hash = _hash;
     val text = _text;
+    val state = _state;
   }
 
   def open(div: String): (TextPermIndex, TextPermData) = {
@@ -21,7 +21,9 @@ package scouter.server.db;
 import scouter.server.core.cache.TextCache
 import scouter.server.db.text.TextTable
 import scouter.util.HashUtil
+import scouter.util.IntSet
 import scouter.lang.TextTypes
+import scala.collection.mutable.ArrayBuffer
 
 object TextRD {
 
@@ -47,4 +49,49 @@ object TextRD {
     }
     return null;
   }
+
+  /**
+    * resolves a batch of hashes of one type. Duplicates and cached texts are answered first,
+    * the rest are looked up together so the table is probed in file order.
+    */
+  def getStrings(date: String, divs: String, hashes: Array[Int], handler: (Int, String) => Any) {
+    if (TextPermWR.isA(divs)) {
+      TextPermRD.getStrings(divs, hashes, handler);
+      return;
+    }
+    val missing = uncached(divs, hashes, handler);
+    if (missing.length == 0)
+      return;
+    try {
+      val table = TextWR.open(date)
+      if (table == null)
+        return;
+      table.getBatch(divs, missing, (i: Int, b: Array[Byte]) => {
+        val text = new String(b, "UTF-8");
+        TextCache.put(divs, missing(i), text);
+        handler(missing(i), text);
+      })
+    } catch {
+      case e: Exception => e.printStackTrace()
+    }
+  }
+
+  /**
+    * hands cached texts to the handler and returns the other distinct hashes
+    */
+  private[db] def uncached(divs: String, hashes: Array[Int], handler: (Int, String) => Any): Array[Int] = {
+    val seen = new IntSet();
+    val missing = new ArrayBuffer[Int]();
+    for (h <- hashes) {
+      if (h != 0 && seen.add(h)) {
+        val text = TextCache.get(divs, h);
+        if (text != null) {
+          handler(h, text);
+        } else {
+          missing += h;
+        }
+      }
+    }
+    return missing.toArray;
+  }
 }
\ No newline at end of file
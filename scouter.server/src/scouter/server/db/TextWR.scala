@@ -21,19 +21,19 @@ package scouter.server.db
 import java.io.File
 import java.util.ArrayList
 
-import scouter.server.Logger
+import scouter.server.{Configure, Logger}
 import scouter.server.core.cache.TextCache
 import scouter.server.core.{CoreRun, ServerStat}
 import scouter.server.db.text.TextTable
 import scouter.server.util.{EnumerScala, ThreadScala}
-import scouter.util.{DateUtil, FileUtil, LinkedMap, RequestQueue}
+import scouter.util.{DateUtil, FileUtil, LinkedMap, RingQueue}
 
 object TextWR {
 
     protected val database = new LinkedMap[String, TextTable]();
     protected var idleConns = new ArrayList[String]();
 
-    val queue = new RequestQueue[Data](DBCtr.LARGE_MAX_QUE_SIZE);
+    val queue = new RingQueue[Data](DBCtr.LARGE_MAX_QUE_SIZE);
 
     // executed every 10sec
     ThreadScala.start("scouter.server.db.TextWR", {CoreRun.running}, 10000) {
@@ -55,6 +55,7 @@ object TextWR {
             closeIdle();
             val data = queue.get(10000); //check 10 sec
             ServerStat.put("text.db.queue", queue.size());
+            ServerStat.put("text.db.drop", queue.getDropCount());
 
             if (data != null) {
                 try {
@@ -65,6 +66,7 @@ object TextWR {
             }
         }
         close();
+        TextDupFilter.close();
     }
 
     protected def closeIdle() {
@@ -91,8 +93,6 @@ object TextWR {
 
     def process(data: Data) {
         if (TextPermWR.isA(data.div)) {
-            //성능:중복입력을 막아야한다.
-            TextDupCheck.addDuplicated(data.div, data.textUnit);
             TextPermWR.add(data.div, data.hash, data.text);
         } else {
             val textTable = open(data.date);
@@ -100,10 +100,12 @@ object TextWR {
                 queue.clear();
                 Logger.println("S139", 10, "can't open db");
             } else {
-                val ok = textTable.hasKey(data.div, data.hash);
+                val ok = data.state != TextDupFilter.NEW && textTable.hasKey(data.div, data.hash);
                 if (!ok) {
-                    TextDupCheck.addDuplicated(data.div, data.textUnit);
                     textTable.set(data.div, data.hash, data.text.getBytes("UTF8"));
+                    TextDupFilter.stored(data.date, data.div, data.hash, data.state)
+                } else {
+                    TextDupFilter.duplicated()
                 }
             }
         }
@@ -113,30 +115,37 @@ object TextWR {
 
         TextCache.put(div, hash, text);
 
+        //성능:중복입력을 막아야한다.
         val tu = new TextDupCheck.TextUnit(date, hash);
-        if (TextDupCheck.isDuplicated(div, tu))
+        if (TextDupCheck.isDuplicated(div, tu)) {
+            TextDupFilter.reject()
             return;
+        }
+        // the permanent types are checked when TextPermWR queues them
+        val state = if (TextPermWR.isA(div)) TextDupFilter.UNKNOWN else TextDupFilter.check(date, div, hash)
 
-        val ok = queue.put(new Data(date, div, hash, text, tu));
-        if (!ok) {
+        val ok = queue.put(new Data(date, div, hash, text, state));
+        if (ok) {
+            TextDupCheck.addDuplicated(div, tu);
+        } else {
             Logger.println("S140", 10, "queue exceeded!!");
         }
     }
 
     /**
-      * Text Data Type (date, div, hash, text, textUnit(date&hash))
+      * Text Data Type (date, div, hash, text, state of TextDupFilter.check)
       * @param _date
       * @param _div
       * @param _hash
       * @param _text
-      * @param _tu
+      * @param _state
       */
-    class Data(_date: String, _div: String, _hash: Int, _text: String, _tu: TextDupCheck.TextUnit) {
+    class Data(_date: String, _div: String, _hash: Int, _text: String, _state: Int) {
         val date = _date
         val div = _div
         val hash = _hash
         val text = _text
-        var textUnit = _tu
+        val state = _state
     }
 
     def open(date: String): TextTable = {
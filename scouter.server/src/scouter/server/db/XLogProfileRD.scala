@@ -43,6 +43,18 @@ import scouter.util.ThreadUtil;
 object XLogProfileRD {
     val prefix = "xlog";
 
+    private def openIndex(file: String): XLogProfileIndex = {
+        DBReaderPool.hold("profile.index:" + file, XLogProfileIndex.open(file));
+        return XLogProfileIndex.open(file);
+    }
+
+    private def openReader(date: String, file: String): XLogProfileDataReader = {
+        if (new File(file + ".profile").canRead()) {
+            DBReaderPool.hold("profile.data:" + file, XLogProfileDataReader.open(date, file));
+        }
+        return XLogProfileDataReader.open(date, file);
+    }
+
     class ResultSet(_keys: java.util.List[Long], _reader: XLogProfileDataReader) {
         def this() = this(null, null)
         var x = 0
@@ -76,7 +88,7 @@ object XLogProfileRD {
         }
         val file = path + "/" + XLogProfileWR.prefix;
         var result: List[Long] = null;
-        val idx = XLogProfileIndex.open(file);
+        val idx = openIndex(file);
         try {
             result = idx.getByTxid(txid);
         } finally {
@@ -87,7 +99,7 @@ object XLogProfileRD {
             return null;
         }
 
-        val reader = XLogProfileDataReader.open(date, file);
+        val reader = openReader(date, file);
         try {
             var blockCnt = 0
             for (i <- 0 to result.size() - 1) {
@@ -118,7 +130,7 @@ object XLogProfileRD {
             }
             val file = path + "/" + XLogProfileWR.prefix;
             var result: List[Long] = null;
-            val idx = XLogProfileIndex.open(file);
+            val idx = openIndex(file);
             try {
                 result = idx.getByTxid(txid);
             } finally {
@@ -129,7 +141,7 @@ object XLogProfileRD {
                 return ;
             }
 
-            val reader = XLogProfileDataReader.open(date, file);
+            val reader = openReader(date, file);
             try {
                 for (i <- 0 to result.size() - 1) {
                     val buff = reader.read(result.get(i).longValue());
@@ -155,13 +167,13 @@ object XLogProfileRD {
         }
         val file = path + "/" + prefix;
         var result: List[Long] = null;
-        val idx = XLogProfileIndex.open(file);
+        val idx = openIndex(file);
         try {
             result = idx.getByTxid(txid);
         } finally {
             idx.close();
         }
-        val reader = XLogProfileDataReader.open(date, file);
+        val reader = openReader(date, file);
         return new ResultSet(result, reader);
     }
 }
\ No newline at end of file
@@ -24,17 +24,17 @@ import scouter.server.db.xlog.XLogProfileDataWriter
 import scouter.server.db.xlog.XLogProfileIndex
 import scouter.util.DateUtil
 import scouter.util.FileUtil
-import scouter.util.RequestQueue
+import scouter.util.SingleProducerRingQueue
 import scouter.util.IClose
 import scouter.util.IShutdown
 import scouter.util.ThreadUtil
 import java.io.File
 import scouter.server.util.ThreadScala
 import scouter.server.util.OftenAction
-import scouter.server.core.ServerStat
+import scouter.server.core.{CoreRun, ServerStat}
 import scouter.server.Configure
 object XLogProfileWR extends IClose {
-    val queue = new RequestQueue[Data](Configure.getInstance().profile_queue_size);
+    val queue = new SingleProducerRingQueue[Data](CoreRun.queueSize("profile_queue_size", Configure.getInstance().profile_queue_size));
     class ResultSet(keys: List[Long], var reader: XLogProfileDataReader) {
         var max: Int = if (keys == null) 0 else keys.size()
         var x: Int = 0;
@@ -62,6 +62,7 @@ object XLogProfileWR extends IClose {
         while (DBCtr.running) {
             val m = queue.get();
               ServerStat.put("profile.db.queue",queue.size());
+              ServerStat.put("profile.db.drop",queue.getDropCount());
               try {
                 if (currentDateUnit != DateUtil.getDateUnit(m.time)) {
                     currentDateUnit = DateUtil.getDateUnit(m.time);
@@ -21,29 +21,46 @@ package scouter.server.db;
 import java.io.File
 import java.util.List
 import java.util.Vector
+import scouter.io.DataInputX
 import scouter.io.DataOutputX
 import scouter.server.db.xlog.XLogDataReader
+import scouter.server.db.xlog.XLogFilter
 import scouter.server.db.xlog.XLogIndex
 import scouter.util.FileUtil
-import scouter.server.db.io.IndexTimeFile
 
 object XLogRD {
 
+    /**
+      * the pool keeps its own reference, so the index stays open after the caller closes it
+      */
+    private def openIndex(file: String): XLogIndex = {
+        DBReaderPool.hold("xlog.index:" + file, XLogIndex.open(file));
+        return XLogIndex.open(file);
+    }
+
+    private def openReader(date: String, file: String): XLogDataReader = {
+        if (new File(file + ".service").canRead()) {
+            DBReaderPool.hold("xlog.data:" + file, XLogDataReader.open(date, file));
+        }
+        return XLogDataReader.open(date, file);
+    }
+
     def readByTime(date: String, fromTime: Long, toTime: Long, handler: (Long, Array[Byte]) => Any) {
         val path = XLogWR.getDBPath(date);
         if (new File(path).canRead()) {
             val file = path + "/" + XLogWR.prefix;
             var reader: XLogDataReader = null;
-            var table: IndexTimeFile = null;
+            var idx: XLogIndex = null;
             try {
-                reader = XLogDataReader.open(date, file);
-                table = new IndexTimeFile(file + XLogIndex.POSTFIX_TIME);
+                reader = openReader(date, file);
+                idx = openIndex(file);
+                val table = idx.getTimeIndex();
                 table.read(fromTime, toTime, handler, reader.read)
             } catch {
                 case e: Exception => e.printStackTrace()
                 case _ :Throwable=>
             } finally {
-                FileUtil.close(table);
+                FileUtil.close(idx);
                 FileUtil.close(reader);
             }
         }
@@ -55,15 +72,50 @@ object XLogRD {
         if (new File(path).canRead()) {
             val file = path + "/" + XLogWR.prefix;
             var reader: XLogDataReader = null;
-            var table: IndexTimeFile = null;
+            var idx: XLogIndex = null;
             try {
-                reader = XLogDataReader.open(date, file);
-                table = new IndexTimeFile(file + XLogIndex.POSTFIX_TIME);
+                reader = openReader(date, file);
+                idx = openIndex(file);
+                val table = idx.getTimeIndex();
                 table.readFromEnd(fromTime, toTime, handler, reader.read)
             } catch {
                 case e: Throwable => //e.printStackTrace();
             } finally {
-                FileUtil.close(table);
+                FileUtil.close(idx);
+                FileUtil.close(reader);
+            }
+        }
+    }
+
+    /**
+      * reads the xlogs passing the filter until the handler returns false.
+      * the filter is applied to the time index value first, so most rejected xlogs are never read.
+      */
+    def readByFilter(date: String, fromTime: Long, toTime: Long, reverse: Boolean, filter: XLogFilter,
+                     handler: (Long, Array[Byte]) => Boolean) {
+        val path = XLogWR.getDBPath(date);
+        if (new File(path).canRead()) {
+            val file = path + "/" + XLogWR.prefix;
+            var reader: XLogDataReader = null;
+            var idx: XLogIndex = null;
+            try {
+                reader = openReader(date, file);
+                idx = openIndex(file);
+                val table = idx.getTimeIndex();
+                table.readWhile(fromTime, toTime, reverse == false, (time: Long, value: Array[Byte]) => {
+                    if (filter == null) {
+                        handler(time, reader.read(DataInputX.toLong5(value, 0)))
+                    } else if (filter.acceptIndex(value)) {
+                        val data = reader.read(DataInputX.toLong5(value, 0))
+                        if (filter.accept(value, data)) handler(time, data) else true
+                    } else {
+                        true
+                    }
+                })
+            } catch {
+                case e: Exception => e.printStackTrace()
+            } finally {
+                FileUtil.close(idx);
                 FileUtil.close(reader);
             }
         }
@@ -78,7 +130,7 @@ object XLogRD {
         var fpos = 0L
         var idx: XLogIndex = null;
         try {
-            idx = XLogIndex.open(file);
+            idx = openIndex(file);
             fpos = idx.getByTxid(txid);
         } catch {
             case e: Exception => return null;
@@ -89,7 +141,7 @@ object XLogRD {
             return null;
         var reader: XLogDataReader = null;
         try {
-            reader = XLogDataReader.open(date, file);
+            reader = openReader(date, file);
             return reader.read(fpos);
         } catch {
             case e: Exception => return null;
@@ -109,7 +161,7 @@ object XLogRD {
         var result: java.util.List[Long] = null;
         var idx: XLogIndex = null;
         try {
-            idx = XLogIndex.open(file);
+            idx = openIndex(file);
             result = idx.getByGxid(gxid);
         } catch {
             case e: Exception => e.printStackTrace();
@@ -122,7 +174,7 @@ object XLogRD {
         val gidb = DataOutputX.toBytes(gxid);
         var reader: XLogDataReader = null;
         try {
-            reader = XLogDataReader.open(date, file);
+            reader = openReader(date, file);
 
             for (i <- 0 to result.size() - 1) {
                 handler(gidb, reader.read(result.get(i)));
@@ -145,8 +197,8 @@ object XLogRD {
         var idx: XLogIndex = null;
         var reader: XLogDataReader = null;
         try {
-            idx = XLogIndex.open(file);
-            reader = XLogDataReader.open(date, file);
+            idx = openIndex(file);
+            reader = openReader(date, file);
             idx.readByTxid(handler, reader.read);
         } catch {
             case e: Exception => e.printStackTrace();
@@ -168,8 +220,8 @@ object XLogRD {
         var idx: XLogIndex = null;
         var reader: XLogDataReader = null;
         try {
-            idx = XLogIndex.open(file);
-            reader = XLogDataReader.open(date, file);
+            idx = openIndex(file);
+            reader = openReader(date, file);
 
             idx.readByGxid(handler, reader.read);
         } catch {
@@ -192,7 +244,7 @@ object XLogRD {
         var result: java.util.List[Long] = null;
         var idx: XLogIndex = null;
         try {
-            idx = XLogIndex.open(file);
+            idx = openIndex(file);
             result = idx.getByGxid(guid);
             if (result.size() == 0)
                 return null;
@@ -204,7 +256,7 @@ object XLogRD {
 
         var reader: XLogDataReader = null;
         try {
-            reader = XLogDataReader.open(date, file);
+            reader = openReader(date, file);
             for (i <- 0 to result.size() - 1) {
                 val buff = reader.read(result.get(i).longValue());
                 if (buff != null) {
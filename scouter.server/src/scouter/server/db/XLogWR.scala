@@ -19,71 +19,120 @@
 package scouter.server.db;
 
 import java.io.File
+import java.util.ArrayList
 
 import scouter.server.Configure
 import scouter.server.Logger
-import scouter.server.core.ServerStat
+import scouter.server.core.{CoreRun, ServerStat}
+import scouter.lang.pack.XLogPack
 import scouter.server.db.xlog.XLogDataWriter
 import scouter.server.db.xlog.XLogIndex
 import scouter.server.util.OftenAction
 import scouter.server.util.ThreadScala
 import scouter.util.DateUtil
 import scouter.util.FileUtil
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 
 object XLogWR {
 
     val dir = "/xlog"
     val prefix = "xlog"
 
-    val queue = new RequestQueue[Data](Configure.getInstance().xlog_queue_size);
+    val queue = new RingQueue[Data](CoreRun.queueSize("xlog_queue_size", Configure.getInstance().xlog_queue_size));
 
     var currentDateUnit: Long = 0
     var index: XLogIndex = null
     var writer: XLogDataWriter = null
 
     ThreadScala.start("scouter.server.db.XLogWR") {
+        val batch = new ArrayList[Data]();
         while (DBCtr.running) {
-            val m = queue.get();
-            
+            batch.add(queue.get());
+            queue.drainTo(batch, Math.max(1, Configure.getInstance().xlog_writer_batch_size) - 1);
+
             ServerStat.put("xlog.db.queue",queue.size());
+            ServerStat.put("xlog.db.drop",queue.getDropCount());
             try {
-                if (currentDateUnit != DateUtil.getDateUnit(m.time)) {
-                    currentDateUnit = DateUtil.getDateUnit(m.time);
-                    close();
-                    open(DateUtil.yyyymmdd(m.time));
-                }
-                if (index == null) {
-                    OftenAction.act("XLoWR", 10) {
-                        queue.clear();
-                        currentDateUnit = 0;
-                    }
-                    Logger.println("S143", 10, "can't open ");
-                } else {
-                    val location = writer.write(m.data);
-                    index.setByTime(m.time, location);
-                    index.setByTxid(m.txid, location);
-                    index.setByGxid(m.gxid, location);
-                }
+                write(batch);
             } catch {
                 case t: Throwable => t.printStackTrace()
             }
+            batch.clear();
         }
         close()
     }
 
-    def add(time: Long, tid: Long, gid: Long, elapsed: Int, data: Array[Byte]) {
-        val ok = queue.put(new Data(time, tid, gid, elapsed, data));
+    /**
+      * the batch is split into runs of the same date, each run is written with one data file write
+      * and one append per index file.
+      */
+    private def write(batch: ArrayList[Data]) {
+        val size = batch.size();
+        var i = 0;
+        while (i < size) {
+            val dateUnit = DateUtil.getDateUnit(batch.get(i).time);
+            var j = i + 1;
+            while (j < size && DateUtil.getDateUnit(batch.get(j).time) == dateUnit) {
+                j += 1;
+            }
+            if (currentDateUnit != dateUnit) {
+                currentDateUnit = dateUnit;
+                close();
+                open(DateUtil.yyyymmdd(batch.get(i).time));
+            }
+            if (index == null) {
+                OftenAction.act("XLoWR", 10) {
+                    queue.clear();
+                    currentDateUnit = 0;
+                }
+                Logger.println("S143", 10, "can't open ");
+            } else {
+                writeRun(batch, i, j - i);
+            }
+            i = j;
+        }
+    }
+
+    private def writeRun(batch: ArrayList[Data], from: Int, count: Int) {
+        val stime = System.nanoTime();
+        val time = new Array[Long](count);
+        val txid = new Array[Long](count);
+        val gxid = new Array[Long](count);
+        val objHash = new Array[Int](count);
+        val elapsed = new Array[Int](count);
+        val error = new Array[Int](count);
+        val data = new Array[Array[Byte]](count);
+        for (k <- 0 to count - 1) {
+            val m = batch.get(from + k);
+            time(k) = m.time;
+            txid(k) = m.txid;
+            gxid(k) = m.gxid;
+            objHash(k) = m.objHash;
+            elapsed(k) = m.elapsed;
+            error(k) = m.error;
+            data(k) = m.data;
+        }
+        val location = writer.write(data, count);
+        index.setBatch(time, txid, gxid, objHash, elapsed, error, location, count);
+
+        ServerStat.put("xlog.db.batch", count);
+        ServerStat.put("xlog.db.flush.ms", (System.nanoTime() - stime) / 1000000.0f);
+    }
+
+    def add(m: XLogPack, data: Array[Byte]) {
+        val ok = queue.put(new Data(m, data));
         if (ok == false) {
             Logger.println("S144", 10, "queue exceeded!!");
         }
     }
 
-    class Data(_time: Long, _txid: Long, _gxid: Long, _elapsed: Int, _data: Array[Byte]) {
-        val time = _time;
-        val txid = _txid;
-        val gxid = _gxid;
-        val elapsed = _elapsed;
+    class Data(m: XLogPack, _data: Array[Byte]) {
+        val time = m.endTime;
+        val txid = m.txid;
+        val gxid = m.gxid;
+        val objHash = m.objHash;
+        val elapsed = m.elapsed;
+        val error = m.error;
         val data = _data;
     }
 
@@ -0,0 +1,72 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.db.counter;
+
+import scouter.util.DateUtil
+
+object CounterRollup {
+    val MINUTE = DateUtil.MILLIS_PER_MINUTE
+    val TEN_MINUTE = 10 * DateUtil.MILLIS_PER_MINUTE
+    val HOUR = DateUtil.MILLIS_PER_HOUR
+
+    /**
+      * the coarsest tier that still gives the requested resolution, 0 means raw samples
+      */
+    def tier(resolution: Long): Long = {
+        if (resolution >= HOUR) HOUR
+        else if (resolution >= TEN_MINUTE) TEN_MINUTE
+        else if (resolution >= MINUTE) MINUTE
+        else 0
+    }
+}
+
+/**
+  * min/max/sum/count of one counter over one tier bucket
+  */
+class CounterRollup(val time: Long) {
+    var count = 0
+    var min = Double.MaxValue
+    var max = -Double.MaxValue
+    var sum = 0.0
+
+    def add(v: Double) {
+        count += 1
+        sum += v
+        if (v < min) min = v
+        if (v > max) max = v
+    }
+
+    def merge(o: CounterRollup) {
+        merge(o.count, o.min, o.max, o.sum)
+    }
+
+    def merge(count: Int, min: Double, max: Double, sum: Double) {
+        if (count == 0)
+            return
+        this.count += count
+        this.sum += sum
+        if (min < this.min) this.min = min
+        if (max > this.max) this.max = max
+    }
+
+    def avg(): Double = if (count == 0) 0 else sum / count
+
+    override def toString(): String = "CounterRollup [time=" + time + ", count=" + count + ", min=" + min + ", max=" + max + ", sum=" + sum + "]"
+}
@@ -0,0 +1,185 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.db.counter;
+
+import scouter.lang.value.DecimalValue
+import scouter.lang.value.DoubleValue
+import scouter.lang.value.FloatValue
+import scouter.lang.value.Value
+import scouter.lang.value.ValueEnum
+
+object CounterSeriesChunk {
+
+    def toValue(valueType: Byte, v: Double): Value = {
+        valueType match {
+            case ValueEnum.DECIMAL => new DecimalValue(v.toLong)
+            case ValueEnum.FLOAT => new FloatValue(v.toFloat)
+            case _ => new DoubleValue(v)
+        }
+    }
+
+    /**
+      * decodes count samples of a chunk body
+      */
+    def read(start: Long, count: Int, body: Array[Byte], handler: (Long, Double) => Any) {
+        if (count <= 0)
+            return
+        val in = new BitReader(body)
+        var time = start
+        var delta = 0L
+        var bits = in.read(64)
+        handler(time, java.lang.Double.longBitsToDouble(bits))
+        var leading = 0
+        var trailing = 0
+        for (i <- 1 to count - 1) {
+            val dod = if (in.read(1) == 0) 0L
+            else if (in.read(1) == 0) in.readSigned(7)
+            else if (in.read(1) == 0) in.readSigned(9)
+            else if (in.read(1) == 0) in.readSigned(12)
+            else in.readSigned(32)
+            delta += dod
+            time += delta
+
+            if (in.read(1) == 1) {
+                if (in.read(1) == 1) {
+                    leading = in.read(5).toInt
+                    val significant = in.read(6).toInt + 1
+                    trailing = 64 - leading - significant
+                }
+                bits ^= in.read(64 - leading - trailing) << trailing
+            }
+            handler(time, java.lang.Double.longBitsToDouble(bits))
+        }
+    }
+
+    class BitReader(buf: Array[Byte]) {
+        private var pos = 0L
+
+        def read(n: Int): Long = {
+            var v = 0L
+            for (i <- 0 to n - 1) {
+                val b = buf((pos >> 3).toInt)
+                v = (v << 1) | ((b >> (7 - (pos & 7).toInt)) & 1)
+                pos += 1
+            }
+            v
+        }
+
+        def readSigned(n: Int): Long = {
+            val v = read(n)
+            (v << (64 - n)) >> (64 - n)
+        }
+    }
+}
+
+/**
+  * one counter of one object over a fixed time window, Gorilla style:
+  * the timestamps are delta-of-delta coded and every value is xor-ed with the previous one,
+  * so a counter sampled every 2 seconds with a steady value costs about 2 bits a sample.
+  */
+class CounterSeriesChunk(val objHash: Int, val tag: Int, val window: Long, val valueType: Byte) {
+    var start = 0L
+    var count = 0
+    val minutes = new Array[CounterRollup](10)
+
+    private var buf = new Array[Byte](64)
+    private var bitPos = 0L
+
+    private var lastTime = 0L
+    private var lastDelta = 0L
+    private var lastBits = 0L
+    private var leading = 64
+    private var trailing = 0
+
+    def add(time: Long, value: Double) {
+        val bits = java.lang.Double.doubleToRawLongBits(value)
+        if (count == 0) {
+            start = time
+            write(bits, 64)
+        } else {
+            val delta = time - lastTime
+            val dod = delta - lastDelta
+            if (dod == 0) {
+                write(0, 1)
+            } else if (dod >= -64 && dod <= 63) {
+                write(2, 2); write(dod, 7)
+            } else if (dod >= -256 && dod <= 255) {
+                write(6, 3); write(dod, 9)
+            } else if (dod >= -2048 && dod <= 2047) {
+                write(14, 4); write(dod, 12)
+            } else {
+                write(15, 4); write(dod, 32)
+            }
+            lastDelta = delta
+
+            val xor = bits ^ lastBits
+            if (xor == 0) {
+                write(0, 1)
+            } else {
+                val lz = math.min(java.lang.Long.numberOfLeadingZeros(xor), 31)
+                val tz = java.lang.Long.numberOfTrailingZeros(xor)
+                if (lz >= leading && tz >= trailing) {
+                    write(2, 2)
+                    write(xor >>> trailing, 64 - leading - trailing)
+                } else {
+                    leading = lz
+                    trailing = tz
+                    val significant = 64 - lz - tz
+                    write(3, 2)
+                    write(lz, 5)
+                    write(significant - 1, 6)
+                    write(xor >>> tz, significant)
+                }
+            }
+        }
+        lastTime = time
+        lastBits = bits
+        count += 1
+
+        val slot = math.max(0, math.min(9, (time / CounterRollup.MINUTE - window * 10).toInt))
+        if (minutes(slot) == null)
+            minutes(slot) = new CounterRollup((window * 10 + slot) * CounterRollup.MINUTE)
+        minutes(slot).add(value)
+    }
+
+    private def write(v: Long, n: Int) {
+        val need = ((bitPos + n + 7) >> 3).toInt
+        if (need > buf.length) {
+            val b = new Array[Byte](math.max(need, buf.length * 2))
+            System.arraycopy(buf, 0, b, 0, buf.length)
+            buf = b
+        }
+        var i = n - 1
+        while (i >= 0) {
+            if (((v >>> i) & 1) != 0) {
+                val p = (bitPos >> 3).toInt
+                buf(p) = (buf(p) | (0x80 >>> (bitPos & 7).toInt)).toByte
+            }
+            bitPos += 1
+            i -= 1
+        }
+    }
+
+    def toBytes(): Array[Byte] = {
+        val out = new Array[Byte](((bitPos + 7) >> 3).toInt)
+        System.arraycopy(buf, 0, out, 0, out.length)
+        out
+    }
+}
@@ -18,6 +18,7 @@
 
 package scouter.server.db.counter
 import java.util.Hashtable
+import scouter.server.Configure
 import scouter.server.db.io.IndexKeyFile
 import scouter.io.DataInputX
 import scouter.io.DataOutputX
@@ -45,18 +46,18 @@ object DailyCounterIndex {
 class DailyCounterIndex(_fileName: String) extends IClose {
     var refrence = 0
     val fileName = _fileName
-    var index: IndexKeyFile = new IndexKeyFile(fileName)
+    var index: IndexKeyFile = new IndexKeyFile(fileName, mmap = Configure.getInstance().db_counter_index_mmap_enabled)
 
     def set(key: Array[Byte], dataOffset: Long) {
         if (this.index == null) {
-            this.index = new IndexKeyFile(fileName)
+            this.index = new IndexKeyFile(fileName, mmap = Configure.getInstance().db_counter_index_mmap_enabled)
         }
         this.index.put(key, DataOutputX.toBytes5(dataOffset));
     }
 
     def get(key: Array[Byte]): Long = {
         if (this.index == null) {
-            this.index = new IndexKeyFile(fileName);
+            this.index = new IndexKeyFile(fileName, mmap = Configure.getInstance().db_counter_index_mmap_enabled);
         }
         val dataOffsetBuff = this.index.get(key);
         if (dataOffsetBuff == null) -1 else DataInputX.toLong5(dataOffsetBuff, 0)
@@ -64,14 +65,14 @@ class DailyCounterIndex(_fileName: String) extends IClose {
 
     def read(handler: (Array[Byte], Array[Byte]) => Unit, reader: (Long)=>Array[Byte]) {
         if (this.index == null) {
-            this.index = new IndexKeyFile(fileName);
+            this.index = new IndexKeyFile(fileName, mmap = Configure.getInstance().db_counter_index_mmap_enabled);
         }
         this.index.read(handler, reader);
     }
 
     def read(handler: (Array[Byte], Array[Byte]) => Any) {
         if (this.index == null) {
-            this.index = new IndexKeyFile(fileName);
+            this.index = new IndexKeyFile(fileName, mmap = Configure.getInstance().db_counter_index_mmap_enabled);
         }
         this.index.read(handler);
     }
@@ -23,10 +23,14 @@ import java.util
 import java.util.Enumeration
 import java.util.Iterator
 import java.util.Map
+import scouter.lang.counters.CounterConstants
 import scouter.lang.value.MapValue
+import scouter.lang.value.NumberValue
 import scouter.lang.value.Value
+import scouter.lang.value.ValueEnum
 import scouter.io.DataInputX
 import scouter.io.DataOutputX
+import scouter.server.Configure
 import scouter.server.db.DBCtr
 import scouter.util.FileUtil
 import scouter.util.IClose
@@ -84,23 +88,164 @@ object RealtimeCounterDBHelper {
         return arrBuffer
     }
 
+    /**
+      * receives the projected values of readTagBytesMulti without boxing
+      */
+    trait BulkHandler {
+        def handle(objHash: Int, time: Long, counter: Int, valueType: Byte, value: Double)
+    }
+
+    /**
+      * decodes only the requested tags of the bulk records. objHashTag and timeTag locate the
+      * record key, tags(i) is reported as counter i and every other value is skipped in place.
+      * returns the number of records read.
+      */
+    def readTagBytesMulti(buff: Array[Byte], objHashTag: Int, timeTag: Int, tags: Array[Int], handler: BulkHandler): Int = {
+        if (buff == null)
+            return 0
+        val in = new TagCursor(buff)
+        val values = new Array[Double](tags.length)
+        val types = new Array[Byte](tags.length)
+        var records = 0
+        try {
+            while (in.pos + 4 <= buff.length) {
+                val end = in.pos + 4 + DataInputX.toInt(buff, in.pos)
+                in.pos += 4
+                var objHash = 0
+                var time = 0L
+                java.util.Arrays.fill(types, ValueEnum.NULL)
+                val count = in.decimal().toInt
+                for (i <- 0 to count - 1) {
+                    val idx = in.decimal().toInt
+                    if (idx == objHashTag) {
+                        objHash = in.number().toInt
+                    } else if (idx == timeTag) {
+                        time = in.number().toLong
+                    } else {
+                        var k = 0
+                        while (k < tags.length && tags(k) != idx) {
+                            k += 1
+                        }
+                        if (k < tags.length) {
+                            values(k) = in.number()
+                            types(k) = in.valueType
+                        } else {
+                            in.skip()
+                        }
+                    }
+                }
+                for (k <- 0 to tags.length - 1) {
+                    if (types(k) != ValueEnum.NULL)
+                        handler.handle(objHash, time, k, types(k), values(k))
+                }
+                records += 1
+                in.pos = end
+            }
+        } catch {
+            case e: Exception =>
+        }
+        return records
+    }
+
+    /**
+      * walks the values of a tag record in place, only what is not a plain number goes through readValue
+      */
+    private class TagCursor(buf: Array[Byte]) {
+        var pos = 0
+        var valueType: Byte = ValueEnum.NULL
+
+        def decimal(): Long = {
+            val len = buf(pos)
+            pos += 1
+            len match {
+                case 0 => 0L
+                case 1 => pos += 1; buf(pos - 1)
+                case 2 => pos += 2; DataInputX.toShort(buf, pos - 2)
+                case 3 => pos += 3; DataInputX.toInt3(buf, pos - 3)
+                case 4 => pos += 4; DataInputX.toInt(buf, pos - 4)
+                case 5 => pos += 5; DataInputX.toLong5(buf, pos - 5)
+                case _ => pos += 8; DataInputX.toLong(buf, pos - 8)
+            }
+        }
+
+        /**
+          * NaN and valueType NULL when the value is not a number
+          */
+        def number(): Double = {
+            valueType = buf(pos)
+            valueType match {
+                case ValueEnum.DECIMAL => pos += 1; decimal().toDouble
+                case ValueEnum.FLOAT => pos += 5; DataInputX.toFloat(buf, pos - 4).toDouble
+                case ValueEnum.DOUBLE => pos += 9; DataInputX.toDouble(buf, pos - 8)
+                case _ =>
+                    val in = new DataInputX(buf, pos)
+                    val v = in.readValue()
+                    pos += in.getOffset()
+                    if (v.isInstanceOf[NumberValue]) {
+                        valueType = v.getValueType()
+                        v.asInstanceOf[NumberValue].doubleValue()
+                    } else {
+                        valueType = ValueEnum.NULL
+                        Double.NaN
+                    }
+            }
+        }
+
+        def skip() {
+            val t = buf(pos)
+            t match {
+                case ValueEnum.NULL => pos += 1
+                case ValueEnum.BOOLEAN => pos += 2
+                case ValueEnum.DECIMAL => pos += 1; decimal()
+                case ValueEnum.FLOAT => pos += 5
+                case ValueEnum.DOUBLE => pos += 9
+                case ValueEnum.TEXT_HASH => pos += 5
+                case ValueEnum.TEXT =>
+                    val len = buf(pos + 1) & 0xff
+                    len match {
+                        case 255 => pos += 4 + (DataInputX.toShort(buf, pos + 2) & 0xffff)
+                        case 254 => pos += 6 + DataInputX.toInt(buf, pos + 2)
+                        case _ => pos += 2 + len
+                    }
+                case _ => number()
+            }
+        }
+    }
 
     def getTagBytes(tagMap: StringIntMap, items: MapValue): Array[Byte] = {
+        return getTagBytes(tagMap, items, false)
+    }
+
+    /**
+      * objHash and time locate a record, they stay in it even when the series keep the numbers
+      */
+    def isKey(name: String): Boolean = {
+        return CounterConstants.COMMON_OBJHASH == name || CounterConstants.COMMON_TIME == name
+    }
+
+    /**
+      * withoutNumbers leaves out the number counters, except the record key, for a day whose
+      * numbers are kept in the series
+      */
+    def getTagBytes(tagMap: StringIntMap, items: MapValue, withoutNumbers: Boolean): Array[Byte] = {
         if (tagMap.size() == 0)
             return null;
 
         val out = new DataOutputX();
         try {
-            out.writeDecimal(items.size());
-
+            var count = 0
+            val body = new DataOutputX();
             EnumerScala.foreach(items.keys(), (name: String) => {
                 val value = items.get(name);
                 val idx = tagMap.get(name);
-                if (idx >= 0) {
-                    out.writeDecimal(idx);
-                    out.writeValue(value);
+                if (idx >= 0 && (withoutNumbers == false || value.isInstanceOf[NumberValue] == false || isKey(name))) {
+                    body.writeDecimal(idx);
+                    body.writeValue(value);
+                    count += 1
                 }
             })
+            out.writeDecimal(count);
+            out.write(body.toByteArray());
 
         } catch {
             case e: Exception =>
@@ -112,6 +257,8 @@ class RealtimeCounterDBHelper extends IClose {
     var counterDbHeader: RealtimeCounterDBHeader = null
     var counterIndex: RealtimeCounterIndex = null
     var counterData: RealtimeCounterData = null
+    var counterSeries: RealtimeCounterSeries = null
+    var readOnly = false
     var currentDateUnit = 0L
     var activeTime = 0L
 
@@ -139,6 +286,13 @@ class RealtimeCounterDBHelper extends IClose {
         this.counterDbHeader = RealtimeCounterDBHeader.open(file);
         this.counterIndex = RealtimeCounterIndex.open(file);
         this.counterData = RealtimeCounterData.open(file);
+        this.readOnly = readOnly
+        if (readOnly) {
+            if (new File(file + "_series.data").exists())
+                this.counterSeries = RealtimeCounterSeries.open(file);
+        } else if (Configure.getInstance().counter_series_enabled) {
+            this.counterSeries = RealtimeCounterSeries.open(file);
+        }
         this.activeTime = System.currentTimeMillis();
 
         return this;
@@ -148,11 +302,16 @@ class RealtimeCounterDBHelper extends IClose {
     }
 
     override def close() {
+        if (counterSeries != null && readOnly == false) {
+            counterSeries.flushAll();
+        }
         FileUtil.close(counterIndex);
         FileUtil.close(counterData);
         FileUtil.close(counterDbHeader);
+        FileUtil.close(counterSeries);
         counterIndex = null;
         counterData = null;
+        counterSeries = null;
     }
 
     def close(dbs: Map[String, RealtimeCounterDBHelper]) {
@@ -24,6 +24,7 @@ import scouter.lang.value.MapValue
 import scouter.util.FileUtil
 import scouter.util.IClose
 import scouter.util.IntKeyMap
+import scouter.util.IntSet
 
 object RealtimeCounterIndex {
     val table = new Hashtable[String, RealtimeCounterIndex]();
@@ -71,6 +72,13 @@ class RealtimeCounterIndex(_file: String) extends IClose {
         this.index.readFromEnd(objHash, stime, etime, handler, dataMap, reader);
     }
 
+    def readObjHash(stime: Long, etime: Long): IntSet = {
+        if (this.index == null) {
+            this.index = new RealtimeCounterKeyFile(file);
+        }
+        this.index.readObjHash(stime, etime);
+    }
+
     def getStartEndDataPos(stime: Long, etime: Long): (Array[Byte], Array[Byte]) = {
         if (this.index == null) {
             this.index = new RealtimeCounterKeyFile(file);
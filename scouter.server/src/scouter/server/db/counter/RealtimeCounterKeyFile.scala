@@ -21,10 +21,12 @@ package scouter.server.db.counter;
 import scouter.io.DataInputX
 import scouter.io.DataOutputX
 import scouter.lang.value.MapValue
+import scouter.server.Configure
 import scouter.server.db.io.IndexTimeFile
 import scouter.util.IntKeyMap
+import scouter.util.IntSet
 
-class RealtimeCounterKeyFile(path: String) extends IndexTimeFile(path) {
+class RealtimeCounterKeyFile(path: String) extends IndexTimeFile(path, Configure.getInstance().db_counter_index_mmap_enabled) {
 
     def write(objHash: Int, time: Long, pos: Long) {
         val dout = new DataOutputX();
@@ -50,6 +52,23 @@ class RealtimeCounterKeyFile(path: String) extends IndexTimeFile(path) {
         }
     }
 
+    /**
+      * the objects that have a record in [stime, etime]
+      */
+    def readObjHash(stime: Long, etime: Long): IntSet = {
+        val objs = new IntSet()
+        try {
+            super.read(stime, etime, (time: Long, data: Array[Byte]) => {
+                if (stime <= time && time <= etime) {
+                    objs.add(DataInputX.toInt(data, 5))
+                }
+            });
+        } catch {
+            case t: Throwable =>
+        }
+        return objs
+    }
+
     def readFromEnd(objHash: Int, stime: Long, etime: Long, handler: (Long, MapValue) => Any,
         dataMap: IntKeyMap[String], reader: (Long) => Array[Byte]): Unit = {
         try {
@@ -0,0 +1,381 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.db.counter;
+
+import java.io.EOFException
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.util.ArrayList
+import java.util.Hashtable
+
+import scouter.io.DataInputX
+import scouter.io.DataOutputX
+import scouter.lang.value.Value
+import scouter.server.db.io.IndexKeyFile
+import scouter.util.DateUtil
+import scouter.util.FileUtil
+import scouter.util.IClose
+import scouter.util.LongKeyLinkedMap
+
+object RealtimeCounterSeries {
+    val table = new Hashtable[String, RealtimeCounterSeries]();
+
+    val CHUNK_MS = 10 * DateUtil.MILLIS_PER_MINUTE
+    val HEADER_SIZE = 25
+
+    def open(file: String): RealtimeCounterSeries = {
+        table.synchronized {
+            var series = table.get(file);
+            if (series != null) {
+                series.refrence += 1;
+            } else {
+                series = new RealtimeCounterSeries(file);
+                table.put(file, series);
+            }
+            return series;
+        }
+    }
+
+    def key(objHash: Int, tag: Int): Long = (objHash.toLong << 32) | (tag & 0xffffffffL)
+}
+
+/**
+  * per (object, counter) series next to the map records of the realtime counter db.
+  * chunks are cut every CHUNK_MS and appended to real_series.data, their positions are chained
+  * in real_series.hfile/kfile by (objHash, tag), so one counter is read without touching the others.
+  * the first 8 bytes of the data file keep the start of the first chunk window of the day,
+  * reads from before it fall back to the map records.
+  * chunk = objHash(int) tag(int) start(long) count(int) valueType(byte) length(int) body
+  *
+  * when a chunk is sealed its 1 minute rollups go to real_rollup.data, chained the same way.
+  * 10 minute and 1 hour tiers are merged from them at read time.
+  * the rollup file starts with the time it covers from.
+  * rollup = objHash(int) tag(int) n(byte) n * [time(long) count(int) min(double) max(double) sum(double)]
+  *
+  * open chunks live only in memory. real_series.closed is there while no writer holds them; when it is
+  * missing at open, the chunks of the previous run were lost and the windows from the last write to now
+  * are kept in real_series.gap, reads touching them fall back to the map records.
+  *
+  * real_series.slim holds the time from which the map records leave out the number counters kept
+  * here, readers of the map records merge them back from the series after it.
+  * reads take the chunk positions under the lock and read the files outside it.
+  */
+class RealtimeCounterSeries(file: String) extends IClose {
+    var refrence = 0;
+    private val dataFile = new RandomAccessFile(file + "_series.data", "rw");
+    private val index = new IndexKeyFile(file + "_series", 1);
+    private val rollupFile = new RandomAccessFile(file + "_rollup.data", "rw");
+    private val rollupIndex = new IndexKeyFile(file + "_rollup", 1);
+    private val open = new LongKeyLinkedMap[CounterSeriesChunk]();
+    private var since = if (dataFile.length() >= 8) dataFile.readLong() else 0L
+    // rollups of a day whose series started before they existed begin later
+    private var rollupSince = if (rollupFile.length() >= 8) rollupFile.readLong() else 0L
+    private val closedMarker = new File(file + "_series.closed");
+    private val gapFile = new File(file + "_series.gap");
+    private val gaps = loadGaps();
+    private val slimMarker = new File(file + "_series.slim");
+    @volatile private var slimSince = if (slimMarker.length() >= 8) DataInputX.toLong(FileUtil.readAll(slimMarker), 0) else 0L
+
+    if (since != 0 && closedMarker.exists() == false) {
+        val lastWrite = new File(file + "_series.data").lastModified() / RealtimeCounterSeries.CHUNK_MS - 1
+        addGap(math.max(lastWrite, since / RealtimeCounterSeries.CHUNK_MS), System.currentTimeMillis() / RealtimeCounterSeries.CHUNK_MS)
+    }
+    closedMarker.delete()
+
+    private def loadGaps(): ArrayList[Array[Long]] = {
+        val list = new ArrayList[Array[Long]]()
+        if (gapFile.exists()) {
+            val in = new DataInputX(FileUtil.readAll(gapFile))
+            for (i <- 0 to (gapFile.length() / 16).toInt - 1) {
+                list.add(Array(in.readLong(), in.readLong()))
+            }
+        }
+        return list
+    }
+
+    private def addGap(from: Long, to: Long) {
+        gaps.add(Array(from, to))
+        val out = new DataOutputX()
+        for (i <- 0 to gaps.size() - 1) {
+            out.writeLong(gaps.get(i)(0))
+            out.writeLong(gaps.get(i)(1))
+        }
+        FileUtil.save(gapFile, out.toByteArray())
+    }
+
+    private def inGap(stime: Long, etime: Long): Boolean = {
+        val swin = stime / RealtimeCounterSeries.CHUNK_MS
+        val ewin = etime / RealtimeCounterSeries.CHUNK_MS
+        for (i <- 0 to gaps.size() - 1) {
+            val g = gaps.get(i)
+            if (g(0) <= ewin && g(1) >= swin)
+                return true
+        }
+        return false
+    }
+
+    def getSince(): Long = since
+
+    def getSlimSince(): Long = slimSince
+
+    /**
+      * called by the writer before its first map record that leaves out the number counters
+      */
+    def markSlim(time: Long) {
+        if (slimSince != 0)
+            return
+        this.synchronized {
+            if (slimSince == 0) {
+                FileUtil.save(slimMarker, DataOutputX.toBytes(time))
+                slimSince = time
+            }
+        }
+    }
+
+    def add(objHash: Int, tag: Int, time: Long, value: Value) {
+        if (value.isInstanceOf[scouter.lang.value.NumberValue] == false)
+            return
+        val v = value.asInstanceOf[scouter.lang.value.NumberValue].doubleValue()
+        val window = time / RealtimeCounterSeries.CHUNK_MS
+        val key = RealtimeCounterSeries.key(objHash, tag)
+        this.synchronized {
+            if (since == 0) {
+                since = window * RealtimeCounterSeries.CHUNK_MS
+                dataFile.seek(0)
+                dataFile.writeLong(since)
+            }
+            if (rollupSince == 0) {
+                rollupSince = window * RealtimeCounterSeries.CHUNK_MS
+                rollupFile.seek(0)
+                rollupFile.writeLong(rollupSince)
+            }
+            var chunk = open.get(key)
+            if (chunk != null && chunk.window != window) {
+                open.remove(key)
+                write(chunk)
+                chunk = null
+            }
+            if (chunk == null) {
+                chunk = new CounterSeriesChunk(objHash, tag, window, value.getValueType())
+                open.put(key, chunk)
+            }
+            chunk.add(time, v)
+        }
+    }
+
+    /**
+      * writes the chunks of objects that stopped reporting
+      */
+    def flushBefore(now: Long) {
+        val window = now / RealtimeCounterSeries.CHUNK_MS - 1
+        this.synchronized {
+            val keys = open.keyArray()
+            for (k <- keys) {
+                val chunk = open.get(k)
+                if (chunk != null && chunk.window < window) {
+                    open.remove(k)
+                    write(chunk)
+                }
+            }
+        }
+    }
+
+    def flushAll() {
+        this.synchronized {
+            while (open.size() > 0) {
+                write(open.removeFirst())
+            }
+        }
+    }
+
+    private def write(c: CounterSeriesChunk) {
+        if (c.count == 0)
+            return
+        val body = c.toBytes()
+        val out = new DataOutputX(RealtimeCounterSeries.HEADER_SIZE + body.length)
+        out.writeInt(c.objHash)
+        out.writeInt(c.tag)
+        out.writeLong(c.start)
+        out.writeInt(c.count)
+        out.writeByte(c.valueType)
+        out.writeInt(body.length)
+        out.write(body)
+        val pos = math.max(dataFile.length(), 8L)
+        dataFile.seek(pos)
+        dataFile.write(out.toByteArray())
+        index.put(DataOutputX.toBytes(RealtimeCounterSeries.key(c.objHash, c.tag)), DataOutputX.toBytes5(pos))
+        writeRollup(c)
+    }
+
+    private def writeRollup(c: CounterSeriesChunk) {
+        val n = c.minutes.count(_ != null)
+        val out = new DataOutputX(9 + n * 36)
+        out.writeInt(c.objHash)
+        out.writeInt(c.tag)
+        out.writeByte(n)
+        for (m <- c.minutes if m != null) {
+            out.writeLong(m.time)
+            out.writeInt(m.count)
+            out.writeDouble(m.min)
+            out.writeDouble(m.max)
+            out.writeDouble(m.sum)
+        }
+        val pos = math.max(rollupFile.length(), 8L)
+        rollupFile.seek(pos)
+        rollupFile.write(out.toByteArray())
+        rollupIndex.put(DataOutputX.toBytes(RealtimeCounterSeries.key(c.objHash, c.tag)), DataOutputX.toBytes5(pos))
+    }
+
+    /**
+      * merges the 1 minute rollups of [stime, etime] into buckets of tier ms, in time order.
+      * returns false when the series do not cover stime.
+      */
+    def readRollup(objHash: Int, tag: Int, stime: Long, etime: Long, tier: Long, handler: (CounterRollup) => Any): Boolean = {
+        if (rollupSince == 0 || stime < rollupSince || inGap(stime, etime))
+            return false
+        val from = stime / CounterRollup.MINUTE * CounterRollup.MINUTE
+        val buckets = new java.util.TreeMap[java.lang.Long, CounterRollup]()
+        val merge = (time: Long, count: Int, min: Double, max: Double, sum: Double) => {
+            if (time >= from && time <= etime) {
+                val t = time / tier * tier
+                var r = buckets.get(t)
+                if (r == null) {
+                    r = new CounterRollup(t)
+                    buckets.put(t, r)
+                }
+                r.merge(count, min, max, sum)
+            }
+        }
+        val key = RealtimeCounterSeries.key(objHash, tag)
+        val current = new ArrayList[CounterRollup]()
+        val pos = this.synchronized {
+            val c = open.get(key)
+            if (c != null) {
+                for (m <- c.minutes if m != null) {
+                    val r = new CounterRollup(m.time)
+                    r.merge(m.count, m.min, m.max, m.sum)
+                    current.add(r)
+                }
+            }
+            rollupIndex.getAll(DataOutputX.toBytes(key))
+        }
+        for (i <- 0 to pos.size() - 1) {
+            val at = DataInputX.toLong5(pos.get(i), 0) + 8
+            val n = readAt(rollupFile, at, 1)(0)
+            val buf = readAt(rollupFile, at + 1, n * 36)
+            for (j <- 0 to n - 1) {
+                val off = j * 36
+                merge(DataInputX.toLong(buf, off), DataInputX.toInt(buf, off + 8), DataInputX.toDouble(buf, off + 12),
+                    DataInputX.toDouble(buf, off + 20), DataInputX.toDouble(buf, off + 28))
+            }
+        }
+        for (i <- 0 to current.size() - 1) {
+            val m = current.get(i)
+            merge(m.time, m.count, m.min, m.max, m.sum)
+        }
+        val it = buckets.values().iterator()
+        while (it.hasNext()) {
+            handler(it.next())
+        }
+        return true
+    }
+
+    /**
+      * returns false when the series do not cover stime, so the caller falls back to the map records
+      */
+    def read(objHash: Int, tag: Int, stime: Long, etime: Long, handler: (Long, Value) => Any): Boolean = {
+        if (since == 0 || stime < since || inGap(stime, etime))
+            return false
+        readValues(objHash, tag, stime, etime, (time: Long, valueType: Byte, v: Double) => {
+            handler(time, CounterSeriesChunk.toValue(valueType, v))
+        })
+        return true
+    }
+
+    /**
+      * every value kept for the counter in [stime, etime], in time order
+      */
+    def readValues(objHash: Int, tag: Int, stime: Long, etime: Long, handler: (Long, Byte, Double) => Any) {
+        val swin = stime / RealtimeCounterSeries.CHUNK_MS
+        val ewin = etime / RealtimeCounterSeries.CHUNK_MS
+        val key = RealtimeCounterSeries.key(objHash, tag)
+        val each = (valueType: Byte) => (time: Long, v: Double) => {
+            if (time >= stime && time <= etime) {
+                handler(time, valueType, v)
+            }
+        }
+        var current: CounterSeriesChunk = null
+        var currentCount = 0
+        var currentBody: Array[Byte] = null
+        val pos = this.synchronized {
+            val c = open.get(key)
+            if (c != null && c.window >= swin && c.window <= ewin) {
+                current = c
+                currentCount = c.count
+                currentBody = c.toBytes()
+            }
+            index.getAll(DataOutputX.toBytes(key))
+        }
+        // chained newest first
+        for (i <- pos.size() - 1 to 0 by -1) {
+            val at = DataInputX.toLong5(pos.get(i), 0)
+            val head = readAt(dataFile, at, RealtimeCounterSeries.HEADER_SIZE)
+            val start = DataInputX.toLong(head, 8)
+            val window = start / RealtimeCounterSeries.CHUNK_MS
+            if (window >= swin && window <= ewin) {
+                val body = readAt(dataFile, at + RealtimeCounterSeries.HEADER_SIZE, DataInputX.toInt(head, 21))
+                CounterSeriesChunk.read(start, DataInputX.toInt(head, 16), body, each(head(20)))
+            }
+        }
+        if (currentBody != null) {
+            CounterSeriesChunk.read(current.start, currentCount, currentBody, each(current.valueType))
+        }
+    }
+
+    /**
+      * positional read, it does not move the file pointer the writer seeks with
+      */
+    private def readAt(f: RandomAccessFile, pos: Long, len: Int): Array[Byte] = {
+        val buf = ByteBuffer.allocate(len)
+        val ch = f.getChannel()
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0)
+                throw new EOFException()
+        }
+        return buf.array()
+    }
+
+    override def close() {
+        RealtimeCounterSeries.table.synchronized {
+            if (this.refrence == 0) {
+                RealtimeCounterSeries.table.remove(this.file);
+                flushAll()
+                FileUtil.close(index);
+                FileUtil.close(dataFile);
+                FileUtil.close(rollupIndex);
+                FileUtil.close(rollupFile);
+                FileUtil.save(closedMarker, new Array[Byte](0));
+            } else {
+                this.refrence -= 1
+            }
+        }
+    }
+}
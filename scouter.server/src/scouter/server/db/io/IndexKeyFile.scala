@@ -26,17 +26,19 @@ import java.util.Map;
 
 import scouter.server.Logger;
 import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
 import scouter.util.CompareUtil;
 import scouter.util.HashUtil;
 import scouter.util.IClose;
+import scouter.util.IntLongLinkedMap;
 
-class IndexKeyFile(_path: String, hashSize: Int = 1) extends IClose {
+class IndexKeyFile(_path: String, hashSize: Int = 1, mmap: Boolean = false) extends IClose {
 
     val MB = 1024 * 1024;
 
     val path = _path
     val hashBlock = new MemHashBlock(path, hashSize * MB)
-    val keyFile = new RealKeyFile(path)
+    val keyFile = if (mmap) new MMapKeyFile(path) else new RealKeyFile(path)
 
     def putAll(table: IndexKeyFile): Int = {
         var count = 0
@@ -59,10 +61,43 @@ class IndexKeyFile(_path: String, hashSize: Int = 1) extends IClose {
         val keyHash = HashUtil.hash(indexKey);
         var prevKeyPos = hashBlock.get(keyHash);
         var newKeyPos = this.keyFile.append(prevKeyPos, indexKey, dataOffset);
-        this.hashBlock.put(keyHash, newKeyPos);
+        this.hashBlock.put(keyHash, newKeyPos, prevKeyPos);
         return true;
     }
 
+    /**
+      * appends the records with one key file write and links them into the hash block afterwards,
+      * so a reader never follows a hash slot to a record that is not on disk yet.
+      */
+    def putBatch(indexKeys: Array[Array[Byte]], dataOffsets: Array[Array[Byte]], count: Int) {
+        if (count <= 0)
+            return
+        val keyHashes = new Array[Int](count)
+        val keyPos = new Array[Long](count)
+        val prevPos = new Array[Long](count)
+        this.keyFile.appendBlock((base: Long) => {
+            val lastInBlock = new IntLongLinkedMap()
+            val out = new DataOutputX()
+            for (i <- 0 to count - 1) {
+                if (indexKeys(i) == null || dataOffsets(i) == null) {
+                    throw new IOException("invalid key/value");
+                }
+                val keyHash = HashUtil.hash(indexKeys(i));
+                val bucket = hashBlock.bucket(keyHash);
+                val prevKeyPos = if (lastInBlock.containsKey(bucket)) lastInBlock.get(bucket) else hashBlock.get(keyHash);
+                keyHashes(i) = keyHash;
+                prevPos(i) = prevKeyPos;
+                keyPos(i) = base + out.size();
+                RealKeyFile.writeRecord(out, prevKeyPos, indexKeys(i), dataOffsets(i));
+                lastInBlock.put(bucket, keyPos(i));
+            }
+            out.toByteArray()
+        })
+        for (i <- 0 to count - 1) {
+            this.hashBlock.put(keyHashes(i), keyPos(i), prevPos(i));
+        }
+    }
+
     def update(key: Array[Byte], value: Array[Byte]): Boolean = {
         if (key == null || value == null) {
             throw new IOException("invalid key/value");
@@ -137,6 +172,33 @@ class IndexKeyFile(_path: String, hashSize: Int = 1) extends IClose {
         return out;
     }
 
+    /**
+      * resolves many keys in one pass. Chain heads are visited in file order so the reads mostly
+      * move forward, and each record is read with a single seek. handler gets the key's index.
+      */
+    def getBatch(keys: Array[Array[Byte]], handler: (Int, Array[Byte]) => Any) {
+        val heads = new Array[Long](keys.length)
+        for (i <- 0 to keys.length - 1) {
+            if (keys(i) == null) {
+                throw new IOException("invalid key");
+            }
+            heads(i) = hashBlock.get(HashUtil.hash(keys(i)));
+        }
+        val order = (0 to keys.length - 1).filter(heads(_) > 0).sortBy(heads(_))
+        for (i <- order) {
+            var pos = heads(i)
+            while (pos > 0) {
+                val r = this.keyFile.getRecord(pos);
+                if (r.deleted == false && CompareUtil.equals(r.timeKey, keys(i))) {
+                    handler(i, r.dataPos);
+                    pos = 0
+                } else {
+                    pos = r.prevPos
+                }
+            }
+        }
+    }
+
     def delete(key: Array[Byte]): Int = {
         if (key == null) {
             throw new IOException("invalid key");
@@ -22,37 +22,95 @@ package scouter.server.db.io
 
 import java.io.IOException
 import java.util.ArrayList
+import java.util.Collections
 import java.util.TreeSet
 import scouter.io.DataInputX
 import scouter.io.DataOutputX
+import scouter.server.Configure
 import scouter.server.Logger
 import scouter.server.util.EnumerScala
 import scouter.util.BytesUtil
 import scouter.util.CompareUtil
 import scouter.util.DateUtil
 import scouter.util.IClose
+import scouter.util.IntLongLinkedMap
 
 /**
   * timestamp(long) based index file
   * @param _path Index File Path
+  * @param mmap read the key file through memory mapped segments
   */
-class IndexTimeFile(_path: String) extends IClose {
+class IndexTimeFile(_path: String, mmap: Boolean = false) extends IClose {
 
     protected var path = _path
     protected var timeBlockHash = new MemTimeBlock(_path);
-    protected var keyFile = new RealKeyFile(_path);
+    protected var keyFile = if (mmap) new MMapKeyFile(_path) else new RealKeyFile(_path);
+    protected var sparseBlock = openSparseBlock();
+
+    /**
+      * files written before the sparse index existed keep reading through the time hash
+      */
+    private def openSparseBlock(): SparseTimeBlock = {
+        val length = keyFile.getLength()
+        if (length <= keyFile.getFirstPos() && Configure.getInstance().db_time_index_sparse_enabled == false)
+            return null
+        val block = SparseTimeBlock.open(_path, length)
+        if (block == null)
+            return null
+        if (block.getCovered() > length)
+            block.reset()
+        keyFile.scan(Math.max(block.getCovered(), keyFile.getFirstPos()), Long.MaxValue, (pos: Long, r: ITEM) => {
+            block.add(DataInputX.toLong(r.timeKey, 0), pos, r.offset)
+        })
+        return block
+    }
 
     def put(time: Long, dataPos: Array[Byte]): Long = {
         if (time <= 0 || dataPos == null) {
             throw new IOException("invalid key/value");
         }
         var prevKeyPos = timeBlockHash.get(time);
-        var newKeyPos = this.keyFile.append(prevKeyPos, DataOutputX.toBytes(time), dataPos);
+        val timeKey = DataOutputX.toBytes(time)
+        var newKeyPos = this.keyFile.append(prevKeyPos, timeKey, dataPos);
         this.timeBlockHash.put(time, newKeyPos);
         this.timeBlockHash.addCount(1);
+        if (sparseBlock != null) {
+            sparseBlock.put(time, newKeyPos, newKeyPos + RealKeyFile.recordSize(timeKey, dataPos));
+        }
         return newKeyPos;
     }
 
+    /**
+      * appends the records with one key file write and links them into the time block afterwards
+      */
+    def putBatch(times: Array[Long], dataPos: Array[Array[Byte]], count: Int) {
+        if (count <= 0)
+            return
+        val keyPos = new Array[Long](count)
+        this.keyFile.appendBlock((base: Long) => {
+            val lastInBlock = new IntLongLinkedMap()
+            val out = new DataOutputX()
+            for (i <- 0 to count - 1) {
+                if (times(i) <= 0 || dataPos(i) == null) {
+                    throw new IOException("invalid key/value");
+                }
+                val bucket = timeBlockHash.bucket(times(i));
+                val prevKeyPos = if (lastInBlock.containsKey(bucket)) lastInBlock.get(bucket) else timeBlockHash.get(times(i));
+                keyPos(i) = base + out.size();
+                RealKeyFile.writeRecord(out, prevKeyPos, DataOutputX.toBytes(times(i)), dataPos(i));
+                lastInBlock.put(bucket, keyPos(i));
+            }
+            out.toByteArray()
+        })
+        for (i <- 0 to count - 1) {
+            this.timeBlockHash.put(times(i), keyPos(i));
+            if (sparseBlock != null) {
+                sparseBlock.put(times(i), keyPos(i), keyPos(i) + RealKeyFile.recordSize(DataOutputX.toBytes(times(i)), dataPos(i)));
+            }
+        }
+        this.timeBlockHash.addCount(count);
+    }
+
     private def getSecAll(time: Long): ArrayList[TimeToData] = {
         if (time <= 0) {
             throw new IOException("invalid key");
@@ -69,6 +127,65 @@ class IndexTimeFile(_path: String) extends IClose {
         return new ArrayList[TimeToData](set);
     }
 
+    /**
+      * reads the range window by window, scanning the key file between the offsets of the sparse index
+      */
+    private def scanRange(stime: Long, _etime: Long, forward: Boolean, handler: (TimeToData) => Boolean) {
+        val etime = Math.min(_etime, stime + DateUtil.MILLIS_PER_DAY - 1)
+        if (forward) {
+            var from = stime
+            while (from <= etime) {
+                val to = Math.min(etime, from + IndexTimeFile.SCAN_WINDOW - 1)
+                if (scanWindow(from, to, forward, handler) == false)
+                    return
+                from = to + 1
+            }
+        } else {
+            var to = etime
+            while (stime <= to) {
+                val from = Math.max(stime, to - IndexTimeFile.SCAN_WINDOW + 1)
+                if (scanWindow(from, to, forward, handler) == false)
+                    return
+                to = from - 1
+            }
+        }
+    }
+
+    /**
+      * returns false when the handler asked to stop
+      */
+    private def scanWindow(from: Long, to: Long, forward: Boolean, handler: (TimeToData) => Boolean): Boolean = {
+        val range = sparseBlock.range(from, to)
+        if (range == null)
+            return true
+        val data = new ArrayList[TimeToData]()
+        var sorted = true
+        var last = 0L
+        keyFile.scan(range(0), range(1), (pos: Long, r: ITEM) => {
+            if (r.deleted == false) {
+                val time = DataInputX.toLong(r.timeKey, 0)
+                if (time >= from && time <= to) {
+                    if (time < last) sorted = false
+                    last = time
+                    data.add(new TimeToData(time, r.dataPos))
+                }
+            }
+        })
+        if (sorted == false) {
+            Collections.sort(data)
+        }
+        return each(data, forward, handler)
+    }
+
+    private def each(data: ArrayList[TimeToData], forward: Boolean, handler: (TimeToData) => Boolean): Boolean = {
+        val size = data.size()
+        for (i <- 0 to size - 1) {
+            if (handler(data.get(if (forward) i else size - 1 - i)) == false)
+                return false
+        }
+        return true
+    }
+
     private def getDataPosFirst(_stime: Long, _etime: Long): Array[Byte] = {
         if (_stime <= 0 || _etime <= 0) {
             throw new IOException("invalid key")
@@ -163,6 +280,10 @@ class IndexTimeFile(_path: String) extends IClose {
     def read(_stime: Long, etime: Long, handler: (Long, Array[Byte]) => Any) {
         if (this.keyFile == null)
             return
+        if (sparseBlock != null) {
+            scanRange(_stime, etime, true, (tv: TimeToData) => { handler(tv.time, tv.dataPos); true })
+            return
+        }
 
         var i = 0
         var stime = _stime
@@ -179,6 +300,10 @@ class IndexTimeFile(_path: String) extends IClose {
     def readFromEnd(stime: Long, _etime: Long, handler: (Long, Array[Byte]) => Any) {
         if (this.keyFile == null)
             return
+        if (sparseBlock != null) {
+            scanRange(stime, _etime, false, (tv: TimeToData) => { handler(tv.time, tv.dataPos); true })
+            return
+        }
 
         var i = 0
         var etime = _etime
@@ -196,6 +321,10 @@ class IndexTimeFile(_path: String) extends IClose {
     def read(_stime: Long, etime: Long, handler: (Long, Array[Byte]) => Any, reader: (Long) => Array[Byte]) {
         if (this.keyFile == null)
             return
+        if (sparseBlock != null) {
+            scanRange(_stime, etime, true, (tv: TimeToData) => { handler(tv.time, reader(DataInputX.toLong5(tv.dataPos, 0))); true })
+            return
+        }
 
         var i = 0
         var stime = _stime
@@ -216,6 +345,10 @@ class IndexTimeFile(_path: String) extends IClose {
     def readFromEnd(stime: Long, _etime: Long, handler: (Long, Array[Byte]) => Any, reader: (Long) => Array[Byte]) {
         if (this.keyFile == null)
             return
+        if (sparseBlock != null) {
+            scanRange(stime, _etime, false, (tv: TimeToData) => { handler(tv.time, reader(DataInputX.toLong5(tv.dataPos, 0))); true })
+            return
+        }
 
         var i = 0
         var etime = _etime
@@ -233,6 +366,29 @@ class IndexTimeFile(_path: String) extends IClose {
         }
     }
 
+    /**
+      * passes the index values between stime and etime to the handler until it returns false
+      */
+    def readWhile(stime: Long, etime: Long, forward: Boolean, handler: (Long, Array[Byte]) => Boolean) {
+        if (this.keyFile == null)
+            return
+        val inRange = (tv: TimeToData) => {
+            if (tv.time >= stime && tv.time <= etime) handler(tv.time, tv.dataPos) else true
+        }
+        if (sparseBlock != null) {
+            scanRange(stime, etime, forward, inRange)
+            return
+        }
+        var i = 0
+        var time = if (forward) stime else etime
+        while (i < DateUtil.SECONDS_PER_DAY * 2 && stime <= time && time <= etime) {
+            if (each(getSecAll(time), forward, inRange) == false)
+                return
+            i += 1
+            time = if (forward) time + 500L else time - 500L
+        }
+    }
+
     def read(handler: (Array[Byte], Array[Byte]) => Any) {
         if (this.keyFile == null)
             return
@@ -258,6 +414,9 @@ class IndexTimeFile(_path: String) extends IClose {
 
     override def close() {
         timeBlockHash.close();
+        if (sparseBlock != null) {
+            sparseBlock.close();
+        }
         keyFile.close();
     }
 
@@ -289,3 +448,9 @@ class IndexTimeFile(_path: String) extends IClose {
     }
 
 }
+object IndexTimeFile {
+    /**
+      * time span sorted and handed out at once by the sparse range scan
+      */
+    val SCAN_WINDOW = 10000L
+}
@@ -0,0 +1,168 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.db.io;
+
+import java.io.EOFException
+import java.nio.{ByteBuffer, MappedByteBuffer}
+import java.nio.channels.FileChannel
+
+import scouter.io.DataInputX
+
+object MMapKeyFile {
+    val SEGMENT_BITS = 23
+    val SEGMENT_SIZE = 1 << SEGMENT_BITS
+    val SEGMENT_MASK = SEGMENT_SIZE - 1
+    val REMAP_CHECK_MS = 100
+}
+
+/**
+  * key file whose reads go through read-only mapped segments instead of seek+read.
+  * completed segments of the file are mapped, the unmapped tail is read with positional reads.
+  * both are lock free. writes are the same as RealKeyFile so the file format does not change
+  * and a mapped and a plain key file can be opened on the same file.
+  */
+class MMapKeyFile(_path: String) extends RealKeyFile(_path) {
+
+    private val channel = raf.getChannel()
+    private val mapLock = new Object()
+    @volatile private var segments = new Array[MappedByteBuffer](0)
+    @volatile private var lastMapCheck = 0L
+    remap()
+
+    private def remap(): Int = {
+        mapLock.synchronized {
+            lastMapCheck = System.currentTimeMillis()
+            val segs = segments
+            val full = (channel.size() >> MMapKeyFile.SEGMENT_BITS).toInt
+            if (full <= segs.length) {
+                return segs.length
+            }
+            val next = new Array[MappedByteBuffer](full)
+            System.arraycopy(segs, 0, next, 0, segs.length)
+            for (i <- segs.length to full - 1) {
+                next(i) = channel.map(FileChannel.MapMode.READ_ONLY, i.toLong << MMapKeyFile.SEGMENT_BITS, MMapKeyFile.SEGMENT_SIZE)
+            }
+            segments = next
+            return full
+        }
+    }
+
+    private def read(pos: Long, len: Int): Array[Byte] = {
+        val buf = new Array[Byte](len)
+        if (len == 0)
+            return buf
+        val end = pos + len
+        var mappedEnd = segments.length.toLong << MMapKeyFile.SEGMENT_BITS
+        if (end > mappedEnd && System.currentTimeMillis() >= lastMapCheck + MMapKeyFile.REMAP_CHECK_MS) {
+            mappedEnd = remap().toLong << MMapKeyFile.SEGMENT_BITS
+        }
+        if (end <= mappedEnd) {
+            readMapped(pos, buf)
+        } else {
+            readDirect(pos, buf)
+        }
+        return buf
+    }
+
+    private def readMapped(pos: Long, buf: Array[Byte]) {
+        val segs = segments
+        var i = 0
+        while (i < buf.length) {
+            val p = pos + i
+            val seg = segs((p >> MMapKeyFile.SEGMENT_BITS).toInt)
+            var off = (p & MMapKeyFile.SEGMENT_MASK).toInt
+            while (i < buf.length && off < MMapKeyFile.SEGMENT_SIZE) {
+                buf(i) = seg.get(off)
+                i += 1
+                off += 1
+            }
+        }
+    }
+
+    private def readDirect(pos: Long, buf: Array[Byte]) {
+        val bb = ByteBuffer.wrap(buf)
+        var p = pos
+        while (bb.hasRemaining()) {
+            val n = channel.read(bb, p)
+            if (n < 0)
+                throw new EOFException(path + " pos=" + pos)
+            p += n
+        }
+    }
+
+    private def readKeyLength(pos: Long): Int = {
+        val b = read(pos + 1 + 5, 2)
+        return ((b(0) & 0xff) << 8) | (b(1) & 0xff)
+    }
+
+    /**
+      * @return blob and the position right after it
+      */
+    private def readBlob(pos: Long): (Array[Byte], Long) = {
+        val baselen = read(pos, 1)(0) & 0xff
+        baselen match {
+            case 255 =>
+                val b = read(pos + 1, 2)
+                val len = ((b(0) & 0xff) << 8) | (b(1) & 0xff)
+                return (read(pos + 3, len), pos + 3 + len)
+            case 254 =>
+                val len = DataInputX.toInt(read(pos + 1, 4), 0)
+                return (read(pos + 5, len), pos + 5 + len)
+            case 0 =>
+                return (new Array[Byte](0), pos + 1)
+            case _ =>
+                return (read(pos + 1, baselen), pos + 1 + baselen)
+        }
+    }
+
+    override def getRecord(pos: Long): ITEM = {
+        val head = read(pos, 1 + 5 + 2)
+        val keyLen = ((head(6) & 0xff) << 8) | (head(7) & 0xff)
+        val r = new ITEM();
+        r.deleted = head(0) != 0;
+        r.prevPos = DataInputX.toLong5(head, 1);
+        r.timeKey = read(pos + 8, keyLen);
+        val blob = readBlob(pos + 8 + keyLen);
+        r.dataPos = blob._1;
+        r.offset = blob._2;
+        return r;
+    }
+
+    override def isDeleted(pos: Long): Boolean = {
+        return read(pos, 1)(0) != 0;
+    }
+
+    override def getPrevPos(pos: Long): Long = {
+        return DataInputX.toLong5(read(pos + 1, 5), 0);
+    }
+
+    override def getTimeKey(pos: Long): Array[Byte] = {
+        return read(pos + 8, readKeyLength(pos));
+    }
+
+    override def getDataPos(pos: Long): Array[Byte] = {
+        return readBlob(pos + 8 + readKeyLength(pos))._1;
+    }
+
+    override def close() {
+        segments = new Array[MappedByteBuffer](0)
+        super.close();
+    }
+}
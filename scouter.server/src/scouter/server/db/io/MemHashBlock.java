@@ -21,17 +21,40 @@ import scouter.io.DataInputX;
 import scouter.io.DataOutputX;
 import scouter.io.FlushCtr;
 import scouter.io.IFlushable;
+import scouter.server.Configure;
+import scouter.server.Logger;
 import scouter.util.FileUtil;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
 
+/**
+ * In-memory hash of key file chain heads, persisted to the .hfile.
+ * <p>
+ * Legacy files (format 0) keep one 5 byte position per bucket, so every key in a bucket
+ * shares one chain. Growable files (format 1) are open addressed: each slot holds the full
+ * key hash plus the position, chains only link keys with the same hash, a missing key stops
+ * at an empty slot without touching disk, and the table doubles when it gets 3/4 full, up to
+ * db_index_hash_max_mb. A table 3/4 full at that size is marked full and takes no new slots:
+ * a hash without a slot of its own then shares the chain of the next used slot, like the
+ * buckets of the legacy format, so its keys are still indexed.
+ */
 public class MemHashBlock implements IFlushable {
 	private final static int _countPos = 4;
+	private final static int _formatPos = 2;
+	private final static int _fullPos = 3;
 	private final static int _memHeadReserved = 1024;
 	private final static int _keyLength = 5;
-	
+
+	private final static byte FORMAT_BUCKET = 0;
+	private final static byte FORMAT_GROWABLE = 1;
+	private final static int _slotLength = 4 + _keyLength;
+	private final static int MAX_CAPACITY = 1 << 27;
+	private final static int PAGE_SIZE = 64 * 1024;
+
 	protected File file;
 	protected byte[] memBuffer;
 	protected int memBufferSize;
@@ -40,12 +63,38 @@ public class MemHashBlock implements IFlushable {
 	protected int count;
 	protected int capacity;
 
+	private byte format;
+	private int mask;
+	private int threshold;
+	private boolean full;
+	private BitSet dirtyPages = new BitSet();
+	private boolean rewrite;
+
 	public MemHashBlock(String path, int memSize) throws IOException {
 		open(path, memSize);
 	}
 
 	public synchronized void flush() {
-		FileUtil.save(this.file, this.memBuffer);
+		if (rewrite) {
+			FileUtil.save(this.file, this.memBuffer);
+			this.rewrite = false;
+		} else {
+			RandomAccessFile raf = null;
+			try {
+				raf = new RandomAccessFile(this.file, "rw");
+				for (int p = dirtyPages.nextSetBit(0); p >= 0; p = dirtyPages.nextSetBit(p + 1)) {
+					int off = p * PAGE_SIZE;
+					raf.seek(off);
+					raf.write(this.memBuffer, off, Math.min(PAGE_SIZE, this.memBuffer.length - off));
+				}
+			} catch (IOException e) {
+				Logger.println("S220", "hash block flush failed " + this.file + " " + e);
+				this.rewrite = true;
+			} finally {
+				FileUtil.close(raf);
+			}
+		}
+		this.dirtyPages.clear();
 		this.dirty = false;
 	}
 
@@ -67,26 +116,96 @@ public class MemHashBlock implements IFlushable {
 		boolean isNew = this.file.exists() == false || this.file.length() < _memHeadReserved;
 
 		if (isNew) {
+			this.format = Configure.getInstance().db_index_hash_growable_enabled ? FORMAT_GROWABLE : FORMAT_BUCKET;
+			if (format == FORMAT_GROWABLE) {
+				this.memBufferSize = Integer.highestOneBit(Math.max(memSize / _slotLength, 1024)) * _slotLength;
+			}
 			this.memBuffer = new byte[_memHeadReserved + memBufferSize];
 			this.memBuffer[0] = (byte) 0xCA;
 			this.memBuffer[1] = (byte) 0xFE;
+			this.memBuffer[_formatPos] = format;
+			this.rewrite = true;
 		} else {
 			this.memBufferSize = (int) (this.file.length() - _memHeadReserved);
 			this.memBuffer = FileUtil.readAll(this.file);
 			this.count = DataInputX.toInt(this.memBuffer, _countPos);
+			this.format = this.memBuffer[_formatPos];
+			this.full = format == FORMAT_GROWABLE && this.memBuffer[_fullPos] != 0;
+		}
+
+		if (format == FORMAT_GROWABLE) {
+			setCapacity(memBufferSize / _slotLength);
+		} else {
+			this.capacity = (int) (memBufferSize / _keyLength);
 		}
 
-		this.capacity = (int) (memBufferSize / _keyLength);
-		
 		FlushCtr.getInstance().regist(this);
 	}
 
+	private void setCapacity(int capacity) {
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.threshold = capacity / 4 * 3;
+	}
+
+	private static int maxCapacity() {
+		long slots = Configure.getInstance().db_index_hash_max_mb * 1024L * 1024L / _slotLength;
+		return (int) Math.min(MAX_CAPACITY, Math.max(1024, Long.highestOneBit(slots)));
+	}
+
 	private int _offset(int keyHash) {
 		int bucketPos = (keyHash & Integer.MAX_VALUE) % capacity;
 		return _keyLength * bucketPos + _memHeadReserved;
 	}
 
+	private static int spread(int keyHash) {
+		int h = keyHash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * offset of the slot holding keyHash, or of the empty slot where it belongs
+	 */
+	private int _slot(byte[] buf, int mask, int keyHash) {
+		int i = spread(keyHash) & mask;
+		while (true) {
+			int off = _memHeadReserved + i * _slotLength;
+			if (DataInputX.toLong5(buf, off + 4) == 0 || DataInputX.toInt(buf, off) == keyHash) {
+				return off;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * offset of the slot whose chain holds keyHash; before the table is full this may be the
+	 * empty slot where keyHash belongs
+	 */
+	private int _chainSlot(int keyHash) {
+		int off = _slot(this.memBuffer, mask, keyHash);
+		if (full == false)
+			return off;
+		int i = (off - _memHeadReserved) / _slotLength;
+		while (DataInputX.toLong5(this.memBuffer, off + 4) == 0) {
+			i = (i + 1) & mask;
+			off = _memHeadReserved + i * _slotLength;
+		}
+		return off;
+	}
+
+	/**
+	 * keys with the same bucket share one chain in the key file
+	 */
+	public synchronized int bucket(int keyHash) {
+		if (format == FORMAT_GROWABLE)
+			return full ? DataInputX.toInt(this.memBuffer, _chainSlot(keyHash)) : keyHash;
+		return (keyHash & Integer.MAX_VALUE) % capacity;
+	}
+
 	public synchronized long get(int keyHash) throws IOException {
+		if (format == FORMAT_GROWABLE) {
+			return DataInputX.toLong5(this.memBuffer, _chainSlot(keyHash) + 4);
+		}
 		int pos = _offset(keyHash);
 		return DataInputX.toLong5(this.memBuffer, pos);
 	}
@@ -94,27 +213,100 @@ public class MemHashBlock implements IFlushable {
 	public int getCount() {
 		return count;
 	}
+
+	public int getCapacity() {
+		return capacity;
+	}
 	
 	private int addCount(int n) throws IOException {
 		count += n;
 		DataOutputX.set(this.memBuffer, _countPos, DataOutputX.toBytes(count));
+		this.dirtyPages.set(0);
 		return count;
 	}
 
 	public synchronized void put(int keyHash, long value) throws IOException {
+		put(keyHash, value, -1);
+	}
 
-		byte[] buffer = DataOutputX.toBytes5(value);
-		int pos = _offset(keyHash);
+	/**
+	 * @param prev chain position the key record of value links to, -1 if unknown. A record linked
+	 *             while keyHash had no slot yet gets a slot of its own even if the table is full
+	 *             by now, as sharing a chain would drop the chain behind that slot.
+	 */
+	public synchronized void put(int keyHash, long value, long prev) throws IOException {
 
-		if ( DataInputX.toLong5(this.memBuffer, pos) == 0) {
-			addCount(1);
+		byte[] buffer = DataOutputX.toBytes5(value);
+		int pos;
+		if (format == FORMAT_GROWABLE) {
+			// an emptied slot would cut the probe sequence of the keys behind it
+			if (value == 0)
+				return;
+			pos = _slot(this.memBuffer, mask, keyHash);
+			if (DataInputX.toLong5(this.memBuffer, pos + 4) == 0) {
+				if (full == false && count >= threshold && capacity < maxCapacity()) {
+					grow();
+					pos = _slot(this.memBuffer, mask, keyHash);
+				} else if (full || count >= threshold) {
+					setFull();
+					int shared = _chainSlot(keyHash);
+					if (prev < 0 || DataInputX.toLong5(this.memBuffer, shared + 4) == prev) {
+						pos = shared;
+					} else if (count >= capacity - 1) {
+						throw new IOException("hash block is full " + this.file);
+					}
+				}
+			}
+			if (DataInputX.toLong5(this.memBuffer, pos + 4) == 0) {
+				addCount(1);
+				DataOutputX.toBytes(this.memBuffer, pos, keyHash);
+				// mark it now, so the next get already sees the shared chains
+				if (count >= threshold && capacity >= maxCapacity())
+					setFull();
+			}
+			pos += 4;
+		} else {
+			pos = _offset(keyHash);
+			if ( DataInputX.toLong5(this.memBuffer, pos) == 0) {
+				addCount(1);
+			}
 		}
 		
 		System.arraycopy(buffer, 0, this.memBuffer, pos, _keyLength);
+		// a growable slot starts with its key hash, 4 bytes before pos, which may sit on the previous page
+		int first = format == FORMAT_GROWABLE ? pos - 4 : pos;
+		this.dirtyPages.set(first / PAGE_SIZE, (pos + _keyLength - 1) / PAGE_SIZE + 1);
 		
 		this.dirty=true;
 	}
 
+	private void setFull() {
+		if (full)
+			return;
+		full = true;
+		this.memBuffer[_fullPos] = 1;
+		this.dirtyPages.set(0);
+	}
+
+	private void grow() {
+		int newCapacity = Math.min(capacity * 2, maxCapacity());
+		int newMask = newCapacity - 1;
+		byte[] newBuffer = new byte[_memHeadReserved + newCapacity * _slotLength];
+		System.arraycopy(this.memBuffer, 0, newBuffer, 0, _memHeadReserved);
+		for (int i = 0; i < capacity; i++) {
+			int off = _memHeadReserved + i * _slotLength;
+			if (DataInputX.toLong5(this.memBuffer, off + 4) == 0)
+				continue;
+			int to = _slot(newBuffer, newMask, DataInputX.toInt(this.memBuffer, off));
+			System.arraycopy(this.memBuffer, off, newBuffer, to, _slotLength);
+		}
+		this.memBuffer = newBuffer;
+		this.memBufferSize = newCapacity * _slotLength;
+		setCapacity(newCapacity);
+		this.rewrite = true;
+		this.dirty = true;
+	}
+
 	public void close() {
 		FlushCtr.getInstance().unregist(this);
 	}
@@ -88,6 +88,13 @@ public class MemTimeBlock implements IFlushable {
         this.dirty = false;
     }
 
+    /**
+     * times with the same bucket share one chain in the key file
+     */
+    public int bucket(long time) {
+        return (DateUtil.getDateMillis(time) / 500) % capacity;
+    }
+
     public synchronized long get(long time) throws IOException {
         int pos = _offset(time);
 //        for(int i=0; i<memBuffer.length; i++) {
@@ -19,6 +19,7 @@
 package scouter.server.db.io;
 
 import java.io.{File, RandomAccessFile}
+import java.util
 
 import scouter.io.{DataInputX, DataOutputX}
 import scouter.util.IClose;
@@ -31,6 +32,38 @@ class ITEM {
     var offset = 0L
 }
 
+object RealKeyFile {
+    def writeRecord(out: DataOutputX, prevPos: Long, indexKey: Array[Byte], dataPos: Array[Byte]) {
+        out.writeBoolean(false);
+        out.writeLong5(prevPos);
+        out.writeShortBytes(indexKey);
+        out.writeBlob(dataPos);
+    }
+
+    def recordSize(indexKey: Array[Byte], dataPos: Array[Byte]): Int = {
+        val len = if (dataPos == null) 0 else dataPos.length
+        val blobHead = if (len <= 253) 1 else if (len <= 65535) 3 else 5
+        return 1 + 5 + 2 + indexKey.length + blobHead + len
+    }
+
+    /**
+      * length of the record written at off, or -1 when buf holds only part of it
+      */
+    def recordLength(buf: Array[Byte], off: Int, end: Int): Int = {
+        if (off + 8 >= end)
+            return -1
+        val p = off + 8 + (DataInputX.toShort(buf, off + 6) & 0xffff)
+        if (p >= end)
+            return -1
+        val total = (buf(p) & 0xff) match {
+            case 255 => if (p + 3 > end) -1 else p + 3 + (DataInputX.toShort(buf, p + 1) & 0xffff) - off
+            case 254 => if (p + 5 > end) -1 else p + 5 + DataInputX.toInt(buf, p + 1) - off
+            case n => p + 1 + n - off
+        }
+        return if (total < 0 || off + total > end) -1 else total
+    }
+}
+
 class RealKeyFile(_path: String) extends IClose {
     val path = _path;
     val file = new File(path + ".kfile");
@@ -103,11 +136,7 @@ class RealKeyFile(_path: String) extends IClose {
             this.raf.seek(pos);
 
             val out = new DataOutputX();
-            out.writeBoolean(false);
-            out.writeLong5(prevPos);
-            out.writeShortBytes(indexKey);
-            out.writeBlob(dataPos);
-         
+            RealKeyFile.writeRecord(out, prevPos, indexKey, dataPos);
             this.raf.write(out.toByteArray())
         }
     }
@@ -136,6 +165,65 @@ class RealKeyFile(_path: String) extends IClose {
         }
     }
 
+    /**
+      * appends a block of records with one write.
+      * make receives the offset where the block starts so that records inside the block can link to each other.
+      */
+    def appendBlock(make: (Long) => Array[Byte]): Long = {
+        this.synchronized {
+            val pos = this.raf.length();
+            val block = make(pos);
+            if (block.length > 0) {
+                this.raf.seek(pos);
+                this.raf.write(block);
+            }
+            return pos;
+        }
+    }
+
+    /**
+      * reads the records starting between from and to(inclusive) in file order with large sequential reads
+      */
+    def scan(from: Long, to: Long, handler: (Long, ITEM) => Any) {
+        val length = getLength()
+        val buf = new Array[Byte](64 * 1024)
+        var pos = from
+        while (pos <= to && pos < length) {
+            val n = this.synchronized {
+                val n = Math.min(buf.length.toLong, length - pos).toInt
+                this.raf.seek(pos)
+                this.raf.readFully(buf, 0, n)
+                n
+            }
+            var off = 0
+            var len = RealKeyFile.recordLength(buf, off, n)
+            if (len < 0) {
+                val r = getRecord(pos)
+                handler(pos, r)
+                off = (r.offset - pos).toInt
+            }
+            while (len > 0 && pos + off <= to) {
+                val r = new ITEM()
+                r.deleted = buf(off) != 0
+                r.prevPos = DataInputX.toLong5(buf, off + 1)
+                val keyLen = DataInputX.toShort(buf, off + 6) & 0xffff
+                r.timeKey = util.Arrays.copyOfRange(buf, off + 8, off + 8 + keyLen)
+                val p = off + 8 + keyLen
+                val blobHead = (buf(p) & 0xff) match {
+                    case 255 => 3
+                    case 254 => 5
+                    case _ => 1
+                }
+                r.dataPos = util.Arrays.copyOfRange(buf, p + blobHead, off + len)
+                r.offset = pos + off + len
+                handler(pos + off, r)
+                off += len
+                len = RealKeyFile.recordLength(buf, off, n)
+            }
+            pos += off
+        }
+    }
+
     def close() {
         if (this.raf == null)
             return ;
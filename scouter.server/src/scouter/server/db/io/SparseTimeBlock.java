@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.server.db.io;
+
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+import scouter.io.FlushCtr;
+import scouter.io.IFlushable;
+import scouter.util.DateUtil;
+import scouter.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * first and last key file offset of the records in each second of the day.
+ * a time range is read by scanning the key file between those offsets.
+ */
+public class SparseTimeBlock implements IFlushable {
+    private final static int _coveredPos = 4;
+    protected final static int _memHeadReserved = 1024;
+    protected final static int _entryLength = 10;
+    protected final int capacity = 3600 * 24;
+
+    protected File file;
+    protected byte[] memBuffer;
+    protected String path;
+
+    /**
+     * key file length the entries were built up to
+     */
+    private long covered;
+    private boolean dirty;
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public long interval() {
+        return 4000;
+    }
+
+    /**
+     * returns null when the key file already has records that were never indexed here
+     */
+    public static SparseTimeBlock open(String path, long keyFileLength) throws IOException {
+        File file = new File(path + ".sfile");
+        if (file.exists() == false && keyFileLength > 2)
+            return null;
+        return new SparseTimeBlock(path, file);
+    }
+
+    private SparseTimeBlock(String path, File file) throws IOException {
+        this.path = path;
+        this.file = file;
+        if (this.file.exists() == false || this.file.length() != _memHeadReserved + capacity * _entryLength) {
+            this.memBuffer = new byte[_memHeadReserved + capacity * _entryLength];
+            this.memBuffer[0] = (byte) 0xCA;
+            this.memBuffer[1] = (byte) 0xFE;
+        } else {
+            this.memBuffer = FileUtil.readAll(this.file);
+            this.covered = DataInputX.toLong5(this.memBuffer, _coveredPos);
+        }
+        FlushCtr.getInstance().regist(this);
+    }
+
+    private int _offset(long time) {
+        int sec = (DateUtil.getDateMillis(time) / 1000) % capacity;
+        return _entryLength * sec + _memHeadReserved;
+    }
+
+    public synchronized void flush() {
+        FileUtil.save(this.file, this.memBuffer);
+        this.dirty = false;
+    }
+
+    public synchronized long getCovered() {
+        return covered;
+    }
+
+    /**
+     * drops every entry, used when the key file is shorter than what was indexed
+     */
+    public synchronized void reset() {
+        Arrays.fill(this.memBuffer, _coveredPos, this.memBuffer.length, (byte) 0);
+        this.covered = 0;
+    }
+
+    /**
+     * records a key written at keyPos, ending at keyEnd
+     */
+    public synchronized void put(long time, long keyPos, long keyEnd) {
+        add(time, keyPos, keyEnd);
+        this.dirty = true;
+    }
+
+    /**
+     * same as put but only in memory. used while catching up with the key file on open
+     */
+    public synchronized void add(long time, long keyPos, long keyEnd) {
+        int pos = _offset(time);
+        long first = DataInputX.toLong5(this.memBuffer, pos);
+        long last = DataInputX.toLong5(this.memBuffer, pos + 5);
+        if (first == 0 || keyPos < first) {
+            DataOutputX.toBytes5(this.memBuffer, pos, keyPos);
+        }
+        if (keyPos > last) {
+            DataOutputX.toBytes5(this.memBuffer, pos + 5, keyPos);
+        }
+        if (keyEnd > covered) {
+            covered = keyEnd;
+            DataOutputX.toBytes5(this.memBuffer, _coveredPos, covered);
+        }
+    }
+
+    /**
+     * lowest first and highest last offset of the seconds between stime and etime, null if all of them are empty
+     */
+    public synchronized long[] range(long stime, long etime) {
+        long lo = Long.MAX_VALUE;
+        long hi = 0;
+        long time = stime;
+        for (int i = 0; i < capacity && time <= etime; i++) {
+            int pos = _offset(time);
+            long first = DataInputX.toLong5(this.memBuffer, pos);
+            if (first > 0) {
+                lo = Math.min(lo, first);
+                hi = Math.max(hi, DataInputX.toLong5(this.memBuffer, pos + 5));
+            }
+            time = (time / 1000 + 1) * 1000;
+        }
+        if (hi == 0)
+            return null;
+        return new long[] { lo, hi };
+    }
+
+    public void close() {
+        FlushCtr.getInstance().unregist(this);
+    }
+}
@@ -34,6 +34,8 @@ public class Block {
 
 	public long lastAccessTime;
 
+	private int saved;
+
 	public Block(String date) {
 		this(date, GZipCtr.BLOCK_MAX_SIZE);
 	}
@@ -52,6 +54,7 @@ public class Block {
 		this.START = start;
 		this.END = end;
 		this.MAX = max;
+		this.saved = start;
 	}
 
 	private void ensureCapacity(int minCapacity) {
@@ -111,6 +114,21 @@ public class Block {
 		return out;
 	}
 
+	/**
+	 * bytes written since the last call, as a block of their own
+	 */
+	public synchronized Block takeUnsaved() {
+		this.dirty = false;
+		if (saved >= END)
+			return null;
+		byte[] out = new byte[END - saved];
+		System.arraycopy(this.buf, saved - START, out, 0, out.length);
+		Block b = new Block(this.date, out, saved, END, this.MAX);
+		b.blockNum = this.blockNum;
+		this.saved = END;
+		return b;
+	}
+
 	public Block createNextBlock() {
 		Block bk = new Block(date, MAX);
 		bk.blockNum = this.blockNum + 1;
@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.server.db.io.zip;
+
+import java.io.IOException;
+
+/**
+ * Compresses the frames of a framed xlog block file.
+ * The id is written in front of every frame so the reader can pick the codec back.
+ */
+public interface BlockCodec {
+
+	public byte getId();
+
+	public String getName();
+
+	public byte[] encode(byte[] b, int off, int len) throws IOException;
+
+	public byte[] decode(byte[] b, int off, int len, int orgLength) throws IOException;
+}
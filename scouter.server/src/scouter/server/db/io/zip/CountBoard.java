@@ -29,6 +29,10 @@ public class CountBoard implements IClose {
 	private RandomAccessFile raf = null;
 
 	public long counts;
+	/**
+	 * end of the frames handed to the writer pool, counts catches up once they are on disk
+	 */
+	private long reserved;
 	protected File file;
 
 	public CountBoard(String date) throws IOException {
@@ -52,8 +56,10 @@ public class CountBoard implements IClose {
 		return set(this.counts + cnt);
 	}
 
-	public long set(long cnt) {
+	public synchronized long set(long cnt) {
 		this.counts = cnt;
+		if (raf == null)
+			return this.counts;
 		try {
 			raf.seek(0);
 			raf.writeLong(counts);
@@ -72,7 +78,15 @@ public class CountBoard implements IClose {
 		return this.counts;
 	}
 
-	public void close() {
+	public synchronized void reserve(long cnt) {
+		this.reserved = Math.max(this.reserved, cnt);
+	}
+
+	public synchronized long getReserved() {
+		return Math.max(this.reserved, this.counts);
+	}
+
+	public synchronized void close() {
 		FileUtil.close(this.raf);
 		this.raf=null;
 	}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.server.db.io.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate frames. "deflate_fast" trades ratio for ingest speed, "deflate" is the gzip level.
+ */
+public class DeflateCodec implements BlockCodec {
+
+	public final static DeflateCodec FAST = new DeflateCodec((byte) 1, "deflate_fast", Deflater.BEST_SPEED);
+	public final static DeflateCodec DEFAULT = new DeflateCodec((byte) 2, "deflate", Deflater.DEFAULT_COMPRESSION);
+
+	/**
+	 * null means the legacy codec, one gzip stream per block file
+	 */
+	public static BlockCodec forName(String name) {
+		if (FAST.name.equalsIgnoreCase(name))
+			return FAST;
+		if (DEFAULT.name.equalsIgnoreCase(name))
+			return DEFAULT;
+		return null;
+	}
+
+	public static BlockCodec forId(byte id) {
+		switch (id) {
+		case 1:
+			return FAST;
+		case 2:
+			return DEFAULT;
+		}
+		return null;
+	}
+
+	private final byte id;
+	private final String name;
+	private final int level;
+
+	private DeflateCodec(byte id, String name, int level) {
+		this.id = id;
+		this.name = name;
+		this.level = level;
+	}
+
+	public byte getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public byte[] encode(byte[] b, int off, int len) throws IOException {
+		Deflater deflater = new Deflater(level);
+		try {
+			deflater.setInput(b, off, len);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(len / 4 + 64);
+			byte[] buf = new byte[8192];
+			while (deflater.finished() == false) {
+				int n = deflater.deflate(buf);
+				out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	public byte[] decode(byte[] b, int off, int len, int orgLength) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(b, off, len);
+			byte[] out = new byte[orgLength];
+			int n = 0;
+			while (n < orgLength && inflater.finished() == false) {
+				int r = inflater.inflate(out, n, orgLength - n);
+				if (r == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				n += r;
+			}
+			if (n != orgLength)
+				throw new IOException("broken frame " + n + "/" + orgLength);
+			return out;
+		} catch (DataFormatException e) {
+			throw new IOException(e.toString());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
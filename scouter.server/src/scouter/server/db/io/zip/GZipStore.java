@@ -73,7 +73,9 @@ public class GZipStore extends Thread implements IClose, IShutdown {
 				Block bk = writingBlockTable.get(key);
 				if (bk == null)
 					continue;
-				if (now > bk.lastAccessTime + 10000 && bk.dirty) {
+				// framed codecs append only what is new, so they need not wait for idle
+				boolean framed = IOChannel.getInstance().getCodec(bk.date) != null;
+				if (bk.dirty && (framed || now > bk.lastAccessTime + 10000)) {
 					IOChannel.getInstance().store(bk);
 					bk.lastAccessTime = System.currentTimeMillis();
 				}
@@ -87,6 +89,16 @@ public class GZipStore extends Thread implements IClose, IShutdown {
 	public synchronized long write(String date, byte[] data) throws IOException {
 		return write(date, data, 0);
 	}
+	/**
+	 * writes a batch of records under one lock and returns the position of each one
+	 */
+	public synchronized long[] write(String date, byte[][] data, int count) throws IOException {
+		long[] points = new long[count];
+		for (int i = 0; i < count; i++) {
+			points[i] = write(date, data[i], 0);
+		}
+		return points;
+	}
 	public synchronized long write(String date, byte[] data, long next) throws IOException {
 		DataOutputX dout = new DataOutputX();
 		dout.writeLong5(next);
@@ -183,7 +195,8 @@ public class GZipStore extends Thread implements IClose, IShutdown {
 	}
 	public void close(String date) {
 		Block bb = writingBlockTable.remove(date);
-		IOChannel.getInstance().store(bb);
+		if (bb != null)
+			IOChannel.getInstance().store(bb);
 		IOChannel.getInstance().close(date);
 	}
 	public static void main(String[] args) {
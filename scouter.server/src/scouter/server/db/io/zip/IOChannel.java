@@ -16,13 +16,18 @@
  */
 package scouter.server.db.io.zip;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Properties;
 import java.util.Enumeration;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import scouter.server.ConfObserver;
 import scouter.server.Configure;
 import scouter.server.Logger;
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
 import scouter.util.CacheTable;
 import scouter.util.CompressUtil;
 import scouter.util.FileUtil;
@@ -46,14 +51,41 @@ public class IOChannel implements IShutdown {
 	}
 	private Configure conf = Configure.getInstance();
 	private LinkedMap<String, CountBoard> headers = new LinkedMap<String, CountBoard>();
+	private LinkedMap<String, String> codecs = new LinkedMap<String, String>();
+	/**
+	 * the codec is chosen once per date and kept in codec.conf, a date already written
+	 * by an older version stays on gzip. null means gzip, one stream per block file.
+	 */
+	public synchronized BlockCodec getCodec(String date) {
+		String name = codecs.get(date);
+		if (name == null) {
+			File f = new File(GZipCtr.createPath(date) + "/codec.conf");
+			Properties p;
+			if (f.exists()) {
+				p = FileUtil.readProperties(f);
+			} else {
+				p = new Properties();
+				boolean legacy = new File(GZipCtr.getDataPath(date) + "/count.dat").exists();
+				p.put("compress_codec", legacy ? "gzip" : conf.compress_codec);
+				FileUtil.writeProperties(f, p);
+			}
+			name = p.getProperty("compress_codec", "gzip").trim();
+			while (codecs.size() >= 100) {
+				codecs.removeFirst();
+			}
+			codecs.put(date, name);
+		}
+		return DeflateCodec.forName(name);
+	}
 	public Block getLastWriteBlock(String date) throws IOException {
+		getCodec(date);
 		CountBoard uc = headers.get(date);
 		if (uc == null) {
 			check();
 			uc = new CountBoard(date);
 			headers.put(date, uc);
 		}
-		long n = uc.getCount();
+		long n = uc.getReserved();
 		int start = (int) (n % GZipCtr.BLOCK_MAX_SIZE);
 		Block bk = new Block(date, new byte[128], start, start, GZipCtr.BLOCK_MAX_SIZE);
 		bk.blockNum = (int) (n / GZipCtr.BLOCK_MAX_SIZE);
@@ -81,8 +113,18 @@ public class IOChannel implements IShutdown {
 		return uc;
 	}
 	public synchronized void store(Block bk) {
-		if (bk.dirty == false)
+		if (bk == null || bk.dirty == false)
+			return;
+		BlockCodec codec = getCodec(bk.date);
+		if (codec != null) {
+			Block frame = bk.takeUnsaved();
+			if (frame != null) {
+				CountBoard board = getCountBoard(bk.date);
+				board.reserve(frame.getOffset());
+				saveFrame(getFile(bk.date, bk.blockNum), codec, frame, board, ++frameSeq);
+			}
 			return;
+		}
 		bk.dirty = false;
 		int mgtime = 0;
 		StopWatch w = new StopWatch();
@@ -139,6 +181,94 @@ public class IOChannel implements IShutdown {
 			}
 		});
 	}
+	private final Object appendLock = new Object();
+	private long frameSeq;
+	private long appendedSeq;
+	private long appendVersion;
+	/**
+	 * only the bytes since the last store are compressed and appended as one frame:
+	 * codec(1) start(4) end(4) length(4) body. The pool compresses frames in parallel but
+	 * appends them in store order, and the count board only moves past a frame once it is
+	 * on disk, so the count never runs ahead of the file.
+	 */
+	protected void saveFrame(final File file, final BlockCodec codec, final Block frame, final CountBoard board, final long seq) {
+		Runnable task = new Runnable() {
+			public void run() {
+				byte[] record = null;
+				try {
+					byte[] org = frame.getBlockBytes();
+					byte[] body = codec.encode(org, 0, org.length);
+					DataOutputX dout = new DataOutputX(13 + body.length);
+					dout.writeByte(codec.getId());
+					dout.writeInt(frame.START);
+					dout.writeInt(frame.END);
+					dout.writeInt(body.length);
+					dout.write(body);
+					record = dout.toByteArray();
+				} catch (Exception e) {
+					Logger.println("S209", e.getMessage());
+				}
+				synchronized (appendLock) {
+					while (appendedSeq != seq - 1) {
+						try {
+							appendLock.wait(1000);
+						} catch (InterruptedException e) {
+						}
+					}
+					FileOutputStream out = null;
+					try {
+						if (record != null) {
+							out = new FileOutputStream(file, true);
+							out.write(record);
+							board.set(Math.max(board.getCount(), frame.getOffset()));
+						}
+					} catch (Exception e) {
+						Logger.println("S209", e.getMessage());
+					} finally {
+						FileUtil.close(out);
+						appendVersion++;
+						readCache.remove(new BKey(frame.date, frame.blockNum));
+						appendedSeq = seq;
+						appendLock.notifyAll();
+					}
+				}
+			}
+		};
+		try {
+			exec.execute(task);
+		} catch (RejectedExecutionException e) {
+			// the pool was swapped meanwhile, a lost frame would stall every later append
+			task.run();
+		}
+	}
+	private static byte[] readFrames(byte[] file) throws IOException {
+		int end = 0;
+		for (int off = 0; off + 13 <= file.length;) {
+			int len = DataInputX.toInt(file, off + 9);
+			if (off + 13 + len > file.length)
+				break;
+			end = Math.max(end, DataInputX.toInt(file, off + 5));
+			off += 13 + len;
+		}
+		byte[] block = new byte[end];
+		for (int off = 0; off + 13 <= file.length;) {
+			BlockCodec codec = DeflateCodec.forId(file[off]);
+			int start = DataInputX.toInt(file, off + 1);
+			int stop = DataInputX.toInt(file, off + 5);
+			int len = DataInputX.toInt(file, off + 9);
+			if (off + 13 + len > file.length)
+				break;
+			if (codec == null)
+				throw new IOException("unknown block codec " + file[off]);
+			byte[] org = codec.decode(file, off + 13, len, stop - start);
+			System.arraycopy(org, 0, block, start, org.length);
+			off += 13 + len;
+		}
+		return block;
+	}
+	private static boolean isGZip(byte[] b) {
+		return b.length >= 2 && b[0] == (byte) 0x1f && b[1] == (byte) 0x8b;
+	}
 	private File getFile(String date, int blockNum) {
 		String filename = (GZipCtr.createPath(date) + "/xlog." + blockNum);
 		return new File(filename);
@@ -151,12 +281,21 @@ public class IOChannel implements IShutdown {
 		File f = getFile(date, blockNum);
 		if (f.exists() == false)
 			return null;
+		long version;
+		synchronized (appendLock) {
+			version = appendVersion;
+		}
 		try {
 			byte[] gz = FileUtil.readAll(f);
-			gz = CompressUtil.unZip(gz);
+			gz = isGZip(gz) ? CompressUtil.unZip(gz) : readFrames(gz);
 			Block bk = new Block(date, gz, 0, gz.length, GZipCtr.BLOCK_MAX_SIZE);
 			bk.blockNum = blockNum;
-			readCache.put(new BKey(date, blockNum), bk, conf._compress_read_cache_expired_ms);
+			// a frame appended meanwhile may be missing from bk, so it is not cached
+			synchronized (appendLock) {
+				if (version == appendVersion) {
+					readCache.put(new BKey(date, blockNum), bk, conf._compress_read_cache_expired_ms);
+				}
+			}
 			return bk;
 		} catch (Throwable e) {
 			e.printStackTrace();
@@ -0,0 +1,155 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.server.db.text;
+
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+import scouter.util.FileUtil;
+
+import java.io.File;
+
+/**
+ * Bloom filter over the text hashes of one text type, saved next to its text table.
+ * A miss means the hash was never written; a hit has to be confirmed on disk.
+ */
+public class TextBloom {
+	private final static int MAGIC = 0xCAFE0B10;
+	private final static int K = 7;
+
+	private final File file;
+	private long[] bits;
+	private int count;
+	private boolean dirty;
+
+	public TextBloom(File file, int kbytes) {
+		this.file = file;
+		this.bits = new long[Math.max(kbytes, 1) * 1024 / 8];
+	}
+
+	public static TextBloom load(File file) {
+		byte[] buf = FileUtil.readAll(file);
+		if (buf == null || buf.length < 12 || DataInputX.toInt(buf, 0) != MAGIC)
+			return null;
+		int words = (buf.length - 12) / 8;
+		if (words == 0)
+			return null;
+		TextBloom b = new TextBloom(file, 1);
+		b.bits = new long[words];
+		b.count = DataInputX.toInt(buf, 4);
+		for (int i = 0; i < words; i++) {
+			b.bits[i] = DataInputX.toLong(buf, 12 + i * 8);
+		}
+		return b;
+	}
+
+	public synchronized void save() {
+		if (dirty == false)
+			return;
+		DataOutputX out = new DataOutputX();
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(count);
+			out.writeInt(K);
+			for (int i = 0; i < bits.length; i++) {
+				out.writeLong(bits[i]);
+			}
+		} catch (Exception e) {
+			return;
+		}
+		FileUtil.save(file, out.toByteArray());
+		dirty = false;
+	}
+
+	public synchronized boolean mightContain(int hash) {
+		long m = (long) bits.length * 64;
+		int h1 = mix(hash);
+		int h2 = mix(h1) | 1;
+		for (int i = 0; i < K; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % m;
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	public synchronized void put(int hash) {
+		long m = (long) bits.length * 64;
+		int h1 = mix(hash);
+		int h2 = mix(h1) | 1;
+		boolean added = false;
+		for (int i = 0; i < K; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % m;
+			int w = (int) (bit >>> 6);
+			if ((bits[w] & (1L << bit)) == 0) {
+				bits[w] |= 1L << bit;
+				added = true;
+			}
+		}
+		if (added) {
+			count++;
+			dirty = true;
+		}
+	}
+
+	/**
+	 * adds the keys of a filter of the same size, false if the sizes differ
+	 */
+	public synchronized boolean merge(TextBloom other) {
+		if (other.bits.length != bits.length)
+			return false;
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] |= other.bits[i];
+		}
+		count += other.count;
+		dirty = true;
+		return true;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getSizeKb() {
+		return bits.length * 8 / 1024;
+	}
+
+	/**
+	 * size of a saved filter, 0 if there is none
+	 */
+	public static int getSizeKb(File file) {
+		long len = file.length() - 12;
+		return len > 0 ? (int) (len / 1024) : 0;
+	}
+
+	/**
+	 * false positive rate expected from the number of keys put so far
+	 */
+	public double expectedFpp() {
+		double m = (double) bits.length * 64;
+		return Math.pow(1 - Math.exp(-K * count / m), K);
+	}
+
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -93,6 +93,18 @@ class TextPermData(div: String, file: String) extends IClose {
     }
   }
 
+  /**
+    * reads the records at the given offsets in file order under one lock
+    */
+  def readBatch(fpos: Array[Long], handler: (Int, Array[Byte]) => Any) {
+    val order = (0 to fpos.length - 1).sortBy(fpos(_))
+    this.synchronized {
+      for (i <- order) {
+        handler(i, read(fpos(i)));
+      }
+    }
+  }
+
   def write(data: Array[Byte]): Long = {
     this.synchronized {
       val location = dataFile.length();
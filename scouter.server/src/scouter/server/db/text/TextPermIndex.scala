@@ -19,6 +19,7 @@
 package scouter.server.db.text;
 
 import java.io.IOException
+import scouter.server.Configure
 import java.util.Hashtable
 import scouter.server.db.io.IndexKeyFile
 import scouter.io.DataInputX
@@ -66,27 +67,39 @@ class TextPermIndex(div: String, file: String) extends IClose {
 
   def set(key: Int, dataPos: Long) {
     if (this.index == null) {
-      this.index = new IndexKeyFile(file);
+      this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
     }
     this.index.put(DataOutputX.toBytes(key), DataOutputX.toBytes5(dataPos));
   }
 
   def get(key: Int): Long = {
     if (this.index == null) {
-      this.index = new IndexKeyFile(file);
+      this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
     }
     val buf = this.index.get(DataOutputX.toBytes(key));
     if (buf == null) -1 else DataInputX.toLong5(buf, 0)
   }
+  def getBatch(keys: Array[Int], handler: (Int, Long) => Any) {
+    if (this.index == null) {
+      this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
+    }
+    this.index.getBatch(keys.map(DataOutputX.toBytes(_)), (i: Int, buf: Array[Byte]) => handler(i, DataInputX.toLong5(buf, 0)));
+  }
   def hasKey(key: Int): Boolean = {
     if (this.index == null) {
-      this.index = new IndexKeyFile(file);
+      this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
     }
     return this.index.hasKey(DataOutputX.toBytes(key));
   }
+  def readKeys(handler: Int => Any) {
+    if (this.index == null) {
+      this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
+    }
+    this.index.read((key: Array[Byte], pos: Array[Byte]) => handler(DataInputX.toInt(key, 0)));
+  }
   def read(handler: (Array[Byte], Array[Byte]) => Any, reader: (Long) => Array[Byte]) {
     if (this.index == null) {
-      this.index = new IndexKeyFile(file);
+      this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
     }
     this.index.read(handler, reader);
   }
@@ -19,6 +19,7 @@
 package scouter.server.db.text;
 
 import java.util.Hashtable
+import scouter.server.Configure
 
 import scouter.io.DataOutputX
 import scouter.server.db.io.IndexKeyFile
@@ -58,28 +59,37 @@ class TextTable(_file: String) extends ICloseDB {
 
     def set(div: String, key: Int, value: Array[Byte]) {
         if (this.index == null) {
-            this.index = new IndexKeyFile(file);
+            this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
         }
         this.index.put(new DataOutputX().writeInt(HashUtil.hash(div)).writeInt(key).toByteArray(), value);
     }
 
     def get(div: String, key: Int): Array[Byte] = {
         if (this.index == null) {
-            this.index = new IndexKeyFile(file);
+            this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
         }
         return this.index.get(new DataOutputX().writeInt(HashUtil.hash(div)).writeInt(key).toByteArray());
     }
 
+    def getBatch(div: String, keys: Array[Int], handler: (Int, Array[Byte]) => Any) {
+        if (this.index == null) {
+            this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
+        }
+        val divHash = HashUtil.hash(div)
+        val indexKeys = keys.map(k => new DataOutputX().writeInt(divHash).writeInt(k).toByteArray())
+        this.index.getBatch(indexKeys, handler);
+    }
+
     def hasKey(div: String, key: Int): Boolean = {
         if (this.index == null) {
-            this.index = new IndexKeyFile(file);
+            this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
         }
         return this.index.hasKey(new DataOutputX().writeInt(HashUtil.hash(div)).writeInt(key).toByteArray());
     }
 
     def read(handler: (Array[Byte], Array[Byte]) => Any) {
         if (this.index == null) {
-            this.index = new IndexKeyFile(file);
+            this.index = new IndexKeyFile(file, mmap = Configure.getInstance().db_text_index_mmap_enabled);
         }
         this.index.read(handler);
     }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.Hashtable;
 import java.util.Properties;
 
+import scouter.io.DataOutputX;
 import scouter.server.Configure;
 import scouter.server.db.io.RealDataFile;
 import scouter.server.db.io.zip.GZipStore;
@@ -82,6 +83,29 @@ class XLogDataWriter(date: String, file: String) extends IClose {
         }
     }
 
+    /**
+      * writes a block of xlogs and returns the offset of each one.
+      * the plain data file gets them in one write and one flush.
+      */
+    def write(bytes: Array[Array[Byte]], count: Int): Array[Long] = {
+        val points = new Array[Long](count)
+        if (gzip) {
+            return GZipStore.getInstance().write(date, bytes, count);
+        }
+        this.synchronized {
+            val block = new DataOutputX();
+            val base = out.getOffset();
+            for (i <- 0 to count - 1) {
+                points(i) = base + block.size();
+                block.writeShort(bytes(i).length.toShort);
+                block.write(bytes(i));
+            }
+            out.write(block.toByteArray());
+            out.flush();
+            return points;
+        }
+    }
+
     override def close() {
         XLogDataWriter.table.synchronized {
             if (this.refrence == 0) {
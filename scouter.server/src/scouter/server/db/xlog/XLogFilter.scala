@@ -0,0 +1,80 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.db.xlog;
+
+import scouter.io.DataInputX
+import scouter.lang.pack.XLogPack
+import scouter.util.IPUtil
+import scouter.util.IntSet
+import scouter.util.StrMatch
+
+/**
+  * conditions of an xlog history query. objHash, elapsed and error are checked on the time index value,
+  * the xlog is decoded only for the records left and only when a pack level condition is set.
+  */
+class XLogFilter {
+    var objHashSet: IntSet = null
+    var minElapsed = 0
+    var errorOnly = false
+    var service = 0
+    var ipMatch: StrMatch = null
+    var login = 0
+
+    private def hasPackCondition(): Boolean = {
+        service != 0 || ipMatch != null || login != 0
+    }
+
+    /**
+      * false when the time index value alone rules the xlog out
+      */
+    def acceptIndex(value: Array[Byte]): Boolean = {
+        if (value == null || value.length < XLogIndex.TIME_VALUE_LENGTH)
+            return true
+        if (objHashSet != null && objHashSet.contains(DataInputX.toInt(value, 5)) == false)
+            return false
+        if (DataInputX.toInt(value, 9) < minElapsed)
+            return false
+        if (errorOnly && DataInputX.toInt(value, 13) == 0)
+            return false
+        return true
+    }
+
+    def accept(value: Array[Byte], data: Array[Byte]): Boolean = {
+        val indexed = value != null && value.length >= XLogIndex.TIME_VALUE_LENGTH
+        if (indexed && hasPackCondition() == false)
+            return true
+        val x = new DataInputX(data).readPack().asInstanceOf[XLogPack]
+        if (indexed == false) {
+            if (objHashSet != null && objHashSet.contains(x.objHash) == false)
+                return false
+            if (x.elapsed < minElapsed)
+                return false
+            if (errorOnly && x.error == 0)
+                return false
+        }
+        if (service != 0 && x.service != service)
+            return false
+        if (login != 0 && x.login != login)
+            return false
+        if (ipMatch != null && (x.ipaddr == null || ipMatch.include(IPUtil.toString(x.ipaddr)) == false))
+            return false
+        return true
+    }
+}
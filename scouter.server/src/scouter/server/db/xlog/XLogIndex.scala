@@ -19,6 +19,7 @@
 package scouter.server.db.xlog;
 
 import java.io.IOException
+import scouter.server.Configure
 import java.util.ArrayList
 import java.util.HashMap
 import java.util.Hashtable
@@ -39,6 +40,21 @@ object XLogIndex {
     val POSTFIX_GID = "_gid";
     val POSTFIX_TID = "_tid";
 
+    /**
+      * time index value: data position, then objHash, elapsed and error so that history queries
+      * can filter without reading the xlog. older files only have the 5 byte position.
+      */
+    val TIME_VALUE_LENGTH = 17
+
+    def timeValue(pos: Long, objHash: Int, elapsed: Int, error: Int): Array[Byte] = {
+        val b = new Array[Byte](TIME_VALUE_LENGTH)
+        DataOutputX.toBytes5(b, 0, pos)
+        DataOutputX.toBytes(b, 5, objHash)
+        DataOutputX.toBytes(b, 9, elapsed)
+        DataOutputX.toBytes(b, 13, error)
+        return b
+    }
+
     val table = new Hashtable[String, XLogIndex]();
 
     def open(file: String): XLogIndex = {
@@ -64,44 +80,87 @@ class XLogIndex(_file: String) extends IClose {
     var gxidIndex: IndexKeyFile = null
     var timeIndex: IndexTimeFile = null
 
-    def setByTxid(txid: Long, pos: Long) {
-        if (this.txidIndex == null) {
-            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID);
+    /**
+      * index files are opened on first use. readers and the writer share this instance,
+      * so the open is synchronized to keep one file object per index.
+      */
+    private def getTxidIndex(): IndexKeyFile = {
+        this.synchronized {
+            if (this.txidIndex == null) {
+                this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, mmap = Configure.getInstance().db_xlog_index_mmap_enabled);
+            }
+            return this.txidIndex
+        }
+    }
+
+    private def getGxidIndex(): IndexKeyFile = {
+        this.synchronized {
+            if (this.gxidIndex == null) {
+                this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID, mmap = Configure.getInstance().db_xlog_index_mmap_enabled);
+            }
+            return this.gxidIndex
+        }
+    }
+
+    def getTimeIndex(): IndexTimeFile = {
+        this.synchronized {
+            if (this.timeIndex == null) {
+                this.timeIndex = new IndexTimeFile(file + XLogIndex.POSTFIX_TIME, mmap = Configure.getInstance().db_xlog_index_mmap_enabled);
+            }
+            return this.timeIndex
         }
-        this.txidIndex.put(DataOutputX.toBytes(txid), DataOutputX.toBytes5(pos));
+    }
+
+    def setByTxid(txid: Long, pos: Long) {
+        getTxidIndex().put(DataOutputX.toBytes(txid), DataOutputX.toBytes5(pos));
     }
 
     def setByGxid(gxid: Long, pos: Long) {
         if (gxid == 0)
             return ;
-        if (this.gxidIndex == null) {
-            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID);
-        }
-        this.gxidIndex.put(DataOutputX.toBytes(gxid), DataOutputX.toBytes5(pos));
+        getGxidIndex().put(DataOutputX.toBytes(gxid), DataOutputX.toBytes5(pos));
     }
 
     def setByTime(time: Long, pos: Long) {
-        if (this.timeIndex == null) {
-            this.timeIndex = new IndexTimeFile(file + XLogIndex.POSTFIX_TIME);
+        getTimeIndex().put(time, DataOutputX.toBytes5(pos));
+    }
+
+    /**
+      * index updates for a block of xlogs written together. each index file gets one append.
+      */
+    def setBatch(time: Array[Long], txid: Array[Long], gxid: Array[Long], objHash: Array[Int], elapsed: Array[Int],
+                 error: Array[Int], pos: Array[Long], count: Int) {
+        val posBytes = new Array[Array[Byte]](count)
+        val timeValues = new Array[Array[Byte]](count)
+        val txKeys = new Array[Array[Byte]](count)
+        val gxKeys = new Array[Array[Byte]](count)
+        val gxPos = new Array[Array[Byte]](count)
+        var gxCount = 0
+        for (i <- 0 to count - 1) {
+            posBytes(i) = DataOutputX.toBytes5(pos(i))
+            timeValues(i) = XLogIndex.timeValue(pos(i), objHash(i), elapsed(i), error(i))
+            txKeys(i) = DataOutputX.toBytes(txid(i))
+            if (gxid(i) != 0) {
+                gxKeys(gxCount) = DataOutputX.toBytes(gxid(i))
+                gxPos(gxCount) = posBytes(i)
+                gxCount += 1
+            }
         }
-        this.timeIndex.put(time, DataOutputX.toBytes5(pos));
+        getTimeIndex().putBatch(time, timeValues, count);
+        getTxidIndex().putBatch(txKeys, posBytes, count);
+        getGxidIndex().putBatch(gxKeys, gxPos, gxCount);
     }
 
     def getByTxid(txid: Long): Long = {
-        if (this.txidIndex == null) {
-            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID);
-        }
-        val b = this.txidIndex.get(DataOutputX.toBytes(txid));
+        val b = getTxidIndex().get(DataOutputX.toBytes(txid));
         if (b == null) -1 else DataInputX.toLong5(b, 0);
     }
 
     def getByTxid(txSet: Set[Long]): Map[Long, Long] = {
-        if (this.txidIndex == null) {
-            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID);
-        }
+        val index = getTxidIndex();
         val map = new HashMap[Long, Long]();
         EnumerScala.foreach(txSet.iterator(), (key: Long) => {
-            val value = this.txidIndex.get(DataOutputX.toBytes(key));
+            val value = index.get(DataOutputX.toBytes(key));
             if (value != null) {
                 map.put(key, DataInputX.toLong5(value, 0));
             }
@@ -110,10 +169,7 @@ class XLogIndex(_file: String) extends IClose {
     }
 
     def getByGxid(gxid: Long): List[Long] = {
-        if (this.gxidIndex == null) {
-            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID);
-        }
-        val blist = this.gxidIndex.getAll(DataOutputX.toBytes(gxid));
+        val blist = getGxidIndex().getAll(DataOutputX.toBytes(gxid));
         val olist = new ArrayList[Long]();
         EnumerScala.foreach(blist.iterator(), (bb: Array[Byte]) => {
             olist.add(DataInputX.toLong5(bb, 0))
@@ -123,17 +179,11 @@ class XLogIndex(_file: String) extends IClose {
     }
 
     def readByTxid(handler: (Array[Byte], Array[Byte]) => Any, dr: (Long)=>Array[Byte]) {
-        if (this.txidIndex == null) {
-            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID);
-        }
-        this.txidIndex.read(handler, dr);
+        getTxidIndex().read(handler, dr);
     }
 
     def readByGxid(handler: (Array[Byte], Array[Byte]) => Any, dr: (Long)=>Array[Byte]) {
-        if (this.gxidIndex == null) {
-            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID);
-        }
-        this.gxidIndex.read(handler, dr);
+        getGxidIndex().read(handler, dr);
     }
 
     override def close() {
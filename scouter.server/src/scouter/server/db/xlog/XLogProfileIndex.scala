@@ -19,6 +19,7 @@
 package scouter.server.db.xlog;
 
 import java.io.IOException
+import scouter.server.Configure
 import java.util.ArrayList
 import java.util.Hashtable
 import java.util.List
@@ -76,8 +77,10 @@ class XLogProfileIndex(_file: String) extends IClose {
     }
 
     private def checkOpen() {
-        if (this.profileX == null) {
-            this.profileX = new IndexKeyFile(file + POSTFIX_PROFILE);
+        this.synchronized {
+            if (this.profileX == null) {
+                this.profileX = new IndexKeyFile(file + POSTFIX_PROFILE, mmap = Configure.getInstance().db_profile_index_mmap_enabled);
+            }
         }
     }
 
@@ -24,6 +24,7 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import scouter.server.Configure;
 import scouter.server.http.servlet.CounterServlet;
 import scouter.server.http.servlet.RegisterServlet;
+import scouter.server.http.servlet.ServiceStatServlet;
 import scouter.util.ThreadUtil;
 
 public class HttpServer extends Thread {
@@ -55,6 +56,7 @@ public class HttpServer extends Thread {
 	        server.setHandler(context);
 	        context.addServlet(new ServletHolder(CounterServlet.class), "/counter/*");
 	        context.addServlet(new ServletHolder(RegisterServlet.class), "/register/*");
+	        context.addServlet(new ServletHolder(ServiceStatServlet.class), "/service/*");
 	        try {
 		        server.start();
 		        server.join();
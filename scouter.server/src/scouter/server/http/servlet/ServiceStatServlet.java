@@ -0,0 +1,68 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+package scouter.server.http.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import scouter.server.netio.service.ServiceStat;
+
+/**
+ * per command latency(ms) and response size percentiles as json, "?reset=true" clears them afterwards
+ */
+public class ServiceStatServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		JSONArray list = new JSONArray();
+		String[] cmds = ServiceStat.commands();
+		for (int i = 0; i < cmds.length; i++) {
+			ServiceStat s = ServiceStat.get(cmds[i]);
+			JSONObject o = new JSONObject();
+			o.put("cmd", cmds[i]);
+			o.put("count", s.elapsed.getCount());
+			o.put("inflight", s.inflight.get());
+			o.put("avg", s.elapsed.getMean());
+			o.put("p50", s.elapsed.percentile(0.5));
+			o.put("p90", s.elapsed.percentile(0.9));
+			o.put("p99", s.elapsed.percentile(0.99));
+			o.put("max", s.elapsed.getMax());
+			o.put("bytes_p50", s.bytes.percentile(0.5));
+			o.put("bytes_p99", s.bytes.percentile(0.99));
+			o.put("bytes_max", s.bytes.getMax());
+			list.add(o);
+		}
+		if ("true".equals(req.getParameter("reset"))) {
+			ServiceStat.reset();
+		}
+		resp.setContentType("application/json");
+		resp.setCharacterEncoding("UTF-8");
+		resp.getWriter().write(list.toJSONString());
+	}
+
+}
@@ -74,6 +74,13 @@ public class RequestLogger extends Thread {
 		return false;
 	}
 
+	public void addSlow(String cmd, long session, long elapsed, int bytes, String param) {
+		LoginUser loginUser = LoginManager.getUser(session);
+		String user = loginUser == null ? "unknown" + session : loginUser.id();
+		String ip = loginUser == null ? "" : loginUser.ip();
+		queue.put(new RequestInfo(System.currentTimeMillis(), user, ip, cmd + " SLOW " + elapsed + "ms " + bytes + "bytes " + param));
+	}
+
 	boolean running = true;
 
 	public void run() {
@@ -16,7 +16,9 @@
  *
  */
 package scouter.server.netio.data
+import java.io.DataInputStream
 import java.net.InetAddress
+import java.nio.ByteBuffer
 
 import scouter.io.DataInputX
 import scouter.lang.{TextTypes, TimeTypeEnum}
@@ -45,8 +47,9 @@ import scouter.server.core.StatusCore
 import scouter.server.core.TextCore
 import scouter.server.core.BatchCore
 import scouter.server.core.cache.TextCache
+import scouter.server.netio.data.net.{ByteBufferInputStream, UdpBufferPool}
 import scouter.server.util.ThreadScala
-import scouter.util.{BytesUtil, HashUtil, RequestQueue, StringUtil}
+import scouter.util.{BytesUtil, HashUtil, RingQueue, StringUtil}
 import scouter.server.core.SummaryCore
 import scouter.lang.pack.SummaryPack
 import scouter.lang.pack.SummaryPack
@@ -55,6 +58,9 @@ object NetDataProcessor {
     class NetData(_data: Array[Byte], _addr: InetAddress) {
         val addr = _addr
         val data = _data
+        var buffer: ByteBuffer = null
+        var pool: UdpBufferPool = null
+        def length(): Int = if (buffer != null) buffer.limit() else BytesUtil.getLength(data)
     }
     var working = true
     val num = Configure.getInstance()._net_udp_worker_thread_count
@@ -70,17 +76,33 @@ object NetDataProcessor {
             }
         }
     }
-    val queue = new RequestQueue[NetData](2048)
+    val queue = new RingQueue[NetData](2048)
     val conf = Configure.getInstance()
-    def add(data: Array[Byte], addr: InetAddress) {
+    def add(data: Array[Byte], addr: InetAddress): Boolean = {
         val ok = queue.putNotifySingle(new NetData(data, addr))
         if (ok == false) {
             Logger.println("S158", 10, "overflow recv queue!!")
         }
+        return ok
+    }
+    /**
+      * the buffer is decoded in place and returned to the pool afterwards.
+      * it is also returned right away when the queue is full.
+      */
+    def add(buffer: ByteBuffer, pool: UdpBufferPool, addr: InetAddress): Boolean = {
+        val d = new NetData(null, addr)
+        d.buffer = buffer
+        d.pool = pool
+        val ok = queue.putNotifySingle(d)
+        if (ok == false) {
+            pool.release(buffer)
+            Logger.println("S158", 10, "overflow recv queue!!")
+        }
+        return ok
     }
     def process(p: NetData) {
         try {
-            val in = new DataInputX(p.data)
+            val in = if (p.buffer == null) new DataInputX(p.data) else new DataInputX(new DataInputStream(new ByteBufferInputStream(p.buffer)))
             val cafe = in.readInt()
             cafe match {
                 case NetCafe.UDP_CAFE => processCafe(in, p.addr)
@@ -90,12 +112,16 @@ object NetDataProcessor {
                 case NetCafe.UDP_JAVA_N => processCafeN(in, p.addr)
                 case NetCafe.UDP_JAVA_MTU => processCafeMTU(in, p.addr)
                 case _ =>
-                    System.out.println("Receive unknown data, length=" + BytesUtil.getLength(p.data) + " from " + p.addr)
+                    System.out.println("Receive unknown data, length=" + p.length() + " from " + p.addr)
             }
         } catch {
             case e: Throwable =>
                 Logger.println("S159", 10, "invalid data ", e)
                 e.printStackTrace()
+        } finally {
+            if (p.buffer != null) {
+                p.pool.release(p.buffer)
+            }
         }
     }
     private def processCafeMTU(in: DataInputX, addr: InetAddress) {
@@ -21,8 +21,14 @@ package scouter.server.netio.data.net;
 import java.net.DatagramPacket
 import java.net.DatagramSocket
 import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.SocketOption
+import java.net.StandardSocketOptions
+import java.nio.ByteBuffer
+import java.nio.channels.DatagramChannel
 import scouter.server.Configure
 import scouter.server.Logger
+import scouter.server.core.ServerStat
 import scouter.server.netio.data.NetDataProcessor
 import scouter.util.ThreadUtil
 import scouter.server.util.ThreadScala
@@ -30,17 +36,65 @@ import scouter.util.FileUtil
 
 object DataUdpServer {
 
+    class RecvStat(_id: Int) {
+        val id = _id
+        var packets = 0L
+        var drops = 0L
+        var copies = 0L
+        var lastPublish = 0L
+
+        def count(ok: Boolean) {
+            packets += 1
+            if (ok == false) {
+                drops += 1
+            }
+            val now = System.currentTimeMillis()
+            if (now >= lastPublish + 1000) {
+                lastPublish = now
+                ServerStat.put("udp.recv." + id + ".packets", packets)
+                ServerStat.put("udp.recv." + id + ".drops", drops)
+                ServerStat.put("udp.recv." + id + ".copies", copies)
+            }
+        }
+    }
+
     val conf = Configure.getInstance();
     var udpsocket: DatagramSocket = null;
-    ThreadScala.startDaemon("scouter.server.netio.data.net.DataUdpServer") {
-        while (true) {
-            open(conf.net_udp_listen_ip, conf.net_udp_listen_port);
-            recv();
-            FileUtil.close(udpsocket)
+
+    if (conf.net_udp_nio_enabled) {
+        val reusePort = getReusePortOption()
+        var count = Math.max(1, conf.net_udp_receiver_count)
+        if (count > 1 && reusePort == null) {
+            Logger.println("S219", "SO_REUSEPORT is not supported on this JVM, net_udp_receiver_count=" + count + " is ignored")
+            count = 1
+        }
+        for (i <- 0 to count - 1) {
+            ThreadScala.startDaemon("scouter.server.netio.data.net.DataUdpServer-" + i) {
+                val stat = new RecvStat(i)
+                val pool = new UdpBufferPool(conf.net_udp_buffer_pool_size, conf.net_udp_packet_buffer_size)
+                while (true) {
+                    val channel = openChannel(conf.net_udp_listen_ip, conf.net_udp_listen_port, if (count > 1) reusePort else null);
+                    recv(channel, pool, stat);
+                    try {
+                        channel.close()
+                    } catch {
+                        case e: Exception =>
+                    }
+                }
+            }
+        }
+    } else {
+        ThreadScala.startDaemon("scouter.server.netio.data.net.DataUdpServer") {
+            val stat = new RecvStat(0)
+            while (true) {
+                open(conf.net_udp_listen_ip, conf.net_udp_listen_port);
+                recv(stat);
+                FileUtil.close(udpsocket)
+            }
         }
     }
 
-    def recv() {
+    def recv(stat: RecvStat) {
         try {
             val BUFFER_SIZE = conf.net_udp_packet_buffer_size;
             val rbuf = new Array[Byte](BUFFER_SIZE)
@@ -51,7 +105,39 @@ object DataUdpServer {
                 udpsocket.receive(p);
                 val data = new Array[Byte](p.getLength());
                 System.arraycopy(p.getData(), 0, data, 0, p.getLength());
-                NetDataProcessor.add(data, p.getAddress());
+                stat.copies += 1
+                stat.count(NetDataProcessor.add(data, p.getAddress()));
+            }
+        } catch {
+            case t: Throwable =>
+                Logger.println("S151", 10, t);
+        }
+    }
+
+    /**
+      * receives straight into a pooled direct buffer that is decoded by NetDataProcessor.
+      * when every pooled buffer is still queued, the packet goes through a scratch buffer and is copied.
+      */
+    def recv(channel: DatagramChannel, pool: UdpBufferPool, stat: RecvStat) {
+        try {
+            val scratch = ByteBuffer.allocateDirect(conf.net_udp_packet_buffer_size)
+
+            // loop until any exception
+            while (true) {
+                val buf = pool.acquire()
+                if (buf != null) {
+                    val addr = channel.receive(buf).asInstanceOf[InetSocketAddress]
+                    buf.flip()
+                    stat.count(NetDataProcessor.add(buf, pool, addr.getAddress()))
+                } else {
+                    scratch.clear()
+                    val addr = channel.receive(scratch).asInstanceOf[InetSocketAddress]
+                    scratch.flip()
+                    val data = new Array[Byte](scratch.remaining())
+                    scratch.get(data)
+                    stat.copies += 1
+                    stat.count(NetDataProcessor.add(data, addr.getAddress()))
+                }
             }
         } catch {
             case t: Throwable =>
@@ -81,4 +167,59 @@ object DataUdpServer {
             ThreadUtil.sleep(3000);
         }
     }
+
+    def openChannel(host: String, port: Int, reusePort: SocketOption[java.lang.Boolean]): DatagramChannel = {
+        Logger.println("udp listen " + host + ":" + port + " (nio)");
+        Logger.println("\tudp_buffer=" + conf.net_udp_packet_buffer_size);
+        Logger.println("\tudp_buffer_pool=" + conf.net_udp_buffer_pool_size);
+        Logger.println("\tudp_so_rcvbuf=" + conf.net_udp_so_rcvbuf_size);
+        Logger.println("\tudp_so_reuseport=" + (reusePort != null));
+
+        while (true) {
+            var channel: DatagramChannel = null
+            try {
+                channel = DatagramChannel.open()
+                if (reusePort != null) {
+                    channel.setOption(reusePort, java.lang.Boolean.TRUE)
+                }
+                val buf = conf.net_udp_so_rcvbuf_size;
+                if (buf > 0) {
+                    channel.setOption(StandardSocketOptions.SO_RCVBUF, new java.lang.Integer(buf))
+                }
+                channel.bind(new InetSocketAddress(InetAddress.getByName(host), port))
+                return channel;
+            } catch {
+                case e: Exception =>
+                    Logger.println("S157", 1, "udp data server port=" + port, e);
+                    if (channel != null) {
+                        try {
+                            channel.close()
+                        } catch {
+                            case x: Exception =>
+                        }
+                    }
+            }
+            ThreadUtil.sleep(3000);
+        }
+        return null
+    }
+
+    /**
+      * StandardSocketOptions.SO_REUSEPORT only exists from java 9, so it is looked up by name
+      */
+    private def getReusePortOption(): SocketOption[java.lang.Boolean] = {
+        try {
+            val opt = classOf[StandardSocketOptions].getField("SO_REUSEPORT").get(null).asInstanceOf[SocketOption[java.lang.Boolean]]
+            val ch = DatagramChannel.open()
+            try {
+                if (ch.supportedOptions().contains(opt))
+                    return opt
+            } finally {
+                ch.close()
+            }
+        } catch {
+            case e: Throwable =>
+        }
+        return null
+    }
 }
@@ -0,0 +1,79 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.netio.data.net;
+
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.ArrayBlockingQueue
+
+/**
+  * fixed set of direct receive buffers owned by one udp socket.
+  * a buffer is borrowed by the receiver and given back by the NetDataProcessor
+  * worker after the packs in it are decoded.
+  */
+class UdpBufferPool(count: Int, bufferSize: Int) {
+    private val free = new ArrayBlockingQueue[ByteBuffer](Math.max(1, count))
+    for (i <- 0 to count - 1) {
+        free.offer(ByteBuffer.allocateDirect(bufferSize))
+    }
+
+    def acquire(): ByteBuffer = {
+        val buf = free.poll()
+        if (buf != null) {
+            buf.clear()
+        }
+        return buf
+    }
+
+    def release(buf: ByteBuffer) {
+        free.offer(buf)
+    }
+
+    def available(): Int = free.size()
+}
+
+/**
+  * reads the remaining bytes of a buffer without copying them into a heap array first
+  */
+class ByteBufferInputStream(buf: ByteBuffer) extends InputStream {
+    override def read(): Int = {
+        if (buf.hasRemaining() == false)
+            return -1
+        return buf.get() & 0xff
+    }
+
+    override def read(b: Array[Byte], off: Int, len: Int): Int = {
+        if (len == 0)
+            return 0
+        val n = Math.min(len, buf.remaining())
+        if (n == 0)
+            return -1
+        buf.get(b, off, n)
+        return n
+    }
+
+    override def skip(n: Long): Long = {
+        val k = Math.min(n, buf.remaining().toLong).toInt
+        buf.position(buf.position() + k)
+        return k
+    }
+
+    override def available(): Int = buf.remaining()
+}
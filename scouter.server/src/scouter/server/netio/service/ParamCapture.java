@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.server.netio.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * keeps a copy of the bytes a handler reads as its parameter, for the slow request log
+ */
+public class ParamCapture extends FilterInputStream {
+	private static final int MAX = 64 * 1024;
+	private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+	private boolean on;
+
+	public ParamCapture(InputStream in) {
+		super(in);
+	}
+
+	public void start() {
+		buf.reset();
+		on = true;
+	}
+
+	public byte[] stop() {
+		on = false;
+		return buf.toByteArray();
+	}
+
+	public int read() throws IOException {
+		int b = super.read();
+		if (on && b >= 0 && buf.size() < MAX)
+			buf.write(b);
+		return b;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (on && n > 0 && buf.size() < MAX)
+			buf.write(b, off, Math.min(n, MAX - buf.size()));
+		return n;
+	}
+
+	public long skip(long n) throws IOException {
+		byte[] b = new byte[(int) Math.min(n, 4096)];
+		int r = read(b, 0, b.length);
+		return r < 0 ? 0 : r;
+	}
+}
@@ -19,26 +19,53 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
 import scouter.io.DataInputX;
 import scouter.io.DataOutputX;
+import scouter.net.RequestCmd;
 import scouter.server.Configure;
 import scouter.server.Logger;
+import scouter.server.logs.RequestLogger;
 import scouter.server.netio.service.anotation.ServiceHandler;
 import scouter.util.scan.Scanner;
 public class ServiceHandlingProxy {
 	protected static HashMap<String, Invocation> handlers = new HashMap<String, Invocation>();
+	/**
+	 * long lived commands that are slow by design, kept out of the slow request log and the
+	 * latency histograms. They are served on multiplexed connections only.
+	 */
+	private static Set<String> streaming = new HashSet<String>();
+	static {
+		streaming.add(RequestCmd.TRANX_REAL_TIME_SUBSCRIBE);
+	}
+	/**
+	 * direct call of one handler method, generated at load time in place of Method.invoke
+	 */
+	public interface Invoker {
+		public void exec(Object object, DataInputX in, DataOutputX out, boolean login) throws Exception;
+	}
 	protected static class Invocation {
 		Object object;
 		Method method;
+		Invoker invoker;
 		public Invocation(Object object, Method method) {
 			this.object = object;
 			this.method = method;
+			this.invoker = generate(object.getClass(), method);
 		}
 		public void exec(DataInputX in, DataOutputX out, boolean login) {
 			try {
-				method.invoke(object, new Object[] { in, out, login });
+				if (invoker != null) {
+					invoker.exec(object, in, out, login);
+				} else {
+					method.invoke(object, new Object[] { in, out, login });
+				}
 			} catch (InvocationTargetException t) {
 				if (t.getCause() != null) {
 					t.getCause().printStackTrace();
@@ -55,6 +82,21 @@ public class ServiceHandlingProxy {
 			return object.getClass().getName() + "." + method.getName();
 		}
 	}
+	private static int invokerSeq;
+	private static synchronized Invoker generate(Class c, Method m) {
+		try {
+			ClassPool cp = new ClassPool(true);
+			cp.appendClassPath(new LoaderClassPath(c.getClassLoader()));
+			CtClass impl = cp.makeClass(c.getName() + "$$Invoker" + (invokerSeq++));
+			impl.addInterface(cp.get(Invoker.class.getName()));
+			impl.addMethod(CtNewMethod.make("public void exec(Object o, scouter.io.DataInputX in, scouter.io.DataOutputX out, boolean login) throws Exception {"
+					+ "((" + c.getName() + ") o)." + m.getName() + "(in, out, login); }", impl));
+			return (Invoker) impl.toClass(c.getClassLoader(), c.getProtectionDomain()).newInstance();
+		} catch (Throwable t) {
+			Logger.println("S225", 10, "reflection is used for " + c.getName() + "." + m.getName() + " " + t);
+			return null;
+		}
+	}
 	public static void load() {
 		String pkg = Scanner.cutOutLast(ServiceHandlingProxy.class.getName(), ".");
 		Set<String> classes = new Scanner(pkg).process(ServiceHandlingProxy.class.getClassLoader());
@@ -94,14 +136,59 @@ public class ServiceHandlingProxy {
 		}
 	}
 	public static void process(String cmd, DataInputX in, DataOutputX out, boolean login) {
+		process(cmd, in, out, login, 0, null);
+	}
+	public static boolean isStreaming(String cmd) {
+		return streaming.contains(cmd);
+	}
+
+	/**
+	 * runs the handler of cmd and records its time and response size. Requests slower than
+	 * log_service_slow_ms go to the request log with the parameter read through capture.
+	 */
+	public static void process(String cmd, DataInputX in, DataOutputX out, boolean login, long session, ParamCapture capture) {
 		Invocation handler = handlers.get(cmd);
 		if (handler != null) {
-			handler.exec(in, out, login);
+			ServiceStat stat = ServiceStat.get(cmd);
+			int written = out.getWriteSize();
+			long stime = System.currentTimeMillis();
+			stat.inflight.incrementAndGet();
+			if (capture != null) {
+				capture.start();
+			}
+			try {
+				handler.exec(in, out, login);
+			} finally {
+				stat.inflight.decrementAndGet();
+				long elapsed = System.currentTimeMillis() - stime;
+				int bytes = out.getWriteSize() - written;
+				byte[] param = capture == null ? null : capture.stop();
+				if (streaming.contains(cmd) == false) {
+					stat.elapsed.record(elapsed);
+					stat.bytes.record(bytes);
+					if (elapsed >= Configure.getInstance().log_service_slow_ms) {
+						RequestLogger.getInstance().addSlow(cmd, session, elapsed, bytes, paramText(param));
+					}
+				}
+			}
 		} else {
 			// Logger.println("no handler  " + cmd);
 			throw new RuntimeException("no handler  cmd=" + cmd);
 		}
 	}
+	private static String paramText(byte[] param) {
+		if (param == null || param.length == 0)
+			return "";
+		try {
+			return new DataInputX(param).readPack().toString();
+		} catch (Throwable t) {
+		}
+		try {
+			return new DataInputX(param).readValue().toString();
+		} catch (Throwable t) {
+		}
+		return param.length + " bytes";
+	}
 	public static void main(String[] args) {
 		load();
 	}
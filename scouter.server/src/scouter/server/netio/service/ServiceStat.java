@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.server.netio.service;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import scouter.lang.pack.MapPack;
+import scouter.lang.value.ListValue;
+import scouter.server.util.Histogram;
+import scouter.util.SortUtil;
+
+/**
+ * latency(ms) and response size histograms of each service command since the server started
+ */
+public class ServiceStat {
+	private static ConcurrentHashMap<String, ServiceStat> stats = new ConcurrentHashMap<String, ServiceStat>();
+
+	public final AtomicInteger inflight = new AtomicInteger();
+	public final Histogram elapsed = new Histogram();
+	public final Histogram bytes = new Histogram();
+
+	public static ServiceStat get(String cmd) {
+		ServiceStat s = stats.get(cmd);
+		if (s == null) {
+			ServiceStat old = stats.putIfAbsent(cmd, s = new ServiceStat());
+			if (old != null)
+				s = old;
+		}
+		return s;
+	}
+
+	public static String[] commands() {
+		return SortUtil.sort(stats.keySet().toArray(new String[0]));
+	}
+
+	public static void reset() {
+		Iterator<ServiceStat> itr = stats.values().iterator();
+		while (itr.hasNext()) {
+			ServiceStat s = itr.next();
+			s.elapsed.reset();
+			s.bytes.reset();
+		}
+	}
+
+	public static MapPack toPack() {
+		MapPack m = new MapPack();
+		ListValue cmd = m.newList("cmd");
+		ListValue count = m.newList("count");
+		ListValue inflight = m.newList("inflight");
+		ListValue avg = m.newList("avg");
+		ListValue p50 = m.newList("p50");
+		ListValue p90 = m.newList("p90");
+		ListValue p99 = m.newList("p99");
+		ListValue max = m.newList("max");
+		ListValue bytes50 = m.newList("bytes_p50");
+		ListValue bytes99 = m.newList("bytes_p99");
+		ListValue bytesMax = m.newList("bytes_max");
+		String[] cmds = commands();
+		for (int i = 0; i < cmds.length; i++) {
+			ServiceStat s = stats.get(cmds[i]);
+			cmd.add(cmds[i]);
+			count.add(s.elapsed.getCount());
+			inflight.add(s.inflight.get());
+			avg.add((float) s.elapsed.getMean());
+			p50.add(s.elapsed.percentile(0.5));
+			p90.add(s.elapsed.percentile(0.9));
+			p99.add(s.elapsed.percentile(0.99));
+			max.add(s.elapsed.getMax());
+			bytes50.add(s.bytes.percentile(0.5));
+			bytes99.add(s.bytes.percentile(0.99));
+			bytesMax.add(s.bytes.getMax());
+		}
+		return m;
+	}
+}
@@ -18,13 +18,13 @@ package scouter.server.netio.service.handle;
 
 import scouter.io.{DataInputX, DataOutputX}
 import scouter.lang.{CounterKey, TimeTypeEnum}
-import scouter.lang.counters.CounterConstants
 import scouter.lang.pack.MapPack
-import scouter.lang.value.{DoubleValue, MapValue}
+import scouter.lang.value.{DoubleValue, ListValue, MapValue, Value}
 import scouter.net.{RequestCmd, TcpFlag}
 import scouter.server.core.AgentManager
 import scouter.server.core.cache.CounterCache
 import scouter.server.db.{ObjectRD, RealtimeCounterRD}
+import scouter.server.db.counter.{CounterRollup, CounterSeriesChunk, RealtimeCounterDBHelper}
 import scouter.server.netio.service.anotation.ServiceHandler
 import scouter.server.util.TimedSeries
 import scouter.util.{CastUtil, DateUtil, IntKeyMap, StringUtil}
@@ -213,16 +213,36 @@ class CounterService {
         val date = DateUtil.yyyymmdd(stime);
         val objName = getObjName(date, objHash);
 
-        val handler = (time: Long, data: MapValue) => {
-            val value = data.get(counter);
-            if (value != null) {
-                timeLv.add(time);
-                valueLv.add(value);
+        // a client asking for a coarse resolution gets the avg of the rollup tier with min and max
+        val tier = CounterRollup.tier(param.getLong("resolution"));
+        val minLv = new ListValue();
+        val maxLv = new ListValue();
+        val rollup = tier > 0 && RealtimeCounterRD.readRollup(objName, date, counter, stime, etime, tier, (r: CounterRollup) => {
+            timeLv.add(r.time);
+            valueLv.add(r.avg());
+            minLv.add(r.min);
+            maxLv.add(r.max);
+        })
+        if (rollup) {
+            mpack.put("tier", tier);
+            mpack.put("min", minLv);
+            mpack.put("max", maxLv);
+        }
+        val series = (time: Long, value: Value) => {
+            timeLv.add(time);
+            valueLv.add(value);
+        }
+        if (rollup == false && RealtimeCounterRD.readSeries(objName, date, counter, stime, etime, series) == false) {
+            val handler = (time: Long, data: MapValue) => {
+                val value = data.get(counter);
+                if (value != null) {
+                    timeLv.add(time);
+                    valueLv.add(value);
+                }
             }
+            RealtimeCounterRD.read(objName, date, stime, etime, handler)
         }
 
-        RealtimeCounterRD.read(objName, date, stime, etime, handler)
-
         dout.writeByte(TcpFlag.HasNEXT);
         dout.writePack(mpack);
     }
@@ -253,23 +273,18 @@ class CounterService {
             mapPackMap.put(objHash, mapPack);
         }
 
-        val handler = (mapValue: MapValue) => {
-            if (mapValue != null) {
-                val objHash = mapValue.getInt(CounterConstants.COMMON_OBJHASH)
-                val time = mapValue.getLong(CounterConstants.COMMON_TIME)
-                val value = mapValue.get(counter)
-                if(value != null) {
-                    val curMapPack = mapPackMap.get(objHash)
-                    if(curMapPack != null) {
-                        curMapPack.getList("time").add(time)
-                        curMapPack.getList("value").add(value)
-                    }
+        val handler = new RealtimeCounterDBHelper.BulkHandler {
+            def handle(objHash: Int, time: Long, c: Int, valueType: Byte, value: Double) {
+                val curMapPack = mapPackMap.get(objHash)
+                if (curMapPack != null) {
+                    curMapPack.getList("time").add(time)
+                    curMapPack.getList("value").add(CounterSeriesChunk.toValue(valueType, value))
                 }
             }
         }
 
 //        val start = System.currentTimeMillis()
-        RealtimeCounterRD.readBulk(date, stime, etime, handler)
+        RealtimeCounterRD.readBulk(date, stime, etime, Array(counter), handler)
 //        val end = System.currentTimeMillis()
 //        println("[elapsed]" + (end-start))
 
@@ -404,22 +419,17 @@ class CounterService {
             mapPackMap.put(objHash, mapPack);
         }
 
-        val handler = (mapValue: MapValue) => {
-            if (mapValue != null) {
-                val objHash = mapValue.getInt(CounterConstants.COMMON_OBJHASH)
-                val time = mapValue.getLong(CounterConstants.COMMON_TIME)
-                val value = mapValue.get(counter)
-                if(value != null) {
-                    val curMapPack = mapPackMap.get(objHash)
-                    if(curMapPack != null) {
-                        curMapPack.getList("time").add(time)
-                        curMapPack.getList("value").add(value)
-                    }
+        val handler = new RealtimeCounterDBHelper.BulkHandler {
+            def handle(objHash: Int, time: Long, c: Int, valueType: Byte, value: Double) {
+                val curMapPack = mapPackMap.get(objHash)
+                if (curMapPack != null) {
+                    curMapPack.getList("time").add(time)
+                    curMapPack.getList("value").add(CounterSeriesChunk.toValue(valueType, value))
                 }
             }
         }
 
-        RealtimeCounterRD.readBulk(date, stime, etime, handler)
+        RealtimeCounterRD.readBulk(date, stime, etime, Array(counter), handler)
 
         for (i <- 0 to objHashLv.size() - 1) {
             dout.writeByte(TcpFlag.HasNEXT);
@@ -32,6 +32,9 @@ import scouter.net.RequestCmd
 import scouter.net.TcpFlag
 import scouter.server.core.AgentManager
 import scouter.server.db.DailyCounterRD
+import scouter.server.db.ObjectRD
+import scouter.server.db.RealtimeCounterRD
+import scouter.server.db.counter.CounterRollup
 import scouter.server.netio.service.anotation.ServiceHandler
 import scouter.util.CastUtil
 import scouter.util.DateUtil
@@ -278,6 +281,8 @@ class DailyCounterService {
             return ;
         }
         val agentGrp = AgentManager.getPeriodicObjects(sDate, eDate, objType);
+        // 10 minute or hourly charts come from the counter rollups where the day has them
+        val tier = CounterRollup.tier(param.getLong("resolution"));
 
         var stime = DateUtil.yyyymmdd(sDate);
         var etime = DateUtil.yyyymmdd(eDate) + DateUtil.MILLIS_PER_DAY;
@@ -293,13 +298,20 @@ class DailyCounterService {
                   mpack.put("objHash", objHash);
                   val timeLv = mpack.newList("time");
                   val valueLv = mpack.newList("value");
-  
-                  val v = DailyCounterRD.getValues(d, new CounterKey(objHash, counter, TimeTypeEnum.FIVE_MIN));
-  
-                  for (j <- 0 to ArrayUtil.len(v) - 1) {
-                      val time = date + DateUtil.MILLIS_PER_MINUTE * 5 * j;
-                      timeLv.add(time);
-                      valueLv.add(v(j));
+
+                  val rollup = tier > 0 && RealtimeCounterRD.readRollup(ObjectRD.getObjName(d, objHash), d, counter,
+                      date, date + DateUtil.MILLIS_PER_DAY - 1, tier, (r: CounterRollup) => {
+                          timeLv.add(r.time);
+                          valueLv.add(r.avg());
+                      })
+                  if (rollup == false) {
+                      val v = DailyCounterRD.getValues(d, new CounterKey(objHash, counter, TimeTypeEnum.FIVE_MIN));
+
+                      for (j <- 0 to ArrayUtil.len(v) - 1) {
+                          val time = date + DateUtil.MILLIS_PER_MINUTE * 5 * j;
+                          timeLv.add(time);
+                          valueLv.add(v(j));
+                      }
                   }
                   dout.writeByte(TcpFlag.HasNEXT);
                   dout.writePack(mpack);
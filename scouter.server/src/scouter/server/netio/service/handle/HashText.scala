@@ -46,14 +46,9 @@ class HashText {
       date = DateUtil.yyyymmdd();
 
     val result = new MapPack();
-    for (i <- 0 to ArrayUtil.len(hash) - 1) {
-      val h = hash.getInt(i);
-      val v = TextRD.getString(date, _type, h);
-      if (v != null) {
-        result.put(Hexa32.toString32(h), v);
-      }
-
-    }
+    TextRD.getStrings(date, _type, toHashes(hash), (h: Int, v: String) => {
+      result.put(Hexa32.toString32(h), v);
+    })
     dout.writeByte(TcpFlag.HasNEXT);
     dout.writePack(result);
   }
@@ -71,22 +66,73 @@ class HashText {
       date = DateUtil.yyyymmdd();
 
     val result = new MapPack();
-    for (i <- 0 to ArrayUtil.len(hash) - 1) {
-      val h = hash.getInt(i);
-      val v = TextRD.getString(date, _type, h);
-      if (v != null) {
-        result.put(Hexa32.toString32(h), v);
-        if (result.size() == 100) {
+    TextRD.getStrings(date, _type, toHashes(hash), (h: Int, v: String) => {
+      result.put(Hexa32.toString32(h), v);
+      if (result.size() == 100) {
+        dout.writeByte(TcpFlag.HasNEXT);
+        dout.writePack(result);
+        result.clear();
+      }
+    })
+    if (result.size() > 0) {
+      dout.writeByte(TcpFlag.HasNEXT);
+      dout.writePack(result);
+    }
+  }
+
+  /**
+    * resolves the hashes of several text types in one request.
+    * param: date, type(list of types), hash(one list of hashes per type)
+    * streams packs of up to 100 texts: type, hash(list), text(list)
+    */
+  @ServiceHandler(RequestCmd.GET_TEXT_PACK)
+  def getTextPack(din: DataInputX, dout: DataOutputX, login: Boolean) {
+    val param = din.readMapPack();
+    var date = param.getText("date");
+    val types = param.getList("type");
+    val hashes = param.getList("hash");
+    if (types == null || hashes == null)
+      return ;
+
+    if (date == null)
+      date = DateUtil.yyyymmdd();
+
+    for (i <- 0 to Math.min(types.size(), hashes.size()) - 1) {
+      val _type = types.getString(i);
+      val hash = hashes.get(i) match {
+        case lv: ListValue => lv
+        case _ => null
+      }
+      if (_type != null && hash != null) {
+        var result: MapPack = null
+        TextRD.getStrings(date, _type, toHashes(hash), (h: Int, v: String) => {
+          if (result == null) {
+            result = new MapPack();
+            result.put("type", _type);
+            result.newList("hash");
+            result.newList("text");
+          }
+          result.getList("hash").add(h.toLong);
+          result.getList("text").add(v);
+          if (result.getList("hash").size() == 100) {
+            dout.writeByte(TcpFlag.HasNEXT);
+            dout.writePack(result);
+            result = null;
+          }
+        })
+        if (result != null) {
           dout.writeByte(TcpFlag.HasNEXT);
           dout.writePack(result);
-          result.clear();
         }
       }
-
     }
-    if (result.size() > 0) {
-      dout.writeByte(TcpFlag.HasNEXT);
-      dout.writePack(result);
+  }
+
+  private def toHashes(hash: ListValue): Array[Int] = {
+    val out = new Array[Int](ArrayUtil.len(hash));
+    for (i <- 0 to out.length - 1) {
+      out(i) = hash.getInt(i);
     }
+    return out;
   }
 }
\ No newline at end of file
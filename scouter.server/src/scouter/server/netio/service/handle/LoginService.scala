@@ -72,6 +72,9 @@ class LoginService {
       m.put("menu", menuMv);
       menuMv.put("tag_count", new BooleanValue(Configure.getInstance().tagcnt_enabled));
       m.put("so_time_out", Configure.getInstance().net_tcp_client_so_timeout_ms);
+      if (Configure.getInstance().net_tcp_mux_enabled) {
+        m.put("mux_port", Configure.getInstance().net_tcp_mux_listen_port);
+      }
       
     }
     dout.writeByte(TcpFlag.HasNEXT);
@@ -33,6 +33,7 @@ import scouter.io.DataOutputX;
 import scouter.net.RequestCmd;
 import scouter.net.TcpFlag;
 import scouter.server.Configure;
+import scouter.server.netio.service.ServiceStat
 import scouter.server.netio.service.anotation.ServiceHandler;
 import scouter.util.FileUtil;
 import scala.collection.JavaConversions._
@@ -51,6 +52,19 @@ class ServerInfo {
     dout.writePack(serverPack);
   }
 
+  /**
+    * latency(ms) and response size percentiles of every service command, "reset" clears them afterwards
+    */
+  @ServiceHandler(RequestCmd.SERVER_SERVICE_STAT)
+  def getServiceStat(din: DataInputX, dout: DataOutputX, login: Boolean) {
+    val param = din.readMapPack();
+    dout.writeByte(TcpFlag.HasNEXT);
+    dout.writePack(ServiceStat.toPack());
+    if (param.getBoolean("reset")) {
+      ServiceStat.reset();
+    }
+  }
+
   @ServiceHandler(RequestCmd.SERVER_VERSION)
   def getServerVersion(din: DataInputX, dout: DataOutputX, login: Boolean) {
     val param = din.readMapPack(); // FOR MORE INFORMATION
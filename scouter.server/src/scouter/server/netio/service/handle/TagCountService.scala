@@ -28,6 +28,7 @@ import scouter.net.TcpFlag
 import scouter.server.db.AlertRD
 import scouter.server.db.ObjectRD
 import scouter.server.db.XLogRD
+import scouter.server.db.xlog.XLogFilter
 import scouter.server.netio.service.anotation.ServiceHandler
 import scouter.server.tagcnt.TagCountConfig
 import scouter.server.tagcnt.TagCountProxy
@@ -169,16 +170,12 @@ class TagCountService {
                         }
                     }
                 }
-                if (cnt >= max) {
-                    return ;
-                }
+                cnt < max
             }
 
-            if (rev) {
-                XLogRD.readFromEndTime(date, stime, etime, handler);
-            } else {
-                XLogRD.readByTime(date, stime, etime, handler);
-            }
+            val filter = new XLogFilter();
+            filter.objHashSet = objHashSet;
+            XLogRD.readByFilter(date, stime, etime, rev, filter, handler);
         } else if (tagGroup == TagConstants.GROUP_ALERT) {
             var cnt = 0;
             val handler = (time: Long, data: Array[Byte]) => {
@@ -25,6 +25,7 @@ import scouter.lang.pack.Pack
 import scouter.lang.pack.PackEnum
 import scouter.lang.pack.XLogPack
 import scouter.lang.pack.XLogProfilePack
+import scouter.lang.value.BooleanValue
 import scouter.lang.value.DecimalValue
 import scouter.lang.value.ListValue
 import scouter.io.DataInputX
@@ -36,13 +37,16 @@ import scouter.server.Logger
 import scouter.server.core.cache.CacheOut
 import scouter.server.core.cache.TextCache
 import scouter.server.core.cache.XLogCache
+import scouter.server.db.DBReaderPool
 import scouter.server.db.XLogProfileRD
 import scouter.server.db.XLogRD
+import scouter.server.db.xlog.XLogFilter
 import scouter.server.netio.service.anotation.ServiceHandler
 import scouter.util.DateUtil
 import scouter.util.IPUtil
 import scouter.util.IntSet
 import scouter.util.StrMatch
+import scouter.util.ThreadUtil
 import java.io.IOException
 import scouter.server.db.TextRD
 import scouter.server.util.EnumerScala
@@ -122,9 +126,9 @@ class XLogService {
         dout.writeByte(TcpFlag.HasNEXT);
         dout.writePack(outparam);
 
-        EnumerScala.forward(d.data, (p: Array[Byte]) => {
+        d.foreach((p: Array[Byte], len: Int) => {
             dout.writeByte(TcpFlag.HasNEXT);
-            dout.write(p);
+            dout.write(p, 0, len);
         })
 
     }
@@ -161,13 +165,98 @@ class XLogService {
         dout.writeByte(TcpFlag.HasNEXT);
         dout.writePack(outparam);
 
-        EnumerScala.forward(d.data, (p: Array[Byte]) => {
+        d.foreach((p: Array[Byte], len: Int) => {
             dout.writeByte(TcpFlag.HasNEXT);
-            dout.write(p);
+            dout.write(p, 0, len);
         })
 
     }
 
+    /**
+      * keeps the response open and pushes XLogs of the objects slower than limit as they arrive.
+      * The first pack, the idle heartbeats and the last pack are MapPacks with the position to poll
+      * TRANX_REAL_TIME_GROUP from once the subscription ends, the rest are XLogPacks.
+      */
+    @ServiceHandler(RequestCmd.TRANX_REAL_TIME_SUBSCRIBE)
+    def subscribeRealtimePerfGroup(din: DataInputX, dout: DataOutputX, login: Boolean) {
+        val conf = Configure.getInstance();
+        val param = din.readMapPack();
+        val limit = Math.max(conf.xlog_realtime_lower_bound_ms, param.getInt("limit"));
+        var duration = param.getLong("duration");
+        if (duration <= 0 || duration > conf.xlog_realtime_subscribe_duration_ms) {
+            duration = conf.xlog_realtime_subscribe_duration_ms;
+        }
+        val objHashLv = param.getList("objHash");
+
+        val intSet = if(objHashLv == null || objHashLv.size() < 1)
+                     null
+                     else new IntSet(objHashLv.size(), 1.0f)
+
+        EnumerScala.foreach(objHashLv, (obj: DecimalValue) => {
+            intSet.add(obj.intValue());
+        })
+
+        var loop = 0L;
+        var index = 0;
+        if (param.containsKey("loop")) {
+            loop = param.getLong("loop");
+            index = param.getInt("index");
+        } else {
+            val d = XLogCache.position();
+            loop = d.loop;
+            index = d.index;
+        }
+
+        val ok = XLogCache.subscribe();
+        val outparam = new MapPack();
+        outparam.put("loop", new DecimalValue(loop));
+        outparam.put("index", new DecimalValue(index));
+        outparam.put("subscribe", new BooleanValue(ok));
+        dout.writeByte(TcpFlag.HasNEXT);
+        dout.writePack(outparam);
+        dout.flush();
+        if (ok == false)
+            return;
+
+        val heartbeat = 5000L;
+        try {
+            val endTime = System.currentTimeMillis() + duration;
+            var lastSent = System.currentTimeMillis();
+            var now = lastSent;
+            while (now < endTime) {
+                if (XLogCache.await(loop, index, Math.min(heartbeat, endTime - now))) {
+                    val d = XLogCache.get(intSet, loop, index, limit);
+                    d.foreach((p: Array[Byte], len: Int) => {
+                        dout.writeByte(TcpFlag.HasNEXT);
+                        dout.write(p, 0, len);
+                        lastSent = System.currentTimeMillis();
+                    })
+                    loop = d.loop;
+                    index = d.index;
+                }
+                now = System.currentTimeMillis();
+                if (now - lastSent >= heartbeat) {
+                    val beat = new MapPack();
+                    beat.put("loop", new DecimalValue(loop));
+                    beat.put("index", new DecimalValue(index));
+                    dout.writeByte(TcpFlag.HasNEXT);
+                    dout.writePack(beat);
+                    lastSent = now;
+                }
+                dout.flush();
+                ThreadUtil.sleep(conf.xlog_realtime_subscribe_coalesce_ms);
+                now = System.currentTimeMillis();
+            }
+            val last = new MapPack();
+            last.put("loop", new DecimalValue(loop));
+            last.put("index", new DecimalValue(index));
+            dout.writeByte(TcpFlag.HasNEXT);
+            dout.writePack(last);
+        } finally {
+            XLogCache.unsubscribe();
+        }
+    }
+
     @ServiceHandler(RequestCmd.TRANX_LOAD_TIME_GROUP)
     def getHistoryPerfGroup(din: DataInputX, dout: DataOutputX, login: Boolean) {
         val param = din.readMapPack();
@@ -183,31 +272,30 @@ class XLogService {
             return ;
         }
 
-        val objHashSet = new IntSet();
+        val filter = new XLogFilter();
+        filter.objHashSet = new IntSet();
         EnumerScala.foreach(objHashLv, (obj: DecimalValue) => {
-            objHashSet.add(obj.intValue());
+            filter.objHashSet.add(obj.intValue());
         })
+        filter.minElapsed = limit + 1;
+        filter.errorOnly = param.getBoolean("error");
+        filter.service = param.getInt("service");
+        filter.login = param.getInt("login");
+        val ip = param.getText("ip");
+        if (StringUtil.isNotEmpty(ip)) {
+            filter.ipMatch = new StrMatch(ip);
+        }
 
         var cnt = 0;
         val handler = (time: Long, data: Array[Byte]) => {
-
-            val x = new DataInputX(data).readPack().asInstanceOf[XLogPack];
-            if (objHashSet.contains(x.objHash) && x.elapsed > limit) {
-                dout.writeByte(TcpFlag.HasNEXT);
-                dout.write(data);
-                dout.flush();
-                cnt += 1;
-            }
-            if (max > 0 && cnt >= max) {
-                return ;
-            }
+            dout.writeByte(TcpFlag.HasNEXT);
+            dout.write(data);
+            dout.flush();
+            cnt += 1;
+            max <= 0 || cnt < max
         }
 
-        if (rev) {
-            XLogRD.readFromEndTime(date, stime, etime, handler)
-        } else {
-            XLogRD.readByTime(date, stime, etime, handler);
-        }
+        XLogRD.readByFilter(date, stime, etime, rev, filter, handler);
     }
 
     @ServiceHandler(RequestCmd.XLOG_READ_BY_GXID)
@@ -253,31 +341,17 @@ class XLogService {
         val gxid = param.getLong("gxid");
         val date = DateUtil.yyyymmdd(stime);
         val date2 = DateUtil.yyyymmdd(etime);
+        val dates = if (date.equals(date2)) List(date) else List(date, date2);
         try {
-            val list = XLogRD.getByGxid(date, gxid);
-
-            EnumerScala.forward(list, (xlog: Array[Byte]) => {
-                dout.writeByte(TcpFlag.HasNEXT);
-                dout.write(xlog);
-                dout.flush();
-            })
-
-        } catch {
-            case e: Exception => {}
-        }
-        if (date.equals(date2) == false) {
-            try {
-                val list = XLogRD.getByGxid(date2, gxid);
-
+            DBReaderPool.fanOut(dates.map(d => () => XLogRD.getByGxid(d, gxid)), (list: java.util.Vector[Array[Byte]]) => {
                 EnumerScala.forward(list, (xlog: Array[Byte]) => {
                     dout.writeByte(TcpFlag.HasNEXT);
                     dout.write(xlog);
                     dout.flush();
-                });
-
-            } catch {
-                case e: Exception => {}
-            }
+                })
+            })
+        } catch {
+            case e: Exception => {}
         }
     }
 
@@ -338,9 +412,6 @@ class XLogService {
         }
 
         val handler = (time: Long, data: Array[Byte]) => {
-            if (loadCount >= 500) {
-                return ;
-            }
             val x = new DataInputX(data).readPack().asInstanceOf[XLogPack];
             var ok = true
             if (ipMatch != null) {
@@ -366,13 +437,21 @@ class XLogService {
                 dout.flush();
                 loadCount += 1;
             }
+            loadCount < 500
         }
 
+        val filter = new XLogFilter();
+        if (objHash != 0) {
+            filter.objHashSet = new IntSet();
+            filter.objHashSet.add(objHash);
+        }
         if (twoDays) {
-            XLogRD.readByTime(date, stime, mtime - 1, handler);
-            XLogRD.readByTime(date2, mtime, etime, handler);
+            XLogRD.readByFilter(date, stime, mtime - 1, false, filter, handler);
+            if (loadCount < 500) {
+                XLogRD.readByFilter(date2, mtime, etime, false, filter, handler);
+            }
         } else {
-            XLogRD.readByTime(date, stime, etime, handler);
+            XLogRD.readByFilter(date, stime, etime, false, filter, handler);
         }
     }
 
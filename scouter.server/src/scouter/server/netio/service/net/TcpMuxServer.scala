@@ -0,0 +1,447 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.netio.service.net
+
+import java.io.{ByteArrayInputStream, DataInputStream, DataOutputStream, EOFException, IOException, OutputStream}
+import java.net.InetSocketAddress
+import java.nio.ByteBuffer
+import java.nio.channels.{SelectionKey, Selector, ServerSocketChannel, SocketChannel}
+import java.util.concurrent.{ConcurrentHashMap, ConcurrentLinkedQueue}
+import java.util.concurrent.atomic.AtomicInteger
+
+import scouter.io.{DataInputX, DataOutputX}
+import scouter.net.{NetCafe, RequestCmd, TcpFlag}
+import scouter.server.core.ServerStat
+import scouter.server.logs.RequestLogger
+import scouter.server.netio.service.{ParamCapture, ServiceHandlingProxy}
+import scouter.server.util.ThreadScala
+import scouter.server.{ConfObserver, Configure, Logger, LoginManager}
+import scouter.util.{FileUtil, ThreadUtil}
+
+/**
+  * selector based service server for clients that keep several requests in flight on one connection.
+  * <pre>
+  * handshake : int NetCafe.TCP_CLIENT_MUX
+  * request   : int length, int id, text cmd, long session, param
+  * response  : int length, int id, byte last, a slice of the response stream (HasNEXT pack ... NoNEXT)
+  * </pre>
+  * last is MORE, LAST or FAILED; a FAILED frame carries no data and ends a response cut short by
+  * an error, the slices sent before it are to be dropped. The port is announced to clients at login.
+  * Slices of different requests interleave. Commands whose recent average is under net_tcp_mux_slow_ms
+  * run on the io pool, the others (and unseen ones) on the bounded slow pool; a request that finds the
+  * slow pool full is answered with TcpFlag.FAIL.
+  * Until the connection has shown a valid session, requests over MAX_LOGIN_REQUEST are refused.
+  */
+object TcpMuxServer {
+    val conf = Configure.getInstance();
+
+    val MAX_REQUEST = 16 * 1024 * 1024;
+    val MAX_LOGIN_REQUEST = 64 * 1024;
+    val MAX_HEADER = 1024;
+    val SLICE = 32 * 1024;
+    val MAX_PENDING = 4 * 1024 * 1024;
+
+    val MORE: Byte = 0;
+    val LAST: Byte = 1;
+    val FAILED: Byte = 2;
+
+    val ioPool = ThreadUtil.createExecutor("ServiceMuxIO", conf.net_tcp_mux_io_pool_size, 10000, true);
+    val slowPool = ThreadUtil.createExecutor("ServiceMuxSlow", conf.net_tcp_mux_slow_pool_size, 10000, true);
+    ConfObserver.put("TcpMuxServer") {
+        if (conf.net_tcp_mux_io_pool_size != ioPool.getCorePoolSize()) {
+            ioPool.setCorePoolSize(conf.net_tcp_mux_io_pool_size);
+        }
+        if (conf.net_tcp_mux_slow_pool_size != slowPool.getCorePoolSize()) {
+            slowPool.setCorePoolSize(conf.net_tcp_mux_slow_pool_size);
+        }
+    }
+
+    private val elapsed = new ConcurrentHashMap[String, java.lang.Float]();
+    private val wakeups = new ConcurrentLinkedQueue[MuxConnection]();
+    private val connections = new java.util.HashSet[MuxConnection]();
+    private var selector: Selector = null;
+    private var rejected = 0L;
+
+    ThreadScala.startDaemon("scouter.server.netio.service.net.TcpMuxServer") {
+        if (conf.net_tcp_mux_enabled) {
+            Logger.println("\ttcp_mux_port=" + conf.net_tcp_mux_listen_port);
+            var server: ServerSocketChannel = null;
+            try {
+                selector = Selector.open();
+                server = ServerSocketChannel.open();
+                server.socket().setReuseAddress(true);
+                server.socket().bind(new InetSocketAddress(conf.net_tcp_listen_ip, conf.net_tcp_mux_listen_port), 50);
+                server.configureBlocking(false);
+                server.register(selector, SelectionKey.OP_ACCEPT);
+                loop();
+            } catch {
+                case e: Throwable => Logger.println("S223", 1, "tcp mux port=" + conf.net_tcp_mux_listen_port, e);
+            } finally {
+                if (server != null) {
+                    FileUtil.close(server.socket());
+                }
+            }
+        }
+    }
+
+    private def loop() {
+        var lastCheck = System.currentTimeMillis();
+        while (true) {
+            selector.select(1000);
+            var c = wakeups.poll();
+            while (c != null) {
+                if (c.key.isValid()) {
+                    c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+                c = wakeups.poll();
+            }
+            val itr = selector.selectedKeys().iterator();
+            while (itr.hasNext()) {
+                val key = itr.next();
+                itr.remove();
+                try {
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept(key.channel().asInstanceOf[ServerSocketChannel]);
+                    } else {
+                        val conn = key.attachment().asInstanceOf[MuxConnection];
+                        if (key.isValid() && key.isReadable()) {
+                            conn.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            conn.write();
+                        }
+                    }
+                } catch {
+                    case e: Throwable =>
+                        if (key.attachment() != null) {
+                            close(key.attachment().asInstanceOf[MuxConnection]);
+                        }
+                        if (conf.log_tcp_action_enabled) {
+                            Logger.println("Client(mux) closed " + e);
+                        }
+                }
+            }
+            val now = System.currentTimeMillis();
+            if (now - lastCheck >= 1000) {
+                lastCheck = now;
+                closeIdle(now);
+                ServerStat.put("tcp.mux.conn", connections.size());
+                ServerStat.put("tcp.mux.slow.queue", slowPool.getQueue().size());
+                ServerStat.put("tcp.mux.rejected", rejected);
+            }
+        }
+    }
+
+    private def accept(server: ServerSocketChannel) {
+        val channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        val conn = new MuxConnection(channel);
+        conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+        connections.add(conn);
+        if (conf.log_tcp_action_enabled) {
+            Logger.println("Client(mux) : " + channel.socket().getRemoteSocketAddress() + " open #" + connections.size());
+        }
+    }
+
+    private def closeIdle(now: Long) {
+        val itr = connections.iterator();
+        while (itr.hasNext()) {
+            val c = itr.next();
+            if (c.inflight.get() == 0 && c.writeQueue.isEmpty() && now - c.lastRead > conf.net_tcp_mux_idle_timeout_ms) {
+                itr.remove();
+                c.close();
+            }
+        }
+    }
+
+    private def close(c: MuxConnection) {
+        connections.remove(c);
+        c.close();
+    }
+
+    private def wakeup(c: MuxConnection) {
+        wakeups.add(c);
+        selector.wakeup();
+    }
+
+    private def isSlow(cmd: String): Boolean = {
+        val avg = elapsed.get(cmd);
+        return avg == null || avg.floatValue() >= conf.net_tcp_mux_slow_ms;
+    }
+
+    private def record(cmd: String, ms: Long) {
+        val avg = elapsed.get(cmd);
+        elapsed.put(cmd, if (avg == null) ms.toFloat else avg.floatValue() * 0.8f + ms * 0.2f);
+    }
+
+    class MuxConnection(val channel: SocketChannel) {
+        var key: SelectionKey = null;
+        var handshake = false;
+        @volatile var sessionOk = false;
+        @volatile var closed = false;
+        var lastRead = System.currentTimeMillis();
+        var readBuf = ByteBuffer.allocate(64 * 1024);
+        val writeQueue = new ConcurrentLinkedQueue[ByteBuffer]();
+        val pending = new AtomicInteger();
+        val inflight = new AtomicInteger();
+
+        def read() {
+            if (readBuf.remaining() == 0) {
+                val bigger = ByteBuffer.allocate(readBuf.capacity() * 2);
+                readBuf.flip();
+                bigger.put(readBuf);
+                readBuf = bigger;
+            }
+            if (channel.read(readBuf) < 0) {
+                throw new IOException("closed");
+            }
+            lastRead = System.currentTimeMillis();
+            readBuf.flip();
+            if (handshake == false) {
+                if (readBuf.remaining() < 4) {
+                    readBuf.compact();
+                    return;
+                }
+                if (readBuf.getInt() != NetCafe.TCP_CLIENT_MUX) {
+                    throw new IOException("unknown cafe");
+                }
+                handshake = true;
+            }
+            var done = false;
+            while (done == false && readBuf.remaining() >= 4) {
+                val len = readBuf.getInt(readBuf.position());
+                if (len <= 0 || len > MAX_REQUEST) {
+                    throw new IOException("invalid request length " + len);
+                }
+                if (len > MAX_LOGIN_REQUEST && sessionOk == false && authorize() == false) {
+                    done = true;
+                } else if (readBuf.remaining() >= 4 + len) {
+                    readBuf.getInt();
+                    val body = new Array[Byte](len);
+                    readBuf.get(body);
+                    dispatch(body);
+                } else {
+                    done = true;
+                }
+            }
+            readBuf.compact();
+        }
+
+        /**
+          * checks the session in the header of a large request before its body is buffered,
+          * false while the header has not arrived yet
+          */
+        private def authorize(): Boolean = {
+            val head = new Array[Byte](Math.min(readBuf.remaining() - 4, MAX_HEADER));
+            val dup = readBuf.duplicate();
+            dup.position(dup.position() + 4);
+            dup.get(head);
+            val in = new DataInputX(head);
+            try {
+                in.readInt();
+                val cmdLen = in.readUnsignedByte();
+                if (cmdLen >= 254) {
+                    throw new IOException("invalid request header");
+                }
+                in.read(cmdLen);
+                sessionOk = LoginManager.okSession(in.readLong());
+            } catch {
+                case e: EOFException =>
+                    if (head.length < MAX_HEADER)
+                        return false;
+                    throw new IOException("invalid request header");
+            }
+            if (sessionOk == false) {
+                throw new IOException("request too large before login");
+            }
+            return true;
+        }
+
+        def write() {
+            var buf = writeQueue.peek();
+            while (buf != null) {
+                channel.write(buf);
+                if (buf.remaining() > 0)
+                    return;
+                writeQueue.poll();
+                pending.addAndGet(-buf.limit());
+                buf = writeQueue.peek();
+            }
+            this.synchronized {
+                this.notifyAll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (writeQueue.isEmpty() == false) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private def dispatch(body: Array[Byte]) {
+            val capture = new ParamCapture(new ByteArrayInputStream(body));
+            val in = new DataInputX(new DataInputStream(capture));
+            val id = in.readInt();
+            val cmd = in.readText();
+            if (RequestCmd.CLOSE.equals(cmd)) {
+                throw new IOException("close requested");
+            }
+            val session = in.readLong();
+            if (sessionOk == false && RequestCmd.isFreeCmd(cmd) == false) {
+                sessionOk = LoginManager.okSession(session);
+                if (sessionOk == false) {
+                    reply(id, TcpFlag.INVALID_SESSION);
+                    return;
+                }
+            }
+            RequestLogger.getInstance().add(cmd, session);
+            val login = sessionOk;
+            val task = new Runnable() {
+                override def run() {
+                    val stime = System.currentTimeMillis();
+                    val out = new FrameOutputStream(MuxConnection.this, id);
+                    val dout = new DataOutputX(new DataOutputStream(out));
+                    try {
+                        ServiceHandlingProxy.process(cmd, in, dout, login, session, capture);
+                        dout.writeByte(TcpFlag.NoNEXT);
+                        out.finish();
+                    } catch {
+                        case e: Throwable =>
+                            Logger.println("S224", 10, "mux service " + cmd + " " + e);
+                            out.abort();
+                    } finally {
+                        inflight.decrementAndGet();
+                        record(cmd, System.currentTimeMillis() - stime);
+                    }
+                }
+            }
+            inflight.incrementAndGet();
+            if (isSlow(cmd)) {
+                if (slowPool.getQueue().size() >= conf.net_tcp_mux_slow_queue_size) {
+                    inflight.decrementAndGet();
+                    rejected += 1;
+                    reply(id, TcpFlag.FAIL);
+                    return;
+                }
+                slowPool.execute(task);
+            } else {
+                ioPool.execute(task);
+            }
+        }
+
+        /**
+          * queues one response frame; the caller waits while too much is queued for this client
+          */
+        def send(id: Int, b: Array[Byte], off: Int, len: Int, last: Byte) {
+            this.synchronized {
+                while (pending.get() > MAX_PENDING && closed == false) {
+                    this.wait(100);
+                }
+            }
+            if (closed) {
+                throw new IOException("connection closed");
+            }
+            enqueue(id, b, off, len, last);
+        }
+
+        /**
+          * single flag answer from the selector thread, which must not wait for its own writes
+          */
+        def reply(id: Int, flag: Byte) {
+            enqueue(id, Array[Byte](flag), 0, 1, LAST);
+        }
+
+        private def enqueue(id: Int, b: Array[Byte], off: Int, len: Int, last: Byte) {
+            val buf = ByteBuffer.allocate(4 + 4 + 1 + len);
+            buf.putInt(4 + 1 + len).putInt(id).put(last).put(b, off, len);
+            buf.flip();
+            pending.addAndGet(buf.limit());
+            writeQueue.add(buf);
+            wakeup(this);
+        }
+
+        def close() {
+            closed = true;
+            this.synchronized {
+                this.notifyAll();
+            }
+            key.cancel();
+            FileUtil.close(channel.socket());
+        }
+    }
+
+    /**
+      * cuts a response stream into frames of one request
+      */
+    class FrameOutputStream(conn: MuxConnection, id: Int) extends OutputStream {
+        private val buf = new Array[Byte](SLICE);
+        private var count = 0;
+
+        override def write(b: Int) {
+            if (count == buf.length) {
+                emit(MORE);
+            }
+            buf(count) = b.toByte;
+            count += 1;
+        }
+
+        override def write(b: Array[Byte], off: Int, len: Int) {
+            var pos = off;
+            val end = off + len;
+            while (pos < end) {
+                if (count == buf.length) {
+                    emit(MORE);
+                }
+                val n = Math.min(end - pos, buf.length - count);
+                System.arraycopy(b, pos, buf, count, n);
+                count += n;
+                pos += n;
+            }
+        }
+
+        override def flush() {
+            if (count > 0) {
+                emit(MORE);
+            }
+        }
+
+        def finish() {
+            emit(LAST);
+        }
+
+        /**
+          * ends the response with a FAILED frame, a partial pack already sent can not be taken back
+          */
+        def abort() {
+            try {
+                count = 0;
+                emit(FAILED);
+            } catch {
+                case e: Exception =>
+            }
+        }
+
+        private def emit(last: Byte) {
+            conn.send(id, buf, 0, count, last);
+            count = 0;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package scouter.server.netio.service.net;
 
 import java.io.BufferedInputStream
 import java.io.BufferedOutputStream
+import java.io.DataInputStream
 import java.io.EOFException
 import java.net.Socket
 import java.net.SocketTimeoutException
@@ -30,8 +31,9 @@ import scouter.net.RequestCmd
 import scouter.net.TcpFlag
 import scouter.server.{Logger, LoginManager, Configure}
 import scouter.server.logs.RequestLogger
-import scouter.server.netio.service.ServiceHandlingProxy
+import scouter.server.netio.service.{ParamCapture, ServiceHandlingProxy}
 import scouter.server.netio.req.net.TcpAgentReqWorker
+import scouter.server.util.ThreadScala
 import scouter.util.FileUtil
 import scouter.util.Hexa32
 
@@ -57,7 +59,8 @@ object ServiceWorker {
 class ServiceWorker(_socket: Socket) extends Runnable {
     var socket = _socket;
 
-    val in = new DataInputX(new BufferedInputStream(socket.getInputStream()));
+    val capture = new ParamCapture(new BufferedInputStream(socket.getInputStream()));
+    val in = new DataInputX(new DataInputStream(capture));
     val out = new DataOutputX(new BufferedOutputStream(socket.getOutputStream()));
     val conf = Configure.getInstance()
 
@@ -102,6 +105,7 @@ class ServiceWorker(_socket: Socket) extends Runnable {
                 FileUtil.close(socket);
                 return
         }
+        var handedOff = false;
         try {
 
             ServiceWorker.inc();
@@ -121,8 +125,13 @@ class ServiceWorker(_socket: Socket) extends Runnable {
                   }
                 }
                 RequestLogger.getInstance().add(cmd, session);
-                ServiceHandlingProxy.process(cmd, in, out, sessionOk);
-
+                if (ServiceHandlingProxy.isStreaming(cmd)) {
+                    // a subscription keeps the connection to its end on a thread of its own, not a pooled worker
+                    handedOff = true;
+                    subscribe(cmd, sessionOk, session, remoteAddr);
+                    return
+                }
+                ServiceHandlingProxy.process(cmd, in, out, sessionOk, session, capture);
                 out.writeByte(TcpFlag.NoNEXT);
                 out.flush();
             }
@@ -148,11 +157,32 @@ class ServiceWorker(_socket: Socket) extends Runnable {
             case t: Throwable =>
                 Logger.println("SC-400", 30, "ServiceWorker closed", t)
         } finally {
-            FileUtil.close(in);
-            FileUtil.close(out);
-            FileUtil.close(socket);
+            if (handedOff == false) {
+                FileUtil.close(in);
+                FileUtil.close(out);
+                FileUtil.close(socket);
+            }
             ServiceWorker.desc();
         }
     }
 
+    private def subscribe(cmd: String, login: Boolean, session: Long, remoteAddr: String) {
+        ThreadScala.startDaemon("scouter.server.netio.service.net.Subscription") {
+            try {
+                ServiceHandlingProxy.process(cmd, in, out, login, session, capture);
+                out.writeByte(TcpFlag.NoNEXT);
+                out.flush();
+            } catch {
+                case e: Throwable =>
+                    if (conf.log_tcp_action_enabled) {
+                        Logger.println("Client : " + remoteAddr + " subscription closed " + e);
+                    }
+            } finally {
+                FileUtil.close(in);
+                FileUtil.close(out);
+                FileUtil.close(socket);
+            }
+        }
+    }
+
 }
\ No newline at end of file
@@ -28,14 +28,16 @@ import scouter.lang.value.Value;
 import scouter.server.core.AgentManager;
 import scouter.server.core.cache.CounterCache;
 import scouter.util.IntLongLinkedMap;
-import scouter.util.LongEnumer;
-import scouter.util.LongKeyLinkedMap;
 
 public class RealCounter {
 
 	private Value _value;
 	private long _time;
-	private LongKeyLinkedMap<Number> _history;
+	// value history, a ring of the latest _historyTime.length values; _historyNext is the sequence of the next one
+	private long[] _historyTime;
+	private float[] _historyValue;
+	private long _historyNext;
+	private Window[] _windows = new Window[0];
 	private IntLongLinkedMap _lastAlertTime;
 
 	private String _objType;
@@ -100,35 +102,42 @@ public class RealCounter {
 	}
 
 	public int historySize() {
-		return _history == null ? 0 : _history.size();
+		if (_historyTime == null)
+			return 0;
+		return (int) Math.min(_historyNext, _historyTime.length);
 	}
 
 	public int overCount(int value, int sec) {
 		return overCount((float) value, sec);
 	}
 
+	/**
+	 * number of values not less than value in the last sec seconds
+	 */
 	public int overCount(float value, int sec) {
 		if (historySize() == 0)
 			return 0;
-		long from = System.currentTimeMillis() - sec * 1000L;
-		int cnt = 0;
-		LongEnumer en = _history.keys();
-		while (en.hasMoreElements()) {
-			long tm = en.nextLong();
-			if (tm < from)
-				break;
-			Number val = _history.get(tm);
-			if (val.floatValue() >= value) {
-				cnt++;
+		Window w = window(sec, value, true);
+		if (w == null) {
+			int cnt = 0;
+			long from = System.currentTimeMillis() - sec * 1000L;
+			for (long i = _historyNext - 1; i >= _historyNext - historySize(); i--) {
+				int x = (int) (i % _historyTime.length);
+				if (_historyTime[x] < from)
+					break;
+				if (_historyValue[x] >= value) {
+					cnt++;
+				}
 			}
+			return cnt;
 		}
-		return cnt;
+		return w.over;
 	}
 
 	public long historyOldestTime() {
 		if (historySize() == 0)
 			return 0;
-		long tm = _history.getLastKey();
+		long tm = _historyTime[(int) ((_historyNext - historySize()) % _historyTime.length)];
 		long now = System.currentTimeMillis();
 		return (now - tm) / 1000;
 	}
@@ -136,22 +145,132 @@ public class RealCounter {
 	public int historyCount(int sec) {
 		if (historySize() == 0)
 			return 0;
-		long from = System.currentTimeMillis() - sec * 1000L;
-		int cnt = 0;
-		LongEnumer en = _history.keys();
-		while (en.hasMoreElements()) {
-			long tm = en.nextLong();
-			if (tm < from)
+		return window(sec, Float.NaN, false).count;
+	}
+
+	/**
+	 * average of the values in the last sec seconds
+	 */
+	public float historyAvg(int sec) {
+		if (historySize() == 0)
+			return 0;
+		Window w = window(sec, Float.NaN, false);
+		return w.count == 0 ? 0 : (float) (w.sum / w.count);
+	}
+
+	/**
+	 * max of the values in the last sec seconds
+	 */
+	public float historyMax(int sec) {
+		if (historySize() == 0)
+			return 0;
+		Window w = window(sec, Float.NaN, false);
+		return w.count == 0 ? 0 : _historyValue[(int) (w.maxSeq[w.maxHead % w.maxSeq.length] % _historyTime.length)];
+	}
+
+	private static final int MAX_WINDOWS = 8;
+
+	/**
+	 * the running window of sec seconds, trimmed to now. A rule usually asks the same few windows on
+	 * every value, so each is kept up to date as values come and go instead of walking the history.
+	 * Returns null when a threshold window is asked for once MAX_WINDOWS are kept.
+	 */
+	private Window window(int sec, float threshold, boolean exact) {
+		Window w = null;
+		for (int i = 0; i < _windows.length; i++) {
+			Window x = _windows[i];
+			if (x.sec == sec && (exact == false || x.threshold == threshold)) {
+				w = x;
 				break;
-			cnt++;
+			}
 		}
-		return cnt;
+		if (w == null) {
+			if (_windows.length >= MAX_WINDOWS) {
+				if (exact)
+					return null;
+				w = new Window(sec, Float.NaN, _historyTime.length);
+				for (long i = _historyNext - historySize(); i < _historyNext; i++) {
+					w.add(i, _historyValue[(int) (i % _historyTime.length)]);
+				}
+				w.trim(System.currentTimeMillis() - sec * 1000L, _historyNext - historySize());
+				return w;
+			}
+			w = new Window(sec, exact ? threshold : Float.NaN, _historyTime.length);
+			for (long i = _historyNext - historySize(); i < _historyNext; i++) {
+				w.add(i, _historyValue[(int) (i % _historyTime.length)]);
+			}
+			Window[] windows = new Window[_windows.length + 1];
+			System.arraycopy(_windows, 0, windows, 0, _windows.length);
+			windows[_windows.length] = w;
+			_windows = windows;
+		}
+		w.trim(System.currentTimeMillis() - sec * 1000L, _historyNext - historySize());
+		return w;
 	}
 
-	public static void main(String[] args) {
-		LongKeyLinkedMap<String> m = new LongKeyLinkedMap<String>();
-		m.putLast(10, "10");
-		m.putLast(20, "20");
+	/**
+	 * count, sum, count over threshold and max (a deque of sequences with falling values) of the
+	 * history values from tail to the newest
+	 */
+	private class Window {
+		final int sec;
+		final float threshold;
+		long tail = -1;
+		int count;
+		int over;
+		double sum;
+		final long[] maxSeq;
+		int maxHead;
+		int maxSize;
+
+		Window(int sec, float threshold, int capacity) {
+			this.sec = sec;
+			this.threshold = threshold;
+			this.maxSeq = new long[capacity];
+		}
+
+		void add(long seq, float v) {
+			if (tail < 0) {
+				tail = seq;
+			}
+			count++;
+			sum += v;
+			if (v >= threshold) {
+				over++;
+			}
+			while (maxSize > 0 && value(maxSeq[(maxHead + maxSize - 1) % maxSeq.length]) <= v) {
+				maxSize--;
+			}
+			maxSeq[(maxHead + maxSize) % maxSeq.length] = seq;
+			maxSize++;
+		}
+
+		/**
+		 * drops the values older than from and the ones before the sequence oldest
+		 */
+		void trim(long from, long oldest) {
+			while (count > 0 && (tail < oldest || _historyTime[(int) (tail % _historyTime.length)] < from)) {
+				float v = value(tail);
+				count--;
+				sum -= v;
+				if (v >= threshold) {
+					over--;
+				}
+				if (maxSize > 0 && maxSeq[maxHead % maxSeq.length] == tail) {
+					maxHead = (maxHead + 1) % maxSeq.length;
+					maxSize--;
+				}
+				tail++;
+			}
+			if (count == 0) {
+				tail = -1;
+				sum = 0;
+			}
+		}
+
+		private float value(long seq) {
+			return _historyValue[(int) (seq % _historyValue.length)];
+		}
 	}
 
 	public void setAlertTime(byte level, long time) {
@@ -163,20 +282,36 @@ public class RealCounter {
 
 	public void historySize(int size) {
 		if (size <= 0) {
-			this._history = null;
+			this._historyTime = null;
+			this._historyValue = null;
+		} else if (this._historyTime == null || this._historyTime.length != size) {
+			this._historyTime = new long[size];
+			this._historyValue = new float[size];
 		} else {
-			if (this._history == null) {
-				this._history = new LongKeyLinkedMap<Number>();
-			}
-			this._history.setMax(size);
+			return;
 		}
+		this._historyNext = 0;
+		this._windows = new Window[0];
 	}
 
 	public void addValueHistory(Number value) {
-		if (this._history == null)
+		if (this._historyTime == null)
 			return;
 		long time = System.currentTimeMillis();
-		this._history.putFirst(time, value);
+		long seq = _historyNext;
+		if (seq >= _historyTime.length) {
+			// the value about to be overwritten leaves every window first
+			for (int i = 0; i < _windows.length; i++) {
+				_windows[i].trim(Long.MIN_VALUE, seq - _historyTime.length + 1);
+			}
+		}
+		int x = (int) (seq % _historyTime.length);
+		_historyTime[x] = time;
+		_historyValue[x] = value.floatValue();
+		_historyNext = seq + 1;
+		for (int i = 0; i < _windows.length; i++) {
+			_windows[i].add(seq, _historyValue[x]);
+		}
 	}
 
 	public void silentTime(int sec) {
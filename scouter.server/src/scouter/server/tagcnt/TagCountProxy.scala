@@ -26,6 +26,7 @@ import java.util.Map
 import scouter.lang.value.Value
 import scouter.server.tagcnt.core.TagCountUtil
 import scouter.server.tagcnt.core.Top100FileCache
+import scouter.server.tagcnt.core.TopValueCache
 import scouter.server.tagcnt.core.ValueCount
 import scouter.server.tagcnt.core.ValueCountTotal
 import scouter.server.tagcnt.first.FirstTCData
@@ -43,6 +44,10 @@ object TagCountProxy {
     }
 
     def getTagValueCountWithCache(date: String, objType: String, tagKey: Long, limit: Int): ValueCountTotal = {
+        val top = TopValueCache.get(date, objType, tagKey, limit);
+        if (top != null) {
+            return top;
+        }
         val pack = Top100FileCache.readTop100Cache(date, objType, tagKey);
         if (pack != null) {
             return pack;
@@ -120,13 +125,15 @@ object TagCountProxy {
     }
 
     def add(time: Long, objType: String, tag: TagCountConfig.Tag, tagValue: Value, cnt: Int) {
-         FirstTagCountDB.add(new FirstTCData(objType, time, tag.key, tagValue, cnt.toFloat));
+        add(time, objType, tag.key, tagValue, cnt.toFloat);
     }
     def add(time: Long, objType: String, tag: TagCountConfig.Tag, tagValue: Value, cnt: Float) {
-        FirstTagCountDB.add(new FirstTCData(objType, time, tag.key, tagValue, cnt));
+        add(time, objType, tag.key, tagValue, cnt);
     }
 
     def add(time: Long, objType: String, tagKey: Long, tagValue: Value, cnt: Float) {
+        // the sketch first, so a day it sees as new has no counts in the db yet
+        TopValueCache.add(time, objType, tagKey, tagValue, cnt);
         FirstTagCountDB.add(new FirstTCData(objType, time, tagKey, tagValue, cnt));
     }
 }
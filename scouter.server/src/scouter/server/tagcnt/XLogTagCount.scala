@@ -28,19 +28,22 @@ import scouter.server.Configure
 import scouter.server.Logger
 import scouter.server.core.AgentManager
 import scouter.server.core.CoreRun
+import scouter.server.core.ServerStat
 import scouter.server.util.ThreadScala
 import scouter.util.IPUtil
-import scouter.util.RequestQueue
+import scouter.util.RingQueue
 import scouter.util.StringUtil
 
 object XLogTagCount {
 
-    val queue = new RequestQueue[XLogPack](CoreRun.MAX_QUE_SIZE);
+    val queue = new RingQueue[XLogPack](CoreRun.MAX_QUE_SIZE);
 
     ThreadScala.startDaemon("scouter.server.tagcnt.XLogTagCount") {
         val conf = Configure.getInstance();
         while (CoreRun.running) {
             val m = queue.get();
+            ServerStat.put("xlog.tagcnt.queue", queue.size());
+            ServerStat.put("xlog.tagcnt.drop", queue.getDropCount());
             try {
                 val objInfo = AgentManager.getAgent(m.objHash)
                 if (objInfo != null) {
@@ -61,8 +61,11 @@ object Top100FileCache {
                 val workSet = logSet;
                 logSet = new HashSet[Key]();
                 EnumerScala.foreach(workSet.iterator(), (key: Key) => {
-                    this.synchronized {
-                        makeTop100(key.logDate, key.objType,100)
+                    // days with a complete top value sketch are answered without the rescan
+                    if (TopValueCache.contains(key.logDate, key.objType) == false) {
+                        this.synchronized {
+                            makeTop100(key.logDate, key.objType,100)
+                        }
                     }
                 })
             } catch {
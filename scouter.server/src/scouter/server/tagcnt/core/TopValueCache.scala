@@ -0,0 +1,190 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.tagcnt.core;
+
+import java.io.File
+import java.util.HashMap
+
+import scouter.io.{DataInputX, DataOutputX}
+import scouter.lang.value.Value
+import scouter.server.{Configure, Logger}
+import scouter.server.core.CoreRun
+import scouter.server.util.{EnumerScala, ThreadScala}
+import scouter.util.{DateUtil, FileUtil, LongKeyMap, ThreadUtil}
+
+/**
+  * top values per (date, objType, tag) kept up to date as tag counts come in, so a top 100 is read
+  * without going through the tag count db. Sketches are checkpointed to topn.sketch in the objType
+  * folder and loaded back on the first use of that day after a restart. A day whose counting started
+  * before its sketch did is not complete and is still answered from the db.
+  * <p>
+  * The file holds (complete, clean). A new complete day is written at the next checkpoint as its
+  * marker. Only the last save of an entry, at shutdown or when it goes idle, is clean; a sketch
+  * reloaded from any other save missed the counts after it and is not complete.
+  */
+object TopValueCache {
+    val FILE = "topn.sketch";
+    val CHECKPOINT = 30000L;
+    val IDLE = 10 * DateUtil.MILLIS_PER_MINUTE;
+
+    class Entry(val date: String, val objType: String) {
+        val tags = new LongKeyMap[TopValueSketch]();
+        var complete = false;
+        var dirty = false;
+        var lastUsed = System.currentTimeMillis();
+    }
+
+    private val table = new HashMap[Key, Entry]();
+
+    ThreadScala.startDaemon("scouter.server.tagcnt.core.TopValueCache") {
+        while (CoreRun.running) {
+            ThreadUtil.sleep(CHECKPOINT);
+            checkpoint(System.currentTimeMillis());
+        }
+        checkpoint(Long.MaxValue);
+    }
+
+    def enabled = Configure.getInstance().tagcnt_sketch_enabled;
+
+    def add(time: Long, objType: String, tagKey: Long, value: Value, cnt: Float) {
+        if (enabled == false)
+            return;
+        val e = entry(DateUtil.yyyymmdd(time), objType);
+        e.synchronized {
+            var s = e.tags.get(tagKey);
+            if (s == null) {
+                s = new TopValueSketch(Configure.getInstance().tagcnt_sketch_size);
+                e.tags.put(tagKey, s);
+            }
+            s.add(value, cnt);
+            e.dirty = true;
+        }
+    }
+
+    /**
+      * the top values of the tag, null when no sketch of the day is kept
+      */
+    def get(date: String, objType: String, tagKey: Long, limit: Int): ValueCountTotal = {
+        if (enabled == false)
+            return null;
+        val e = entry(date, objType);
+        e.synchronized {
+            val s = e.tags.get(tagKey);
+            return if (s == null || e.complete == false) null else s.top(limit);
+        }
+    }
+
+    def contains(date: String, objType: String): Boolean = {
+        if (enabled == false)
+            return false;
+        table.synchronized {
+            val e = table.get(new Key(date, objType));
+            return e != null && e.complete;
+        }
+    }
+
+    private def entry(date: String, objType: String): Entry = {
+        val key = new Key(date, objType);
+        table.synchronized {
+            var e = table.get(key);
+            if (e == null) {
+                e = load(date, objType);
+                table.put(key, e);
+            }
+            e.lastUsed = System.currentTimeMillis();
+            return e;
+        }
+    }
+
+    private def file(date: String, objType: String): File = {
+        return new File(CountEnv.getDBPath(date, objType), FILE);
+    }
+
+    private def load(date: String, objType: String): Entry = {
+        val e = new Entry(date, objType);
+        val f = file(date, objType);
+        if (f.exists() == false) {
+            e.complete = new File(CountEnv.getDBPath(date, objType)).exists() == false;
+            e.dirty = e.complete;
+            return e;
+        }
+        try {
+            val in = new DataInputX(FileUtil.readAll(f));
+            val complete = in.readBoolean();
+            e.complete = in.readBoolean() && complete;
+            val n = in.readInt();
+            for (i <- 0 to n - 1) {
+                val tagKey = in.readLong();
+                e.tags.put(tagKey, new TopValueSketch(Configure.getInstance().tagcnt_sketch_size).read(in));
+            }
+        } catch {
+            case t: Throwable =>
+                Logger.println("S226", 10, "tagcnt sketch load failed " + f + " " + t);
+                e.tags.clear();
+                e.complete = false;
+        }
+        return e;
+    }
+
+    private def save(e: Entry, clean: Boolean) {
+        val out = new DataOutputX();
+        e.synchronized {
+            out.writeBoolean(e.complete);
+            out.writeBoolean(clean);
+            out.writeInt(e.tags.size());
+            EnumerScala.foreach(e.tags.keys(), (tagKey: Long) => {
+                out.writeLong(tagKey);
+                e.tags.get(tagKey).write(out);
+            })
+            e.dirty = false;
+        }
+        val f = file(e.date, e.objType);
+        f.getParentFile().mkdirs();
+        val tmp = new File(f.getPath() + ".tmp");
+        FileUtil.save(tmp, out.toByteArray());
+        if (f.exists()) {
+            f.delete();
+        }
+        tmp.renameTo(f);
+    }
+
+    private def checkpoint(now: Long) {
+        val list = table.synchronized {
+            new java.util.ArrayList[Entry](table.values())
+        }
+        EnumerScala.foreach(list.iterator(), (e: Entry) => {
+            val closing = now - e.lastUsed > IDLE;
+            try {
+                if (e.dirty || closing) {
+                    save(e, closing);
+                }
+            } catch {
+                case t: Throwable => Logger.println("S227", 10, "tagcnt sketch save failed " + e.date + " " + e.objType + " " + t);
+            }
+            if (closing) {
+                table.synchronized {
+                    if (e.dirty == false) {
+                        table.remove(new Key(e.date, e.objType));
+                    }
+                }
+            }
+        })
+    }
+}
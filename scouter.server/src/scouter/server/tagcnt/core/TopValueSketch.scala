@@ -0,0 +1,199 @@
+/*
+*  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ *
+ */
+
+
+package scouter.server.tagcnt.core;
+
+import java.util.{ArrayList, Collections, Comparator, HashMap}
+
+import scouter.io.{DataInputX, DataOutputX}
+import scouter.lang.value.Value
+
+/**
+  * heavy hitters of one tag (space saving). The capacity most counted values are tracked; a new value
+  * takes the place of the least counted one and inherits its count as the error, so a tracked count is
+  * never below the true count and the top of the list settles on the real heavy hitters.
+  * The number of distinct values is estimated with a small hyperloglog.
+  */
+class TopValueSketch(capacity: Int) {
+
+    private val index = new HashMap[Value, Integer]();
+    // min heap on counts
+    private val values = new Array[Value](capacity);
+    private val counts = new Array[Double](capacity);
+    private val errors = new Array[Double](capacity);
+    private var size = 0;
+    private val registers = new Array[Byte](TopValueSketch.REGISTERS);
+
+    var total = 0.0;
+
+    def add(value: Value, cnt: Float) {
+        total += cnt;
+        register(value);
+        val at = index.get(value);
+        if (at != null) {
+            counts(at.intValue()) += cnt;
+            down(at.intValue());
+        } else if (size < capacity) {
+            values(size) = value;
+            counts(size) = cnt;
+            errors(size) = 0;
+            index.put(value, size);
+            size += 1;
+            up(size - 1);
+        } else {
+            index.remove(values(0));
+            errors(0) = counts(0);
+            counts(0) += cnt;
+            values(0) = value;
+            index.put(value, 0);
+            down(0);
+        }
+    }
+
+    def distinct(): Int = {
+        val m = registers.length;
+        var sum = 0.0;
+        var zeros = 0;
+        for (r <- registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros += 1;
+            }
+        }
+        val estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0)
+            return Math.round(m * Math.log(m.toDouble / zeros)).toInt;
+        return Math.round(estimate).toInt;
+    }
+
+    /**
+      * the most counted values with their guaranteed counts, the tracked count less its error
+      */
+    def top(limit: Int): ValueCountTotal = {
+        val list = new ArrayList[ValueCount](size);
+        for (i <- 0 to size - 1) {
+            list.add(new ValueCount(values(i), counts(i) - errors(i)));
+        }
+        Collections.sort(list, new Comparator[ValueCount]() {
+            override def compare(o1: ValueCount, o2: ValueCount): Int = {
+                return java.lang.Double.compare(o2.valueCount, o1.valueCount)
+            }
+        });
+        val n = if (limit <= 0) list.size() else Math.min(limit, list.size());
+        return new ValueCountTotal(Math.max(distinct(), size), total.toFloat, new ArrayList[ValueCount](list.subList(0, n)));
+    }
+
+    def write(out: DataOutputX) {
+        out.writeDouble(total);
+        out.write(registers);
+        out.writeInt(size);
+        for (i <- 0 to size - 1) {
+            out.writeValue(values(i));
+            out.writeDouble(counts(i));
+            out.writeDouble(errors(i));
+        }
+    }
+
+    def read(in: DataInputX): TopValueSketch = {
+        total = in.readDouble();
+        in.readFully(registers);
+        val n = in.readInt();
+        for (i <- 0 to n - 1) {
+            val v = in.readValue();
+            val c = in.readDouble();
+            val e = in.readDouble();
+            if (size < capacity) {
+                values(size) = v;
+                counts(size) = c;
+                errors(size) = e;
+                index.put(v, size);
+                size += 1;
+                up(size - 1);
+            } else if (c > counts(0)) {
+                index.remove(values(0));
+                values(0) = v;
+                counts(0) = c;
+                errors(0) = e;
+                index.put(v, 0);
+                down(0);
+            }
+        }
+        return this;
+    }
+
+    private def register(value: Value) {
+        var h = value.hashCode().toLong * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        val r = (h & (registers.length - 1)).toInt;
+        val rank = (java.lang.Long.numberOfLeadingZeros(h | (registers.length - 1)) + 1).toByte;
+        if (rank > registers(r)) {
+            registers(r) = rank;
+        }
+    }
+
+    private def up(from: Int) {
+        var i = from;
+        while (i > 0 && counts((i - 1) / 2) > counts(i)) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private def down(from: Int) {
+        var i = from;
+        var done = false;
+        while (done == false) {
+            val l = i * 2 + 1;
+            val r = l + 1;
+            var min = i;
+            if (l < size && counts(l) < counts(min)) {
+                min = l;
+            }
+            if (r < size && counts(r) < counts(min)) {
+                min = r;
+            }
+            if (min == i) {
+                done = true;
+            } else {
+                swap(i, min);
+                i = min;
+            }
+        }
+    }
+
+    private def swap(a: Int, b: Int) {
+        val v = values(a);
+        values(a) = values(b);
+        values(b) = v;
+        val c = counts(a);
+        counts(a) = counts(b);
+        counts(b) = c;
+        val e = errors(a);
+        errors(a) = errors(b);
+        errors(b) = e;
+        index.put(values(a), a);
+        index.put(values(b), b);
+    }
+}
+
+object TopValueSketch {
+    val REGISTERS = 1024;
+}
@@ -66,9 +66,9 @@ class IndexFile(_path: String, hashSize: Int = 1) extends IClose {
             }
 
             val keyHash = HashUtil.hash(key);
-            var pos = hashFile.get(keyHash);
-            pos = this.keyFile.append(pos, key, value);
-            this.hashFile.put(keyHash, pos);
+            val prev = hashFile.get(keyHash);
+            val pos = this.keyFile.append(prev, key, value);
+            this.hashFile.put(keyHash, pos, prev);
             return true;
         }
     }
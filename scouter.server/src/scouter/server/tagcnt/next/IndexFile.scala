@@ -106,7 +106,7 @@ class IndexFile(path: String, hashSize: Int = 1) extends IClose {
         val vposArr = new Array[Long](24);
         vposArr(hour) = vpos;
         pos = this.keyFile.append(firstPos, key, TagCountUtil.sum(value), vposArr);
-        this.hashFile.put(keyHash, pos);
+        this.hashFile.put(keyHash, pos, firstPos);
 
         return 0;
     }
@@ -76,7 +76,7 @@ object XLOG {
         index = d.index
         val timeTable = Array.fill(bucket) { '_' }
         var tmStr: String = null
-        EnumerScala.foreach(d.data.iterator(), (b: Array[Byte]) => {
+        d.foreach((b: Array[Byte], len: Int) => {
             val p = new DataInputX(b).readPack().asInstanceOf[XLogPack]
             val bk = p.elapsed * bucket / (mxTime * 1000)
             val bk2 = if (bk >= bucket) bucket - 1 else bk
@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.server.util;
+
+/**
+ * Log-linear histogram in the manner of HdrHistogram: each power of two is split into 8 buckets,
+ * so a reported value is within 12.5% of the recorded one.
+ */
+public class Histogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB = 1 << SUB_BITS;
+
+	private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB];
+	private long count;
+	private long sum;
+	private long max;
+
+	public synchronized void record(long v) {
+		if (v < 0)
+			v = 0;
+		counts[index(v)]++;
+		count++;
+		sum += v;
+		if (v > max)
+			max = v;
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	public synchronized double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * @param p
+	 *            0.0 ~ 1.0
+	 */
+	public synchronized long percentile(double p) {
+		if (count == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(count * p));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(upper(i), max);
+		}
+		return max;
+	}
+
+	public synchronized void reset() {
+		java.util.Arrays.fill(counts, 0);
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	static int index(long v) {
+		if (v < SUB)
+			return (int) v;
+		int exp = 63 - Long.numberOfLeadingZeros(v);
+		int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+		return (exp - SUB_BITS + 1) * SUB + sub;
+	}
+
+	static long upper(int index) {
+		if (index < SUB)
+			return index;
+		int shift = index / SUB - 1;
+		int sub = index % SUB;
+		return ((long) (SUB + sub) << shift) + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,88 @@
+package scouter.server.core.cache;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TextArenaTest {
+
+    private static String text(int i, int len) {
+        StringBuilder sb = new StringBuilder(len);
+        sb.append("text-").append(i).append('-');
+        while (sb.length() < len)
+            sb.append((char) ('a' + (i + sb.length()) % 26));
+        return sb.toString();
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        TextArena arena = new TextArena(0);
+        assertThat(arena.getCapacity()).isEqualTo(64 * 1024);
+        arena.put(1, "hello");
+        arena.put(2, "\u00e9t\u00e9");
+        assertThat(arena.get(1)).isEqualTo("hello");
+        assertThat(arena.get(2)).isEqualTo("\u00e9t\u00e9");
+        assertThat(arena.get(3)).isNull();
+        assertThat(arena.size()).isEqualTo(2);
+        assertThat(arena.hit).isEqualTo(2);
+        assertThat(arena.miss).isEqualTo(1);
+    }
+
+    @Test
+    public void testOversizedTextIsRejected() throws Exception {
+        TextArena arena = new TextArena(0);
+        arena.put(1, text(1, arena.getCapacity() / 4));
+        assertThat(arena.containsKey(1)).isFalse();
+        assertThat(arena.rejected).isEqualTo(1);
+    }
+
+    @Test
+    public void testColdTextsAreEvictedOldestFirst() throws Exception {
+        TextArena arena = new TextArena(0);
+        int n = 1000;
+        for (int i = 0; i < n; i++)
+            arena.put(i, text(i, 500));
+        assertThat(arena.containsKey(0)).isFalse();
+        assertThat(arena.containsKey(n - 1)).isTrue();
+        assertThat(arena.size()).isLessThanOrEqualTo(arena.getCapacity() / 500);
+        int present = 0;
+        for (int i = 0; i < n; i++) {
+            if (arena.containsKey(i)) {
+                present++;
+                assertThat(arena.get(i)).isEqualTo(text(i, 500));
+            }
+        }
+        assertThat(present).isEqualTo(arena.size());
+    }
+
+    @Test
+    public void testHotTextIsMovedInsteadOfEvicted() throws Exception {
+        TextArena arena = new TextArena(0);
+        int hot = -1;
+        arena.put(hot, text(hot, 300));
+        for (int i = 0; i < 10; i++)
+            arena.get(hot);
+        for (int i = 0; i < 2000; i++) {
+            arena.put(i, text(i, 300 + i % 7 * 50));
+            if (i % 100 == 0)
+                arena.get(hot);
+        }
+        assertThat(arena.get(hot)).isEqualTo(text(hot, 300));
+        for (int i = 0; i < 2000; i++) {
+            if (arena.containsKey(i))
+                assertThat(arena.get(i)).isEqualTo(text(i, 300 + i % 7 * 50));
+        }
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        TextArena arena = new TextArena(0);
+        for (int i = 0; i < 300; i++)
+            arena.put(i, text(i, 400));
+        arena.clear();
+        assertThat(arena.size()).isEqualTo(0);
+        assertThat(arena.get(299)).isNull();
+        arena.put(7, "again");
+        assertThat(arena.get(7)).isEqualTo("again");
+    }
+}
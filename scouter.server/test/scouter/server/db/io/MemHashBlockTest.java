@@ -0,0 +1,96 @@
+package scouter.server.db.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scouter.io.DataOutputX;
+import scouter.server.Configure;
+import scouter.util.FileUtil;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemHashBlockTest {
+
+    private File dir;
+    private int maxMb;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("hashblock", "");
+        dir.delete();
+        dir.mkdirs();
+        maxMb = Configure.getInstance().db_index_hash_max_mb;
+        Configure.getInstance().db_index_hash_max_mb = 0;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Configure.getInstance().db_index_hash_max_mb = maxMb;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files)
+                f.delete();
+        }
+        dir.delete();
+    }
+
+    private static byte[] key(int i) {
+        return DataOutputX.toBytes(i * 7919 + 1);
+    }
+
+    @Test
+    public void testKeepsIndexingPastTheSizeCap() throws Exception {
+        String path = new File(dir, "idx").getPath();
+        IndexKeyFile index = new IndexKeyFile(path, 1, false);
+        int capacity = index.hashBlock().getCapacity();
+        int batch = 1000;
+        int n = (capacity / batch + 1) * batch;
+        byte[][] keys = new byte[batch][];
+        byte[][] values = new byte[batch][];
+        for (int i = 0; i < n; i += batch) {
+            for (int j = 0; j < batch; j++) {
+                keys[j] = key(i + j);
+                values[j] = DataOutputX.toBytes5(i + j + 1);
+            }
+            index.putBatch(keys, values, batch);
+        }
+        index.put(key(n), DataOutputX.toBytes5(n + 1));
+        assertThat(index.hashBlock().getCapacity()).isEqualTo(capacity);
+        assertThat(index.hashBlock().getCount()).isLessThan(capacity);
+        for (int i = 0; i <= n; i++) {
+            assertThat(index.get(key(i))).isEqualTo(DataOutputX.toBytes5(i + 1));
+        }
+        index.hashBlock().flush();
+        index.close();
+
+        index = new IndexKeyFile(path, 1, false);
+        index.put(key(n + 1), DataOutputX.toBytes5(n + 2));
+        for (int i = 0; i <= n + 1; i++) {
+            assertThat(index.get(key(i))).isEqualTo(DataOutputX.toBytes5(i + 1));
+        }
+        assertThat(index.hasKey(key(-1))).isFalse();
+        index.close();
+    }
+
+    @Test
+    public void testFullBlockTakesNoNewSlots() throws Exception {
+        MemHashBlock block = new MemHashBlock(new File(dir, "small").getPath(), 1024 * 9);
+        int capacity = block.getCapacity();
+        for (int i = 1; i <= capacity * 2; i++) {
+            block.put(i * 31, i);
+        }
+        assertThat(block.getCapacity()).isEqualTo(capacity);
+        assertThat(block.getCount()).isEqualTo(capacity / 4 * 3);
+        int own = 0;
+        for (int i = 1; i <= capacity * 2; i++) {
+            int bucket = block.bucket(i * 31);
+            assertThat(block.get(i * 31)).isEqualTo(block.get(bucket)).isGreaterThan(0);
+            if (bucket == i * 31)
+                own++;
+        }
+        assertThat(own).isEqualTo(capacity / 4 * 3);
+        block.close();
+    }
+}
@@ -0,0 +1,73 @@
+package scouter.server.tagcnt.core;
+
+import org.junit.Test;
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+import scouter.lang.value.DecimalValue;
+import scouter.lang.value.TextValue;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TopValueSketchTest {
+
+    @Test
+    public void testEvictedValueCarriesItsErrorOutOfTheReport() throws Exception {
+        TopValueSketch s = new TopValueSketch(2);
+        s.add(new TextValue("a"), 5);
+        s.add(new TextValue("b"), 3);
+        s.add(new TextValue("c"), 1);
+
+        ValueCountTotal top = s.top(0);
+        assertThat(top.totalCount()).isEqualTo(9f);
+        assertThat(top.values().size()).isEqualTo(2);
+        assertThat(top.values().get(0).tagValue).isEqualTo(new TextValue("a"));
+        assertThat(top.values().get(0).valueCount).isEqualTo(5.0);
+        // c took the place of b, the 3 it inherited is not reported as its own
+        assertThat(top.values().get(1).tagValue).isEqualTo(new TextValue("c"));
+        assertThat(top.values().get(1).valueCount).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testHeavyHittersSurviveManyLightValues() throws Exception {
+        TopValueSketch s = new TopValueSketch(8);
+        for (int round = 0; round < 100; round++) {
+            s.add(new TextValue("heavy1"), 5);
+            s.add(new TextValue("heavy2"), 3);
+            s.add(new TextValue("heavy3"), 2);
+            s.add(new DecimalValue(round), 1);
+        }
+        List<ValueCount> top = s.top(3).values();
+        assertThat(top.get(0).tagValue).isEqualTo(new TextValue("heavy1"));
+        assertThat(top.get(1).tagValue).isEqualTo(new TextValue("heavy2"));
+        assertThat(top.get(2).tagValue).isEqualTo(new TextValue("heavy3"));
+        assertThat(top.get(0).valueCount).isLessThanOrEqualTo(500.0);
+        assertThat(top.get(2).valueCount).isLessThanOrEqualTo(200.0);
+        assertThat(s.top(0).howManyValues()).isBetween(90, 115);
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        TopValueSketch s = new TopValueSketch(4);
+        for (int i = 1; i <= 6; i++) {
+            s.add(new DecimalValue(i), i * 10);
+        }
+        DataOutputX out = new DataOutputX();
+        s.write(out);
+
+        TopValueSketch r = new TopValueSketch(4).read(new DataInputX(out.toByteArray()));
+        ValueCountTotal a = s.top(0);
+        ValueCountTotal b = r.top(0);
+        assertThat(b.totalCount()).isEqualTo(a.totalCount());
+        assertThat(b.howManyValues()).isEqualTo(a.howManyValues());
+        assertThat(b.values().toString()).isEqualTo(a.values().toString());
+
+        // a smaller sketch keeps the most counted ones
+        TopValueSketch small = new TopValueSketch(2).read(new DataInputX(out.toByteArray()));
+        List<ValueCount> top = small.top(0).values();
+        assertThat(top.size()).isEqualTo(2);
+        assertThat(top.get(0).tagValue).isEqualTo(new DecimalValue(6));
+        assertThat(top.get(1).tagValue).isEqualTo(new DecimalValue(5));
+    }
+}